@@ -737,6 +737,13 @@ public interface IConfiguration {
      */
     public String getBackupStatusFileLoc();
 
+    /**
+     * Journal of the files restored to disk. It is used to resume a failed or interrupted restore without downloading
+     * the files which are already restored.  Note that this location should not be inside {@link #getDataFileLocation()}.
+     * @return the absolute path to store the restore journal on disk.
+     */
+    public String getRestoreJournalLocation();
+
     public boolean useSudo();
 
     /**
@@ -746,4 +753,246 @@ public interface IConfiguration {
      * @return SNS Topic ARN to be used to send notification.
      */
     public String getBackupNotificationTopicArn();
+
+    /**
+     * Progressive restore applies to restores of specific keyspaces ({@link #getRestoreKeySpaces()}) where Cassandra keeps
+     * running. Each table is loaded into Cassandra (nodetool refresh) as soon as all of its files are downloaded instead of
+     * waiting for the whole restore to finish.
+     * Default: false
+     * @return true if tables should be made available as soon as they are restored.
+     */
+    public boolean isProgressiveRestoreEnabled();
+
+    /**
+     * Tables, comma delimited, which should be restored first during a progressive restore. Tables are restored in the
+     * order they are listed, before any other table.
+     * Note:  the expected format is keyspace.cfname
+     * @return list of tables to restore first. If none, tables are restored one after another in no particular order.
+     */
+    public List<String> getRestorePriorityTables();
+
+    /**
+     * Backups maintain one index object per day listing the files uploaded for that day (meta.json, incrementals and
+     * commit logs). A restore reads the index of each day of the restore range instead of listing the backup location.
+     * Days without a complete index are listed as before.
+     * Default: true
+     * @return true if per-day backup indexes should be written and used for restores.
+     */
+    public boolean isBackupIndexEnabled();
+
+    /**
+     * Local directory where the per-day backup indexes are maintained before they are uploaded.
+     * @return location of the local backup indexes.
+     */
+    public String getBackupIndexLocation();
+
+    /**
+     * Minimum interval between two uploads of the index of the current day. The index of a previous day is uploaded as
+     * soon as it changes.
+     * Default: 300 seconds
+     * @return interval in seconds.
+     */
+    public int getBackupIndexUploadIntervalInSecs();
+
+    /**
+     * Snapshots reference the SSTables which were already uploaded (by an incremental or a previous snapshot) instead of
+     * uploading them again. As newer snapshots then reference older objects, the retention of the backups can no longer
+     * be based on the age of the objects: dedup only takes effect when {@link #isBackupGcEnabled()} is set as well, without
+     * {@link #isBackupGcDryRun()}, which replaces the expiration of the lifecycle rule. Only objects uploaded within the retention period are referenced.
+     * Default: false
+     * @return true if snapshots should skip the SSTables already present in the backup location.
+     */
+    public boolean isBackupDedupEnabled();
+
+    /**
+     * Local file recording the SSTables uploaded by this node, used to find the SSTables already backed up.
+     * @return location of the local record of uploaded SSTables.
+     */
+    public String getBackupDedupLocation();
+
+    /**
+     * Delete the objects of the backup location which are no longer referenced by the snapshots within the retention
+     * period, see {@link com.netflix.priam.backup.BackupGarbageCollector}. When enabled without {@link #isBackupGcDryRun()},
+     * objects do not expire by age: the lifecycle rule of the backup location only aborts incomplete multipart uploads.
+     * Default: false
+     * @return true if unreferenced backup objects should be deleted.
+     */
+    public boolean isBackupGcEnabled();
+
+    /**
+     * Only report the objects the garbage collection would delete. Objects keep expiring by age and snapshots are not
+     * deduplicated during a dry run.
+     * Default: true
+     * @return true if the garbage collection should not delete any object.
+     */
+    public boolean isBackupGcDryRun();
+
+    /**
+     * Cron expression to be used for the garbage collection of backup objects.
+     * Default: 0 0 12 * * ? i.e. every day at noon.
+     * @return Cron expression for the garbage collection.
+     */
+    public String getBackupGcCronExpression();
+
+    /**
+     * Number of concurrent requests used to list the backup location, e.g. to find the nodes having a backup for a day.
+     * Default: 16
+     * @return number of threads listing the backup location.
+     */
+    public int getBackupListingThreads();
+
+    /**
+     * Percentage of the files of a snapshot which are downloaded when verifying it, to confirm they can be decompressed
+     * (and decrypted) and match the checksum and size recorded in the meta file.
+     * Default: 0, only the listing of the backup location is compared with the meta file.
+     * @return percentage of files to download, 0 to 100.
+     */
+    public int getBackupVerificationSamplePercent();
+
+    /**
+     * Watch the incremental backup directories for new files, instead of listing the directories of every table on each
+     * incremental backup. The directories are still scanned periodically, see
+     * {@link #getIncrementalBackupReconcileIntervalInSecs()}.
+     * Default: false
+     * @return true if incremental backups should only upload the directories reported by the watcher.
+     */
+    public boolean isIncrementalBackupWatchEnabled();
+
+    /**
+     * Interval at which all the incremental backup directories are scanned when they are watched, to back up files
+     * for which no event was received.
+     * Default: 600
+     * @return interval of the full scans, in seconds.
+     */
+    public int getIncrementalBackupReconcileIntervalInSecs();
+
+    /**
+     * Recovery point objective of incremental and commit log backups: an alert is raised when a file has been waiting
+     * to be uploaded for longer than this, see {@link com.netflix.priam.backup.BackupLagTracker}.
+     * Default: 0, no alert
+     * @return the maximum age in seconds of a file not yet uploaded.
+     */
+    public int getBackupRpoInSecs();
+
+    /**
+     * Incremental backups list the uploaded files of all the column families in one meta file, uploaded once this
+     * interval elapsed since the first file not yet listed was uploaded, see {@link #getIncrementalMetaFlushMaxEntries()}.
+     * Default: 60
+     * @return the maximum time in seconds before uploaded incremental files are listed in a meta file.
+     */
+    public int getIncrementalMetaFlushIntervalInSecs();
+
+    /**
+     * Number of uploaded incremental files after which the incremental meta file is uploaded without waiting for
+     * {@link #getIncrementalMetaFlushIntervalInSecs()}.
+     * Default: 1000
+     * @return the maximum number of incremental files waiting to be listed in a meta file.
+     */
+    public int getIncrementalMetaFlushMaxEntries();
+
+    /**
+     * Tables whose incremental backups are uploaded with high priority, see
+     * {@link com.netflix.priam.backup.BackupPriorityClassifier}.
+     * *Note: comma delimited, each entry is a keyspace or keyspace.columnfamily, matched like
+     * {@link #getIncrementalKeyspaceFilters()} and {@link #getIncrementalCFFilter()}.
+     * @return tables with high priority, null or empty if none.
+     */
+    public String getIncrementalHighPriorityFilters();
+
+    /**
+     * Tables whose incremental backups are uploaded with low priority e.g. bulk loaded tables, in the same format as
+     * {@link #getIncrementalHighPriorityFilters()}.
+     * @return tables with low priority, null or empty if none.
+     */
+    public String getIncrementalLowPriorityFilters();
+
+    /**
+     * Relative share of the incremental uploads of the high, normal and low priority tables when files of several
+     * priority classes wait to be uploaded.
+     * Default: 8,2,1
+     * @return comma delimited weights of the high, normal and low priority classes.
+     */
+    public String getIncrementalPriorityWeights();
+
+    /**
+     * Number of tables snapshotted, uploaded and cleared at a time by a snapshot backup, see
+     * {@link com.netflix.priam.backup.SnapshotBackup}. The snapshot then keeps at most the SSTables of these tables on
+     * disk, instead of those of all the tables for the whole upload.
+     * Default: 0, all the tables are snapshotted at once.
+     * @return the number of tables per snapshot batch, 0 to snapshot all the tables at once.
+     */
+    public int getSnapshotTableBatchSize();
+
+    /**
+     * Number of tables of a snapshot batch uploaded concurrently, see {@link #getSnapshotTableBatchSize()}.
+     * Default: 1
+     * @return the number of threads uploading the tables of a snapshot batch.
+     */
+    public int getSnapshotBatchThreads();
+
+    /**
+     * Snapshots which failed or were interrupted less than this many hours ago are resumed by the next snapshot backup
+     * instead of taking a new snapshot: their snapshot directories and the list of files already uploaded are kept on
+     * disk, and only the remaining files are uploaded. Snapshots taken in batches are not resumed, see
+     * {@link #getSnapshotTableBatchSize()}.
+     * Default: 0, a new snapshot is taken every time.
+     * @return the number of hours during which a failed snapshot can be resumed, 0 to disable.
+     */
+    public int getSnapshotResumeWindowInHours();
+
+    /**
+     * Number of threads uploading the archived commit log segments concurrently, see
+     * {@link com.netflix.priam.backup.CommitLogBackup}.
+     * Default: 4
+     * @return the number of commit log upload threads.
+     */
+    public int getCommitLogBackupThreads();
+
+    /**
+     * An archived commit log segment is uploaded once it has not been modified for this many seconds, so that a segment
+     * still being copied by {@link #getCommitLogBackupArchiveCmd()} is not uploaded partially.
+     * Default: 5
+     * @return the number of seconds after which an archived segment is considered closed.
+     */
+    public int getCommitLogBackupQuietPeriodInSecs();
+
+    /**
+     * A restore lists the commit logs backed up up to this many minutes after the end of the restore, to find the segment
+     * which was being written at the end of the restore, see {@link com.netflix.priam.restore.CommitLogSelector}. It has
+     * to be longer than the time it takes Cassandra to fill a commit log segment.
+     * Default: 60
+     * @return the number of minutes after the end of the restore in which commit logs are looked for.
+     */
+    public int getCommitLogRestoreLookaheadInMins();
+
+    /**
+     * Download the SSTables to restore from the other nodes of the rack which have a copy of them before falling back to
+     * the backup file system, see {@link com.netflix.priam.backup.PeerBackupFileSystem}.
+     * Default: false
+     * @return true if restores download from peers first.
+     */
+    public boolean isRestoreFromPeersEnabled();
+
+    /**
+     * Port of the REST API of the peers' Priam, see {@link #isRestoreFromPeersEnabled()}.
+     * Default: 8080
+     * @return the port of Priam on the peers.
+     */
+    public int getRestorePeerPort();
+
+    /**
+     * Size of the local cache of the SSTables downloaded by restores, so that restoring them again does not download
+     * them again, see {@link com.netflix.priam.backup.CachingBackupFileSystem}. 0 disables the cache.
+     * Default: 0
+     * @return the size of the restore cache in MB.
+     */
+    public long getRestoreCacheSizeInMB();
+
+    /**
+     * Directory of the restore cache, see {@link #getRestoreCacheSizeInMB()}. Cached files are copied to the data
+     * directory on a hit.
+     * Default: restore_cache
+     * @return the directory of the restore cache.
+     */
+    public String getRestoreCacheLocation();
 }
@@ -20,7 +20,9 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.priam.aws.UpdateCleanupPolicy;
 import com.netflix.priam.aws.UpdateSecuritySettings;
+import com.netflix.priam.backup.BackupGarbageCollector;
 import com.netflix.priam.backup.CommitLogBackupTask;
+import com.netflix.priam.backup.BackupLagMonitor;
 import com.netflix.priam.backup.IncrementalBackup;
 import com.netflix.priam.restore.Restore;
 import com.netflix.priam.backup.SnapshotBackup;
@@ -95,11 +97,11 @@ public class PriamServer {
             // Start the Incremental backup schedule if enabled
             if (config.isIncrBackup()) {
                 if (!config.isIncrBackupParallelEnabled()) {
-                    scheduler.addTask(IncrementalBackup.JOBNAME, IncrementalBackup.class, IncrementalBackup.getTimer());
+                    scheduler.addTask(IncrementalBackup.JOBNAME, IncrementalBackup.class, IncrementalBackup.getTimer(config));
                     logger.info("Added incremental synchronous bkup");
                 } else {
-                    scheduler.addTask(IncrementalBackupProducer.JOBNAME, IncrementalBackupProducer.class, IncrementalBackupProducer.getTimer());
-                    logger.info("Added incremental async-synchronous bkup, next fired time: {}", IncrementalBackupProducer.getTimer().getTrigger().getNextFireTime());
+                    scheduler.addTask(IncrementalBackupProducer.JOBNAME, IncrementalBackupProducer.class, IncrementalBackupProducer.getTimer(config));
+                    logger.info("Added incremental async-synchronous bkup, next fired time: {}", IncrementalBackupProducer.getTimer(config).getTrigger().getNextFireTime());
                 }
             }
 
@@ -109,6 +111,11 @@ public class PriamServer {
             scheduler.addTask(CommitLogBackupTask.JOBNAME, CommitLogBackupTask.class, CommitLogBackupTask.getTimer(config));
         }
 
+        //Publish the lag of incremental and commit log backups
+        if (config.isIncrBackup() || config.isBackingUpCommitLogs()) {
+            scheduler.addTask(BackupLagMonitor.JOBNAME, BackupLagMonitor.class, BackupLagMonitor.getTimer());
+        }
+
 
         // Determine if we need to restore from backup else start cassandra.
         if (restoreContext.isRestoreEnabled()){
@@ -133,6 +140,13 @@ public class PriamServer {
         //Set cleanup
         scheduler.addTask(UpdateCleanupPolicy.JOBNAME, UpdateCleanupPolicy.class, UpdateCleanupPolicy.getTimer());
 
+        //Delete unreferenced backup objects
+        TaskTimer gcTimer = BackupGarbageCollector.getTimer(config);
+        if (gcTimer != null) {
+            scheduler.addTask(BackupGarbageCollector.JOBNAME, BackupGarbageCollector.class, gcTimer);
+            logger.info("Added backup garbage collection task.");
+        }
+
         //Set up nodetool flush task
         TaskTimer flushTaskTimer = FlushTask.getTimer(config);
         if (flushTaskTimer != null) {
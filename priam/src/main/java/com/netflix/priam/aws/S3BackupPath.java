@@ -49,8 +49,8 @@ public class S3BackupPath extends AbstractBackupPath {
      * BASE/REGION/CLUSTER/TOKEN/[SNAPSHOTTIME]/[SST|SNP|META]/KEYSPACE/COLUMNFAMILY/FILE
      */
     @Override
-    public String getRemotePath() {
-        StringBuffer buff = new StringBuffer();
+    protected String buildRemotePath() {
+        StringBuilder buff = new StringBuilder(128);
         buff.append(baseDir).append(S3BackupPath.PATH_SEP); // Base dir
         buff.append(region).append(S3BackupPath.PATH_SEP);
         buff.append(clusterName).append(S3BackupPath.PATH_SEP);// Cluster name
@@ -69,30 +69,63 @@ public class S3BackupPath extends AbstractBackupPath {
 
     @Override
     public void parseRemote(String remoteFilePath) {
-        String[] elements = remoteFilePath.split(String.valueOf(S3BackupPath.PATH_SEP));
-        // parse out things which are empty
-        List<String> pieces = Lists.newArrayList();
-        for (String ele : elements) {
-            if (ele.equals(""))
-                continue;
-            pieces.add(ele);
+        // Single pass over the non empty elements of the path.
+        int count = 0;
+        int lastBegin = 0, lastEnd = 0;
+        String element6 = null, element7 = null;
+        int length = remoteFilePath.length();
+        for (int begin = 0; begin < length; ) {
+            int end = remoteFilePath.indexOf(S3BackupPath.PATH_SEP, begin);
+            if (end < 0)
+                end = length;
+            if (end > begin) {
+                switch (count) {
+                    case 0:
+                        baseDir = remoteFilePath.substring(begin, end);
+                        break;
+                    case 1:
+                        region = remoteFilePath.substring(begin, end);
+                        break;
+                    case 2:
+                        clusterName = remoteFilePath.substring(begin, end);
+                        break;
+                    case 3:
+                        nodeIdentifier = remoteFilePath.substring(begin, end);
+                        break;
+                    case 4:
+                        time = parseDate(remoteFilePath, begin, end);
+                        break;
+                    case 5:
+                        type = BackupFileType.valueOf(remoteFilePath.substring(begin, end));
+                        break;
+                    case 6:
+                        element6 = remoteFilePath.substring(begin, end);
+                        break;
+                    case 7:
+                        element7 = remoteFilePath.substring(begin, end);
+                        break;
+                    default:
+                        break;
+                }
+                count++;
+                lastBegin = begin;
+                lastEnd = end;
+            }
+            begin = end + 1;
         }
-        assert pieces.size() >= 7 : "Too few elements in path " + remoteFilePath;
-        if (pieces.size() == NUM_PATH_ELEMENTS_CASS_1_0)
-            setCassandra1_0(true);
-        baseDir = pieces.get(0);
-        region = pieces.get(1);
-        clusterName = pieces.get(2);
-        nodeIdentifier = pieces.get(3);
-        time = parseDate(pieces.get(4));
-        type = BackupFileType.valueOf(pieces.get(5));
+        //Shortest paths are meta files and commit logs: prefix elements, type and file name.
+        if (count < 7)
+            throw new IllegalArgumentException("Too few elements in path " + remoteFilePath);
+        if (count == NUM_PATH_ELEMENTS_CASS_1_0)
+            isCassandra1_0 = true;
         if (type != BackupFileType.META && type != BackupFileType.CL) {
-            keyspace = pieces.get(6);
+            keyspace = element6;
             if (!isCassandra1_0)
-                columnFamily = pieces.get(7);
+                columnFamily = element7;
         }
         // append the rest
-        fileName = pieces.get(pieces.size() - 1);
+        fileName = remoteFilePath.substring(lastBegin, lastEnd);
+        resetRemotePath();
     }
 
     @Override
@@ -110,12 +143,14 @@ public class S3BackupPath extends AbstractBackupPath {
         region = pieces.get(1);
         clusterName = pieces.get(2);
         nodeIdentifier = pieces.get(3);
+        resetRemotePath();
     }
 
     @Override
     public String remotePrefix(Date start, Date end, String location) {
         StringBuffer buff = new StringBuffer(clusterPrefix(location));
         nodeIdentifier = instanceIdentity.getBackupIdentifier();
+        resetRemotePath();
         buff.append(nodeIdentifier).append(S3BackupPath.PATH_SEP);
         // match the common characters to prefix.
         buff.append(match(start, end));
@@ -136,6 +171,7 @@ public class S3BackupPath extends AbstractBackupPath {
             region = elements[2];
             clusterName = elements[3];
         }
+        resetRemotePath();
         buff.append(baseDir).append(S3BackupPath.PATH_SEP);
         buff.append(region).append(S3BackupPath.PATH_SEP);
         buff.append(clusterName).append(S3BackupPath.PATH_SEP);
@@ -185,6 +185,7 @@ public class S3EncryptedFileSystem extends S3FileSystemBase implements S3Encrypt
             Iterator<byte[]> chunks = this.encryptor.encryptStream(compressedBis, path.getRemotePath());
 
             int partNum = 0; //identifies this part position in the object we are uploading
+            long compressedSize = 0;
             while (chunks.hasNext()) {
                 byte[] chunk = chunks.next();
                 rateLimiter.acquire(chunk.length); //throttle upload to endpoint
@@ -194,6 +195,7 @@ public class S3EncryptedFileSystem extends S3FileSystemBase implements S3Encrypt
                 executor.submit(partUploader);
 
                 bytesUploaded.addAndGet(chunk.length);
+                compressedSize += chunk.length;
             }
 
             executor.sleepTillEmpty();
@@ -203,6 +205,7 @@ public class S3EncryptedFileSystem extends S3FileSystemBase implements S3Encrypt
 
             CompleteMultipartUploadResult resultS3MultiPartUploadComplete = new S3PartUploader(s3Client, part, partETags).completeUpload(); //complete the aws chunking upload by providing to aws the ETag that uniquely identifies the combined object data
             checkSuccessfulUpload(resultS3MultiPartUploadComplete, path);
+            path.setCompressedFileSize(compressedSize);
 
         } catch (Exception e) {
             throw encounterError(path, new S3PartUploader(s3Client, part, partETags), e);
@@ -23,73 +23,56 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.collect.Lists;
 import com.google.inject.Provider;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.ShardedFileIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Iterator representing list of backup files available on S3
  */
-public class S3FileIterator implements Iterator<AbstractBackupPath> {
+public class S3FileIterator extends ShardedFileIterator {
     private static final Logger logger = LoggerFactory.getLogger(S3FileIterator.class);
-    private final Provider<AbstractBackupPath> pathProvider;
     private final AmazonS3 s3Client;
-    private final Date start;
-    private final Date till;
-    private Iterator<AbstractBackupPath> iterator;
-    private ObjectListing objectListing;
+    private final String bucket;
 
     public S3FileIterator(Provider<AbstractBackupPath> pathProvider, AmazonS3 s3Client, String path, Date start, Date till) {
-        this.start = start;
-        this.till = till;
-        this.pathProvider = pathProvider;
-        ListObjectsRequest listReq = new ListObjectsRequest();
-        String[] paths = path.split(String.valueOf(S3BackupPath.PATH_SEP));
-        listReq.setBucketName(paths[0]);
-        listReq.setPrefix(pathProvider.get().remotePrefix(start, till, path));
+        this(pathProvider, s3Client, path, start, till, null, 0);
+    }
+
+    /**
+     * @param executor    executor listing the time range concurrently, null to list it sequentially.
+     * @param parallelism number of prefixes of the range listed ahead.
+     */
+    public S3FileIterator(Provider<AbstractBackupPath> pathProvider, AmazonS3 s3Client, String path, Date start, Date till, ExecutorService executor, int parallelism) {
+        super(pathProvider, path, start, till, executor, parallelism);
         this.s3Client = s3Client;
-        objectListing = s3Client.listObjects(listReq);
-        iterator = createIterator();
+        this.bucket = path.split(String.valueOf(S3BackupPath.PATH_SEP))[0];
     }
 
     @Override
-    public boolean hasNext() {
-        if (iterator.hasNext()) {
-            return true;
+    protected Page listPage(String prefix, Object continuation) {
+        ObjectListing objectListing;
+        if (continuation == null) {
+            ListObjectsRequest listReq = new ListObjectsRequest();
+            listReq.setBucketName(bucket);
+            listReq.setPrefix(prefix);
+            objectListing = s3Client.listObjects(listReq);
         } else {
-            while (objectListing.isTruncated() && !iterator.hasNext()) {
-                objectListing = s3Client.listNextBatchOfObjects(objectListing);
-                iterator = createIterator();
-            }
-
+            objectListing = s3Client.listNextBatchOfObjects((ObjectListing) continuation);
         }
-        return iterator.hasNext();
-    }
 
-    private Iterator<AbstractBackupPath> createIterator() {
         List<AbstractBackupPath> temp = Lists.newArrayList();
         for (S3ObjectSummary summary : objectListing.getObjectSummaries()) {
             AbstractBackupPath path = pathProvider.get();
             path.parseRemote(summary.getKey());
+            path.setCompressedFileSize(summary.getSize());
             logger.debug("New key {} path = {} start: {} end: {} my {}", summary.getKey(), path.getRemotePath(), start, till, path.getTime());
-            if ((path.getTime().after(start) && path.getTime().before(till)) || path.getTime().equals(start)) {
-                temp.add(path);
-                logger.debug("Added key {}", summary.getKey());
-            }
+            temp.add(path);
         }
-        return temp.iterator();
-    }
-
-    @Override
-    public AbstractBackupPath next() {
-        return iterator.next();
-    }
-
-    @Override
-    public void remove() {
-        throw new IllegalStateException();
+        return new Page(temp, objectListing.isTruncated() ? objectListing : null);
     }
 }
@@ -78,7 +78,7 @@ public class S3FileSystem extends S3FileSystemBase implements S3FileSystemMBean
     public void downloadFile(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
         try {
             RangeReadInputStream rris = new RangeReadInputStream(s3Client, getPrefix(this.config), path);
-            final long bufSize = MAX_BUFFERED_IN_STREAM_SIZE > path.getSize() ? path.getSize() : MAX_BUFFERED_IN_STREAM_SIZE;
+            final long bufSize = MAX_BUFFERED_IN_STREAM_SIZE > path.getCompressedFileSize() ? path.getCompressedFileSize() : MAX_BUFFERED_IN_STREAM_SIZE;
             compress.decompressAndClose(new BufferedInputStream(rris, (int) bufSize), os);
         } catch (Exception e) {
             throw new BackupRestoreException("Exception encountered downloading " + path.getRemotePath() + " from S3 bucket " + getPrefix(config)
@@ -96,6 +96,7 @@ public class S3FileSystem extends S3FileSystemBase implements S3FileSystemMBean
             Iterator<byte[]> chunks = compress.compress(in, chunkSize);
             // Upload parts.
             int partNum = 0;
+            long compressedSize = 0;
             AtomicInteger partsUploaded = new AtomicInteger(0);
 
             while (chunks.hasNext()) {
@@ -105,6 +106,7 @@ public class S3FileSystem extends S3FileSystemBase implements S3FileSystemMBean
                 S3PartUploader partUploader = new S3PartUploader(s3Client, dp, partETags, partsUploaded);
                 executor.submit(partUploader);
                 bytesUploaded.addAndGet(chunk.length);
+                compressedSize += chunk.length;
             }
             executor.sleepTillEmpty();
             logger.info("All chunks uploaded for file {}, num of expected parts:{}, num of actual uploaded parts: {}", path.getFileName(), partNum, partsUploaded.get());
@@ -114,6 +116,7 @@ public class S3FileSystem extends S3FileSystemBase implements S3FileSystemMBean
 
             CompleteMultipartUploadResult resultS3MultiPartUploadComplete = new S3PartUploader(s3Client, part, partETags).completeUpload();
             checkSuccessfulUpload(resultS3MultiPartUploadComplete, path);
+            path.setCompressedFileSize(compressedSize);
 
             if (logger.isDebugEnabled()) {
                 final S3ResponseMetadata responseMetadata = s3Client.getCachedResponseMetadata(initRequest);
@@ -156,6 +159,7 @@ public class S3FileSystem extends S3FileSystemBase implements S3FileSystemMBean
                 }.retriableCall();
 
                 bytesUploaded.addAndGet(chunk.length);
+                path.setCompressedFileSize(chunk.length);
 
                 if (logger.isDebugEnabled())
                     logger.debug("Successfully uploaded file with putObject: {} and etag: {}", path.getRemotePath(), upload.getETag());
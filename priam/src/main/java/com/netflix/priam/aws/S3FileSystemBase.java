@@ -15,11 +15,15 @@
  */
 package com.netflix.priam.aws;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortIncompleteMultipartUpload;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Provider;
@@ -38,6 +42,7 @@ import com.netflix.priam.notification.BackupNotificationMgr;
 import com.netflix.priam.notification.EventGenerator;
 import com.netflix.priam.notification.EventObserver;
 import com.netflix.priam.scheduler.BlockingSubmitThreadPoolExecutor;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,15 +54,20 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenerator<BackupEvent> {
     protected static final int MAX_CHUNKS = 10000;
     protected static final long MAX_BUFFERED_IN_STREAM_SIZE = 5 * 1024 * 1024;
     protected static final long UPLOAD_TIMEOUT = (2 * 60 * 60 * 1000L);
+    //Maximum number of keys of a multi-object delete request.
+    protected static final int MAX_DELETE_KEYS = 1000;
+    private static final int ABORT_INCOMPLETE_UPLOAD_DAYS = 1;
     private static final Logger logger = LoggerFactory.getLogger(S3FileSystemBase.class);
     protected AtomicInteger uploadCount = new AtomicInteger();
     protected AtomicLong bytesUploaded = new AtomicLong(); //bytes uploaded per file
@@ -74,6 +84,7 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
     protected ICompression compress;
     protected IBackupMetrics backupMetricsMgr;
     protected BlockingSubmitThreadPoolExecutor executor;
+    protected final ExecutorService listingExecutor;
     protected RateLimiter rateLimiter; //a throttling mechanism, we can limit the amount of bytes uploaded to endpoint per second.
     private final CopyOnWriteArrayList<EventObserver<BackupEvent>> observers = new CopyOnWriteArrayList<>();
 
@@ -94,6 +105,7 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
         int threads = config.getMaxBackupUploadThreads();
         LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>(threads);
         this.executor = new BlockingSubmitThreadPoolExecutor(threads, queue, UPLOAD_TIMEOUT);
+        this.listingExecutor = new NamedThreadPoolExecutor(config.getBackupListingThreads(), "S3Listing");
 
         double throttleLimit = config.getUploadThrottle();
         this.rateLimiter = RateLimiter.create(throttleLimit < 1 ? Double.MAX_VALUE : throttleLimit);
@@ -150,6 +162,11 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
     }
 
     private boolean updateLifecycleRule(IConfiguration config, List<Rule> rules, String prefix) {
+        //Unreferenced objects are deleted by the garbage collection, which deduplication relies on: snapshots may reference
+        //objects older than themselves, so objects can not expire by age. A dry run deletes nothing, objects still expire.
+        int retentionDays = config.isBackupGcEnabled() && !config.isBackupGcDryRun() ? 0 : config.getBackupRetentionDays();
+        //Parts of incomplete multipart uploads are not listed, the garbage collection can not remove them.
+        int abortDays = config.isBackupGcEnabled() ? ABORT_INCOMPLETE_UPLOAD_DAYS : 0;
         Rule rule = null;
         for (BucketLifecycleConfiguration.Rule lcRule : rules) {
             if (lcRule.getPrefix().equals(prefix)) {
@@ -157,29 +174,52 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
                 break;
             }
         }
-        if (rule == null && config.getBackupRetentionDays() <= 0)
-            return false;
-        if (rule != null && rule.getExpirationInDays() == config.getBackupRetentionDays()) {
+        int currentRetentionDays = rule == null ? 0 : Math.max(rule.getExpirationInDays(), 0);
+        int currentAbortDays = rule == null || rule.getAbortIncompleteMultipartUpload() == null ? 0 : rule.getAbortIncompleteMultipartUpload().getDaysAfterInitiation();
+        if (currentRetentionDays == Math.max(retentionDays, 0) && currentAbortDays == abortDays) {
             logger.info("Cleanup rule already set");
             return false;
         }
+        if (retentionDays <= 0 && abortDays <= 0) {
+            logger.info("Removing cleanup rule for {}", rule.getPrefix());
+            rules.remove(rule);
+            return true;
+        }
         if (rule == null) {
             // Create a new rule
-            rule = new BucketLifecycleConfiguration.Rule().withExpirationInDays(config.getBackupRetentionDays()).withPrefix(prefix);
+            rule = new BucketLifecycleConfiguration.Rule().withPrefix(prefix);
             rule.setStatus(BucketLifecycleConfiguration.ENABLED);
             rule.setId(prefix);
             rules.add(rule);
-            logger.info("Setting cleanup for {} to {} days", rule.getPrefix(), rule.getExpirationInDays());
-        } else if (config.getBackupRetentionDays() > 0) {
-            logger.info("Setting cleanup for {} to {} days", rule.getPrefix(), config.getBackupRetentionDays());
-            rule.setExpirationInDays(config.getBackupRetentionDays());
-        } else {
-            logger.info("Removing cleanup rule for {}", rule.getPrefix());
-            rules.remove(rule);
         }
+        //-1 leaves the expiration unset.
+        rule.setExpirationInDays(retentionDays > 0 ? retentionDays : -1);
+        rule.setAbortIncompleteMultipartUpload(abortDays > 0 ? new AbortIncompleteMultipartUpload().withDaysAfterInitiation(abortDays) : null);
+        logger.info("Setting cleanup for {} to {} days, incomplete uploads aborted after {} days", rule.getPrefix(), retentionDays, abortDays);
         return true;
     }
 
+    @Override
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+        String bucket = path.split(String.valueOf(S3BackupPath.PATH_SEP))[0];
+        int failed = 0;
+        for (List<AbstractBackupPath> batch : Lists.partition(files, MAX_DELETE_KEYS)) {
+            List<DeleteObjectsRequest.KeyVersion> keys = batch.stream().map(file -> new DeleteObjectsRequest.KeyVersion(file.getRemotePath())).collect(Collectors.toList());
+            try {
+                //Quiet mode, only the keys which could not be deleted are returned.
+                getS3Client().deleteObjects(new DeleteObjectsRequest(bucket).withKeys(keys).withQuiet(true));
+            } catch (MultiObjectDeleteException e) {
+                for (MultiObjectDeleteException.DeleteError error : e.getErrors())
+                    logger.error("Failed to delete {}: {} {}", error.getKey(), error.getCode(), error.getMessage());
+                failed += e.getErrors().size();
+            } catch (AmazonClientException e) {
+                throw new BackupRestoreException("Failed to delete files from " + bucket + ": " + e.getMessage(), e);
+            }
+        }
+        if (failed > 0)
+            throw new BackupRestoreException("Failed to delete " + failed + " of " + files.size() + " files from " + bucket);
+    }
+
     /*
     @param path - representation of the file uploaded
     @param start time of upload, in millisecs
@@ -319,7 +359,7 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
         logger.info("Downloading {} from S3 bucket {}", path.getRemotePath(), getPrefix(this.config));
         downloadCount.incrementAndGet();
         long contentLen = s3Client.getObjectMetadata(getPrefix(config), path.getRemotePath()).getContentLength();
-        path.setSize(contentLen);
+        path.setCompressedFileSize(contentLen);
         downloadFile(path, os);
         bytesDownloaded.addAndGet(contentLen);
     }
@@ -340,17 +380,18 @@ public abstract class S3FileSystemBase implements IBackupFileSystem, EventGenera
     public void shutdown() {
         if (executor != null)
             executor.shutdown();
+        listingExecutor.shutdown();
 
     }
 
     @Override
     public Iterator<AbstractBackupPath> listPrefixes(Date date) {
-        return new S3PrefixIterator(config, pathProvider, s3Client, date);
+        return new S3PrefixIterator(config, pathProvider, s3Client, date, listingExecutor);
     }
 
     @Override
     public Iterator<AbstractBackupPath> list(String path, Date start, Date till) {
-        return new S3FileIterator(pathProvider, s3Client, path, start, till);
+        return new S3FileIterator(pathProvider, s3Client, path, start, till, listingExecutor, config.getBackupListingThreads());
     }
 
 
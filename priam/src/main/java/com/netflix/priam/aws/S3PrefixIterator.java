@@ -32,17 +32,22 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Class to iterate over prefixes (S3 Common prefixes) upto 
  * the token element in the path. The abstract path generated by this class
  * is partial (does not have all data). 
+ * The existence of a backup for the date is checked for all the prefixes of a listing concurrently.
  */
 public class S3PrefixIterator implements Iterator<AbstractBackupPath> {
     private static final Logger logger = LoggerFactory.getLogger(S3PrefixIterator.class);
     private final IConfiguration config;
     private final AmazonS3 s3Client;
     private final Provider<AbstractBackupPath> pathProvider;
+    private final ExecutorService executor;
     private Iterator<AbstractBackupPath> iterator;
 
     private String bucket = "";
@@ -52,10 +57,11 @@ public class S3PrefixIterator implements Iterator<AbstractBackupPath> {
     Date date;
 
     @Inject
-    public S3PrefixIterator(IConfiguration config, Provider<AbstractBackupPath> pathProvider, AmazonS3 s3Client, Date date) {
+    public S3PrefixIterator(IConfiguration config, Provider<AbstractBackupPath> pathProvider, AmazonS3 s3Client, Date date, ExecutorService executor) {
         this.config = config;
         this.pathProvider = pathProvider;
         this.s3Client = s3Client;
+        this.executor = executor;
         this.date = date;
         String path = "";
         if (StringUtils.isNotBlank(config.getRestorePrefix()))
@@ -83,13 +89,29 @@ public class S3PrefixIterator implements Iterator<AbstractBackupPath> {
     private Iterator<AbstractBackupPath> createIterator() {
         if (objectListing == null)
             initListing();
+        String datestr = datefmt.format(date);
+        List<Future<Boolean>> exists = Lists.newArrayList();
+        for (String summary : objectListing.getCommonPrefixes())
+            exists.add(executor.submit(() -> pathExistsForDate(summary, datestr)));
+
         List<AbstractBackupPath> temp = Lists.newArrayList();
-        for (String summary : objectListing.getCommonPrefixes()) {
-            if (pathExistsForDate(summary, datefmt.format(date))) {
-                AbstractBackupPath path = pathProvider.get();
-                path.parsePartialPrefix(summary);
-                temp.add(path);
+        try {
+            for (int i = 0; i < exists.size(); i++) {
+                if (exists.get(i).get()) {
+                    AbstractBackupPath path = pathProvider.get();
+                    path.parsePartialPrefix(objectListing.getCommonPrefixes().get(i));
+                    temp.add(path);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while listing the backups of " + clusterPath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            exists.forEach(future -> future.cancel(true));
         }
         return temp.iterator();
     }
@@ -143,6 +165,8 @@ public class S3PrefixIterator implements Iterator<AbstractBackupPath> {
         // Get list of tokens
         listReq.setBucketName(bucket);
         listReq.setPrefix(tprefix + datestr);
+        //Only the existence matters.
+        listReq.setMaxKeys(1);
         ObjectListing listing;
         listing = s3Client.listObjects(listReq);
         return listing.getObjectSummaries().size() > 0;
@@ -18,6 +18,8 @@ package com.netflix.priam.backup;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.netflix.priam.IConfiguration;
@@ -33,9 +35,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -83,6 +91,16 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
             //== decorate file with metadata
             final AbstractBackupPath bp = pathFactory.get();
             bp.parseLocal(file, type);
+            fileFound(bp);
+
+            AbstractBackupPath uploaded = getUploadedCopy(bp);
+            if (uploaded != null) {
+                logger.info("File {} is already backed up as {}, skipping upload", file.getCanonicalFile(), uploaded.getRemotePath());
+                fileUploaded(bp, uploaded);
+                file.delete();
+                bps.add(uploaded);
+                continue;
+            }
 
             try {
                 logger.info("About to upload file {} for backup", file.getCanonicalFile());
@@ -90,6 +108,7 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
                 AbstractBackupPath abp = new RetryableCallable<AbstractBackupPath>(3, RetryableCallable.DEFAULT_WAIT_TIME) {
                     public AbstractBackupPath retriableCall() throws Exception {
                         upload(bp);
+                        fileUploaded(bp, bp);
                         file.delete();
                         return bp;
                     }
@@ -107,6 +126,31 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
     }
 
 
+    /**
+     * Called when a file to be backed up is found, before it is uploaded.
+     */
+    protected void fileFound(AbstractBackupPath bp) {
+    }
+
+    /**
+     * Called when a file is backed up, before the local file is deleted.
+     *
+     * @param bp       local file.
+     * @param uploaded backed up copy of the file, bp itself unless an already backed up copy is referenced.
+     */
+    protected void fileUploaded(AbstractBackupPath bp, AbstractBackupPath uploaded) {
+    }
+
+    /**
+     * Find the copy of a file which is already backed up, so it does not need to be uploaded again.
+     *
+     * @param bp file about to be uploaded.
+     * @return the backed up copy of the file, null if the file has to be uploaded.
+     */
+    protected AbstractBackupPath getUploadedCopy(AbstractBackupPath bp) {
+        return null;
+    }
+
     /**
      * Upload specified file (RandomAccessFile) with retries
      *
@@ -116,14 +160,16 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
         new RetryableCallable<Void>() {
             @Override
             public Void retriableCall() throws Exception {
-                java.io.InputStream is = null;
+                HashingInputStream is = null;
                 try {
-                    is = bp.localReader();
-                    if (is == null) {
+                    InputStream reader = bp.localReader();
+                    if (reader == null) {
                         throw new NullPointerException("Unable to get handle on file: " + bp.fileName);
                     }
+                    is = new HashingInputStream(Hashing.md5(), reader);
                     fs.upload(bp, is);
-                    bp.setCompressedFileSize(fs.getBytesUploaded());
+                    bp.setChecksum(SystemUtils.toHex(is.hash().asBytes()));
+                    bp.setUploadedTs(new Date());
                     bp.setAWSSlowDownExceptionCounter(fs.getAWSSlowDownExceptionCounter());
                     return null;
                 } catch (Exception e) {
@@ -139,6 +185,10 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
     }
 
     protected final void initiateBackup(String monitoringFolder, BackupRestoreUtil backupRestoreUtil) throws IllegalArgumentException, Exception {
+        initiateBackup(monitoringFolder, backupRestoreUtil, null);
+    }
+
+    private void initiateBackup(String monitoringFolder, BackupRestoreUtil backupRestoreUtil, BackupPriorityClassifier priorityClassifier) throws Exception {
 
         File dataDir = new File(config.getDataFileLocation());
         if (!dataDir.exists()) {
@@ -146,6 +196,7 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
                     + config.getDataFileLocation());
         }
         logger.debug("Scanning for backup in: {}", dataDir.getAbsolutePath());
+        List<File> backupDirs = new ArrayList<>();
         for (File keyspaceDir : dataDir.listFiles()) {
             if (keyspaceDir.isFile())
                 continue;
@@ -153,29 +204,71 @@ public abstract class AbstractBackup extends Task implements EventGenerator<Back
             logger.debug("Entering {} keyspace..", keyspaceDir.getName());
 
             for (File columnFamilyDir : keyspaceDir.listFiles()) {
-                File backupDir = new File(columnFamilyDir, monitoringFolder);
+                backupDirs.add(new File(columnFamilyDir, monitoringFolder));
+            } //end processing all CFs for keyspace
+        } //end processing keyspaces under the C* data dir
 
-                if (!isValidBackupDir(keyspaceDir, columnFamilyDir, backupDir)) {
-                    continue;
-                }
+        backupDirectories(backupDirs, backupRestoreUtil, priorityClassifier);
+    }
 
-                String dirName = columnFamilyDir.getName();
-                String columnFamilyName = dirName.split("-")[0];
-
-                if (backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.KEYSPACE, keyspaceDir.getName()) || //keyspace is filtered
-                        backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.CF, keyspaceDir.getName(), columnFamilyDir.getName()) //columnfamily is filtered
-                        || (FILTER_COLUMN_FAMILY.containsKey(keyspaceDir.getName()) && FILTER_COLUMN_FAMILY.get(keyspaceDir.getName()).contains(columnFamilyName)) //column family is in list of global CF filter
-                        ) { //CF filtered?
-                    logger.info("Skipping: keyspace: {}, CF: {} is part of filter list. Will clean up files from: {}", keyspaceDir.getName(), columnFamilyDir.getName(), backupDir.getName());
-                    //Clean the backup/snapshot directory else files will keep getting accumulated.
-                    SystemUtils.cleanupDir(backupDir.getAbsolutePath(), null);
-                    continue;
-                }
+    /**
+     * Back up the directories, those of the tables with the highest priority first if a classifier is given.
+     */
+    private void backupDirectories(Collection<File> backupDirs, BackupRestoreUtil backupRestoreUtil, BackupPriorityClassifier priorityClassifier) throws Exception {
+        List<File> orderedDirs = new ArrayList<>(backupDirs);
+        if (priorityClassifier != null)
+            orderedDirs.sort(Comparator.comparing(backupDir -> priorityClassifier.classify(backupDir.getParentFile().getParentFile().getName(), backupDir.getParentFile().getName())));
+
+        for (File backupDir : orderedDirs) {
+            File columnFamilyDir = backupDir.getParentFile();
+            backupDirectory(columnFamilyDir.getParentFile(), columnFamilyDir, backupDir, backupRestoreUtil);
+        }
+    }
 
-                backupUploadFlow(backupDir);
-            } //end processing all CFs for keyspace
-        } //end processing keyspaces under the C* data dir
+    /**
+     * Back up the incremental backup directories in which Cassandra linked new files, or all of them if they are not
+     * watched, see {@link IncrementalBackupWatcher}. The directories of the tables with the highest priority are backed
+     * up first, see {@link BackupPriorityClassifier}.
+     */
+    protected final void initiateIncrementalBackup(IncrementalBackupWatcher watcher, BackupRestoreUtil backupRestoreUtil, BackupPriorityClassifier priorityClassifier) throws Exception {
+        if (!config.isIncrementalBackupWatchEnabled()) {
+            initiateBackup(IncrementalBackupWatcher.INCREMENTAL_BACKUP_FOLDER, backupRestoreUtil, priorityClassifier);
+            return;
+        }
+
+        Set<File> changedDirs = watcher.changedDirectories();
+        if (changedDirs == null) {
+            initiateBackup(IncrementalBackupWatcher.INCREMENTAL_BACKUP_FOLDER, backupRestoreUtil, priorityClassifier);
+            return;
+        }
+        backupDirectories(changedDirs, backupRestoreUtil, priorityClassifier);
+    }
+
+    private void backupDirectory(File keyspaceDir, File columnFamilyDir, File backupDir, BackupRestoreUtil backupRestoreUtil) throws Exception {
+        if (!isValidBackupDir(keyspaceDir, columnFamilyDir, backupDir)) {
+            return;
+        }
+
+        if (isFiltered(keyspaceDir, columnFamilyDir, backupRestoreUtil)) {
+            logger.info("Skipping: keyspace: {}, CF: {} is part of filter list. Will clean up files from: {}", keyspaceDir.getName(), columnFamilyDir.getName(), backupDir.getName());
+            //Clean the backup/snapshot directory else files will keep getting accumulated.
+            SystemUtils.cleanupDir(backupDir.getAbsolutePath(), null);
+            return;
+        }
+
+        backupUploadFlow(backupDir);
+    }
+
+    /**
+     * @return true if the column family is not backed up, because of the configured filters or the global filters.
+     */
+    protected final boolean isFiltered(File keyspaceDir, File columnFamilyDir, BackupRestoreUtil backupRestoreUtil) {
+        String dirName = columnFamilyDir.getName();
+        String columnFamilyName = dirName.split("-")[0];
 
+        return backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.KEYSPACE, keyspaceDir.getName()) || //keyspace is filtered
+                backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.CF, keyspaceDir.getName(), columnFamilyDir.getName()) //columnfamily is filtered
+                || (FILTER_COLUMN_FAMILY.containsKey(keyspaceDir.getName()) && FILTER_COLUMN_FAMILY.get(keyspaceDir.getName()).contains(columnFamilyName)); //column family is in list of global CF filter
     }
 
     protected abstract void backupUploadFlow(File backupDir) throws Exception;
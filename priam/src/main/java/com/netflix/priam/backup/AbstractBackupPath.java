@@ -16,6 +16,7 @@
  */
 package com.netflix.priam.backup;
 
+import com.google.common.hash.Hashing;
 import com.google.inject.ImplementedBy;
 import com.netflix.priam.IConfiguration;
 import com.netflix.priam.aws.S3BackupPath;
@@ -32,9 +33,14 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @ImplementedBy(S3BackupPath.class)
 public abstract class AbstractBackupPath implements Comparable<AbstractBackupPath> {
@@ -42,6 +48,8 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
     private static final String FMT = "yyyyMMddHHmm";
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormat.forPattern(FMT);
     public static final char PATH_SEP = File.separatorChar;
+    //Date as a yyyyMMddHHmm number and its time in millis.
+    private static final ThreadLocal<long[]> LAST_PARSED_DATE = ThreadLocal.withInitial(() -> new long[]{-1, 0});
 
     public enum BackupFileType {
         SNAP, SST, CL, META
@@ -58,6 +66,7 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
     protected Date time;
     protected long size; //uncompressed file size
     protected long compressedFileSize = 0;
+    protected String checksum; //md5 of the uncompressed file in hex format
     protected boolean isCassandra1_0;
 
     protected final InstanceIdentity instanceIdentity;
@@ -65,6 +74,11 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
     protected File backupFile;
     protected Date uploadedTs;
     protected int awsSlowDownExceptionCounter = 0;
+    //Remote path and its hash are computed once. The components of the path must only be changed by the parse methods
+    //and the setters, which reset them.
+    private String remotePath;
+    private long remotePathHash;
+    private boolean remotePathHashed = false;
 
     public AbstractBackupPath(IConfiguration config, InstanceIdentity instanceIdentity) {
         this.instanceIdentity = instanceIdentity;
@@ -72,11 +86,34 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
     }
 
     public static String formatDate(Date d) {
-        return new DateTime(d).toString(FMT);
+        return DATE_FORMAT.print(d.getTime());
     }
 
     public Date parseDate(String s) {
-        return DATE_FORMAT.parseDateTime(s).toDate();
+        return parseDate(s, 0, s.length());
+    }
+
+    /**
+     * Parse the date between begin and end of s. Dates in the format of the backup paths are parsed without intermediate
+     * objects, and the last date parsed by the thread is reused as the keys of a listing share few distinct times.
+     */
+    protected static Date parseDate(String s, int begin, int end) {
+        if (end - begin != FMT.length())
+            return DATE_FORMAT.parseDateTime(s.substring(begin, end)).toDate();
+        long value = 0;
+        for (int i = begin; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return DATE_FORMAT.parseDateTime(s.substring(begin, end)).toDate();
+            value = value * 10 + (c - '0');
+        }
+        long[] last = LAST_PARSED_DATE.get();
+        if (last[0] != value) {
+            last[1] = new DateTime((int) (value / 100000000L), (int) (value / 1000000 % 100), (int) (value / 10000 % 100),
+                    (int) (value / 100 % 100), (int) (value % 100)).getMillis();
+            last[0] = value;
+        }
+        return new Date(last[1]);
     }
 
     public InputStream localReader() throws IOException {
@@ -86,6 +123,7 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
 
     public void parseLocal(File file, BackupFileType type) throws ParseException {
         // TODO cleanup.
+        resetRemotePath();
         this.backupFile = file;
 
         String rpath = new File(config.getDataFileLocation()).toURI().relativize(file.toURI()).getPath();
@@ -160,10 +198,43 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
         return getRemotePath().equals(((AbstractBackupPath) obj).getRemotePath());
     }
 
+    @Override
+    public int hashCode() {
+        return getRemotePath().hashCode();
+    }
+
     /**
      * Get remote prefix for this path object
      */
-    public abstract String getRemotePath();
+    public String getRemotePath() {
+        if (remotePath == null)
+            remotePath = buildRemotePath();
+        return remotePath;
+    }
+
+    /**
+     * Build the remote path from its components.
+     */
+    protected abstract String buildRemotePath();
+
+    /**
+     * Forget the remote path computed, to be called when a component of the path changes.
+     */
+    protected void resetRemotePath() {
+        remotePath = null;
+        remotePathHashed = false;
+    }
+
+    /**
+     * 64 bit hash of the remote path. A compact key to identify this file e.g. to track the files already restored.
+     */
+    public long getRemotePathHash() {
+        if (!remotePathHashed) {
+            remotePathHash = Hashing.murmur3_128().hashString(getRemotePath(), StandardCharsets.UTF_8).asLong();
+            remotePathHashed = true;
+        }
+        return remotePathHash;
+    }
 
     /**
      * Parses a fully constructed remote path
@@ -181,6 +252,65 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
      */
     public abstract String remotePrefix(Date start, Date end, String location);
 
+    /**
+     * Provides disjoint prefixes, in listing order, which together match all objects that fall between the start and
+     * end time: one prefix per year, month, day, hour or minute of the range, using the finest unit which gives at
+     * most maxPrefixes prefixes. A range within a single minute is split by file type.
+     */
+    public List<String> remotePrefixes(Date start, Date end, String location, int maxPrefixes) {
+        String prefix = remotePrefix(start, end, location);
+        String common = match(start, end);
+        if (common.length() == FMT.length()) {
+            List<String> prefixes = new ArrayList<>();
+            for (BackupFileType type : BackupFileType.values())
+                prefixes.add(prefix + PATH_SEP + type + PATH_SEP);
+            Collections.sort(prefixes);
+            return prefixes;
+        }
+
+        String nodePrefix = prefix.substring(0, prefix.length() - common.length());
+        for (int length = FMT.length(); length > common.length() && length >= 4; length -= 2) {
+            List<String> dates = datePrefixes(start, end, length, maxPrefixes);
+            if (dates != null)
+                return dates.stream().map(date -> nodePrefix + date).collect(Collectors.toList());
+        }
+        return Collections.singletonList(prefix);
+    }
+
+    /**
+     * Distinct prefixes of the given length of the formatted times between start and end, null if there are more than
+     * maxPrefixes.
+     */
+    private static List<String> datePrefixes(Date start, Date end, int length, int maxPrefixes) {
+        String last = formatDate(end).substring(0, length);
+        List<String> prefixes = new ArrayList<>();
+        for (DateTime time = new DateTime(start); ; time = plusUnit(time, length)) {
+            String current = formatDate(time.toDate()).substring(0, length);
+            if (current.compareTo(last) > 0)
+                return prefixes;
+            if (prefixes.isEmpty() || !prefixes.get(prefixes.size() - 1).equals(current)) {
+                if (prefixes.size() == maxPrefixes)
+                    return null;
+                prefixes.add(current);
+            }
+        }
+    }
+
+    private static DateTime plusUnit(DateTime time, int length) {
+        switch (length) {
+            case 4:
+                return time.plusYears(1);
+            case 6:
+                return time.plusMonths(1);
+            case 8:
+                return time.plusDays(1);
+            case 10:
+                return time.plusHours(1);
+            default:
+                return time.plusMinutes(1);
+        }
+    }
+
     /**
      * Provides the cluster prefix
      */
@@ -192,6 +322,7 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
 
     public void setType(BackupFileType type) {
         this.type = type;
+        resetRemotePath();
     }
 
     public String getClusterName() {
@@ -226,6 +357,11 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
         return time;
     }
 
+    public void setTime(Date time) {
+        this.time = time;
+        resetRemotePath();
+    }
+
     /*
     @return original, uncompressed file size
      */
@@ -245,6 +381,14 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
         this.compressedFileSize = val;
     }
 
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
     public File getBackupFile() {
         return backupFile;
     }
@@ -255,10 +399,12 @@ public abstract class AbstractBackupPath implements Comparable<AbstractBackupPat
 
     public void setCassandra1_0(boolean isCassandra1_0) {
         this.isCassandra1_0 = isCassandra1_0;
+        resetRemotePath();
     }
 
     public void setFileName(String fileName) {
         this.fileName = fileName;
+        resetRemotePath();
     }
 
     public InstanceIdentity getInstanceIdentity() {
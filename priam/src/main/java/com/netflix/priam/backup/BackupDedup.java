@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Record of the SSTables uploaded by this node, so that a snapshot can reference an SSTable which is already backed up
+ * (as an incremental or by a previous snapshot) instead of uploading it again. SSTables are immutable: a file with the
+ * same keyspace, table and file name (which holds the generation), size and checksum is the same SSTable.
+ * <p>
+ * The record is kept locally in the {@link BackupManifest} format. If it is lost, SSTables are simply uploaded again.
+ * An SSTable is only referenced if it was uploaded within the backup retention period, see
+ * {@link IConfiguration#isBackupDedupEnabled()}. Referenced objects are kept by the {@link BackupGarbageCollector},
+ * so nothing is deduplicated unless it is enabled.
+ */
+@Singleton
+public class BackupDedup {
+    private static final Logger logger = LoggerFactory.getLogger(BackupDedup.class);
+    private static final String NAME = "dedup";
+    //Objects about to leave the retention period are not referenced, so they are not removed while a snapshot referencing them is uploaded.
+    private static final int RETENTION_MARGIN_DAYS = 1;
+    private final IConfiguration config;
+    private final Provider<AbstractBackupPath> pathFactory;
+    private Map<String, AbstractBackupPath> uploadedFiles;
+
+    @Inject
+    public BackupDedup(IConfiguration config, Provider<AbstractBackupPath> pathFactory) {
+        this.config = config;
+        this.pathFactory = pathFactory;
+        if (config.isBackupDedupEnabled() && !isGcDeleting())
+            logger.warn("Backup dedup requires the backup garbage collector without dry run, SSTables are uploaded with every snapshot");
+    }
+
+    private boolean isGcDeleting() {
+        return config.isBackupGcEnabled() && !config.isBackupGcDryRun();
+    }
+
+    private boolean isEnabled() {
+        //Unless the garbage collector deletes objects, objects expire by age even if a newer snapshot references them.
+        return config.isBackupDedupEnabled() && isGcDeleting();
+    }
+
+    private static String getKey(AbstractBackupPath path) {
+        return path.getKeyspace() + AbstractBackupPath.PATH_SEP + path.getColumnFamily() + AbstractBackupPath.PATH_SEP + path.getFileName();
+    }
+
+    private Map<String, AbstractBackupPath> getUploadedFiles() {
+        if (uploadedFiles != null)
+            return uploadedFiles;
+
+        uploadedFiles = new HashMap<>();
+        File file = new File(config.getBackupDedupLocation());
+        if (!file.exists())
+            return uploadedFiles;
+
+        try (BackupManifest.Reader reader = new BackupManifest.Reader(file, pathFactory)) {
+            while (reader.hasNext()) {
+                AbstractBackupPath path = reader.next();
+                uploadedFiles.put(getKey(path), path);
+            }
+            logger.info("Loaded {} uploaded SSTables from {}", uploadedFiles.size(), file.getAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read the uploaded SSTables from {}, SSTables will be uploaded again. Msg: {}", file.getAbsolutePath(), e.getMessage(), e);
+            uploadedFiles.clear();
+            FileUtils.deleteQuietly(file);
+        }
+        return uploadedFiles;
+    }
+
+    private boolean isReferenceable(AbstractBackupPath path, Date now) {
+        if (path.getUploadedTs() == null || StringUtils.isEmpty(path.getChecksum()))
+            return false;
+        if (config.getBackupRetentionDays() <= 0)
+            return true;
+        return path.getUploadedTs().after(new DateTime(now).minusDays(config.getBackupRetentionDays() - RETENTION_MARGIN_DAYS).toDate());
+    }
+
+    /**
+     * Record SSTables which were uploaded.
+     * @param paths uploaded SSTables, incremental or snapshot files.
+     */
+    public synchronized void add(List<AbstractBackupPath> paths) {
+        if (!isEnabled())
+            return;
+
+        Map<String, AbstractBackupPath> uploaded = getUploadedFiles();
+        List<AbstractBackupPath> added = new ArrayList<>();
+        for (AbstractBackupPath path : paths) {
+            if (path.getType() != BackupFileType.SST && path.getType() != BackupFileType.SNAP)
+                continue;
+            if (path.getUploadedTs() == null || StringUtils.isEmpty(path.getChecksum()))
+                continue;
+            AbstractBackupPath previous = uploaded.get(getKey(path));
+            //Snapshot files referencing an SSTable which was already uploaded.
+            if (previous != null && previous.getRemotePath().equals(path.getRemotePath()))
+                continue;
+            uploaded.put(getKey(path), path);
+            added.add(path);
+        }
+
+        if (added.isEmpty())
+            return;
+
+        File file = new File(config.getBackupDedupLocation());
+        try {
+            if (!file.exists()) {
+                file.getAbsoluteFile().getParentFile().mkdirs();
+                new BackupManifest.Writer(file, NAME).close();
+            }
+            try (BackupManifest.Writer writer = BackupManifest.Writer.append(file)) {
+                for (AbstractBackupPath path : added)
+                    writer.add(path);
+            }
+        } catch (IOException e) {
+            //Kept in memory, the files are uploaded again after a restart.
+            logger.error("Failed to record the uploaded SSTables in {}: {}", file.getAbsolutePath(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find the uploaded copy of a local SSTable.
+     * @param local SSTable about to be uploaded.
+     * @return the uploaded copy, null if the SSTable has to be uploaded.
+     */
+    public AbstractBackupPath find(AbstractBackupPath local) {
+        if (!isEnabled())
+            return null;
+
+        AbstractBackupPath uploaded;
+        synchronized (this) {
+            uploaded = getUploadedFiles().get(getKey(local));
+        }
+
+        if (uploaded == null || uploaded.getSize() != local.getSize() || !isReferenceable(uploaded, new Date()))
+            return null;
+
+        //Only objects in the location the file would be uploaded to, which is the location restores and cleanup look at.
+        if (!uploaded.getBaseDir().equals(local.getBaseDir()) || !uploaded.getRegion().equals(local.getRegion())
+                || !uploaded.getClusterName().equals(local.getClusterName()) || !uploaded.getNodeIdentifier().equals(local.getNodeIdentifier()))
+            return null;
+
+        try {
+            String checksum = SystemUtils.toHex(Files.asByteSource(local.getBackupFile()).hash(Hashing.md5()).asBytes());
+            return checksum.equalsIgnoreCase(uploaded.getChecksum()) ? uploaded : null;
+        } catch (IOException e) {
+            logger.warn("Failed to compute the checksum of {}, uploading it. Msg: {}", local.getBackupFile(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Forget the SSTables which can no longer be referenced, to keep the local record small.
+     */
+    public synchronized void compact() {
+        if (!isEnabled())
+            return;
+
+        Date now = new Date();
+        Map<String, AbstractBackupPath> uploaded = getUploadedFiles();
+        uploaded.values().removeIf(path -> !isReferenceable(path, now));
+
+        File file = new File(config.getBackupDedupLocation());
+        File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+        try {
+            tmpFile.getParentFile().mkdirs();
+            try (BackupManifest.Writer writer = new BackupManifest.Writer(tmpFile, NAME)) {
+                for (AbstractBackupPath path : uploaded.values())
+                    writer.add(path);
+            }
+            java.nio.file.Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to compact the uploaded SSTables in {}: {}", file.getAbsolutePath(), e.getMessage(), e);
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 public abstract class BackupFileSystemAdapter implements IBackupFileSystem {
 
@@ -39,6 +40,9 @@ public abstract class BackupFileSystemAdapter implements IBackupFileSystem {
     public void cleanup() {
     }
 
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+    }
+
     public int getActivecount() {
         return 0;
     }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.scheduler.CronTimer;
+import com.netflix.priam.scheduler.Task;
+import com.netflix.priam.scheduler.TaskTimer;
+import com.netflix.priam.utils.ConcurrentLongHashSet;
+import com.netflix.priam.utils.GsonJsonSerializer;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Deletes the backup objects of this node which are no longer needed, see {@link IConfiguration#isBackupGcEnabled()}.
+ * <p>
+ * A restore to any time within the retention period starts from the last snapshot taken before that time, so all the
+ * objects from the last snapshot taken before the retention period onwards are kept. Older objects are deleted unless
+ * the meta file of a retained snapshot references them, which is the case when snapshots reference SSTables already
+ * backed up (see {@link IConfiguration#isBackupDedupEnabled()}). Nothing is deleted if there is no snapshot older than
+ * the retention period.
+ */
+@Singleton
+public class BackupGarbageCollector extends Task {
+    public static final String JOBNAME = "BackupGarbageCollector";
+    private static final Logger logger = LoggerFactory.getLogger(BackupGarbageCollector.class);
+    private static final String SNAPSHOT_META_FILE = "meta.json";
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final int MAX_SAMPLE_FILES = 100;
+    private final IBackupFileSystem fs;
+    private final Provider<AbstractBackupPath> pathFactory;
+
+    /**
+     * Outcome of a garbage collection.
+     */
+    public static class Report {
+        public boolean dryRun;
+        public Date deleteBefore;
+        public int retainedSnapshots;
+        public long referencedFiles;
+        public long scannedFiles;
+        public long deletableFiles;
+        public long deletableBytes;
+        public long deletedFiles;
+        public int failedBatches;
+        public final List<String> sampleFiles = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return GsonJsonSerializer.getGson().toJson(this);
+        }
+    }
+
+    @Inject
+    public BackupGarbageCollector(IConfiguration config, @Named("backup") IBackupFileSystem fs, Provider<AbstractBackupPath> pathFactory) {
+        super(config);
+        this.fs = fs;
+        this.pathFactory = pathFactory;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        Report report = collect(config.isBackupGcDryRun());
+        logger.info("Backup garbage collection finished: {}", report);
+    }
+
+    Date now() {
+        return new Date();
+    }
+
+    /**
+     * Find, and unless dryRun is set delete, the unreferenced backup objects of this node.
+     * @param dryRun only report the objects which would be deleted.
+     * @return report of the garbage collection.
+     * @throws Exception if the backup location could not be listed or a retained meta file could not be read.
+     */
+    public Report collect(boolean dryRun) throws Exception {
+        Report report = new Report();
+        report.dryRun = dryRun;
+        if (config.getBackupRetentionDays() <= 0) {
+            logger.info("Backups are retained forever, skipping garbage collection.");
+            return report;
+        }
+
+        String prefix = config.getBackupPrefix();
+        Date now = now();
+        Date cutoff = new DateTime(now).minusDays(config.getBackupRetentionDays()).toDate();
+
+        List<AbstractBackupPath> snapshots = new ArrayList<>();
+        Iterator<AbstractBackupPath> files = fs.list(prefix, new Date(0), now);
+        while (files.hasNext()) {
+            AbstractBackupPath path = files.next();
+            if (path.getType() == BackupFileType.META && SNAPSHOT_META_FILE.equals(path.getFileName()))
+                snapshots.add(path);
+        }
+
+        for (AbstractBackupPath snapshot : snapshots) {
+            if (!snapshot.getTime().after(cutoff) && (report.deleteBefore == null || snapshot.getTime().after(report.deleteBefore)))
+                report.deleteBefore = snapshot.getTime();
+        }
+        if (report.deleteBefore == null) {
+            logger.info("No snapshot older than {}, skipping garbage collection.", cutoff);
+            return report;
+        }
+
+        //A hash collision can only keep an unreferenced object.
+        ConcurrentLongHashSet referenced = new ConcurrentLongHashSet(1024);
+        for (AbstractBackupPath snapshot : snapshots) {
+            if (snapshot.getTime().before(report.deleteBefore))
+                continue;
+            report.retainedSnapshots++;
+            report.referencedFiles += addReferences(snapshot, referenced);
+        }
+        logger.info("Deleting objects before {} not referenced by {} retained snapshots", report.deleteBefore, report.retainedSnapshots);
+
+        List<AbstractBackupPath> batch = new ArrayList<>();
+        files = fs.list(prefix, new Date(0), report.deleteBefore);
+        while (files.hasNext()) {
+            AbstractBackupPath path = files.next();
+            if (!path.getTime().before(report.deleteBefore))
+                continue;
+            report.scannedFiles++;
+            if (referenced.contains(path.getRemotePathHash()))
+                continue;
+
+            report.deletableFiles++;
+            report.deletableBytes += path.getCompressedFileSize();
+            if (report.sampleFiles.size() < MAX_SAMPLE_FILES)
+                report.sampleFiles.add(path.getRemotePath());
+            if (dryRun)
+                continue;
+
+            batch.add(path);
+            if (batch.size() == DELETE_BATCH_SIZE) {
+                delete(prefix, batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            delete(prefix, batch, report);
+        return report;
+    }
+
+    private long addReferences(AbstractBackupPath snapshot, ConcurrentLongHashSet referenced) throws Exception {
+        File metaFile = File.createTempFile("gc_meta", ".json");
+        try {
+            fs.download(snapshot, new FileOutputStream(metaFile));
+            long count = 0;
+            try (BackupManifest.Reader reader = new BackupManifest.Reader(metaFile, pathFactory)) {
+                while (reader.hasNext()) {
+                    referenced.add(reader.next().getRemotePathHash());
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            throw new BackupRestoreException("Failed to read meta file " + snapshot.getRemotePath() + ": " + e.getMessage(), e);
+        } finally {
+            FileUtils.deleteQuietly(metaFile);
+        }
+    }
+
+    private void delete(String prefix, List<AbstractBackupPath> batch, Report report) {
+        try {
+            fs.deleteFiles(prefix, batch);
+            report.deletedFiles += batch.size();
+        } catch (BackupRestoreException e) {
+            logger.error("Failed to delete {} backup objects: {}", batch.size(), e.getMessage(), e);
+            report.failedBatches++;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return JOBNAME;
+    }
+
+    public static TaskTimer getTimer(IConfiguration config) {
+        if (!config.isBackupGcEnabled())
+            return null;
+        return new CronTimer(JOBNAME, config.getBackupGcCronExpression());
+    }
+}
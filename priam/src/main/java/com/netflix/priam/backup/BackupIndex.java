@@ -0,0 +1,356 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.common.collect.Iterators;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.utils.RetryableCallable;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-day index of the backed up files, so a restore can find the files of a time range with one GET per day instead of
+ * listing the whole backup location of the node.
+ * <p>
+ * The index of a day lists the snapshot meta files, incremental files and commit logs whose backup time falls on that
+ * day. It is stored in the {@link BackupManifest} format at base/region/cluster/token/yyyyMMdd0000/META/index_yyyyMMdd.json.
+ * As objects can not be appended to, the index is maintained locally and uploaded as a whole. The index of the current
+ * day is uploaded at most every {@link IConfiguration#getBackupIndexUploadIntervalInSecs()}.
+ * <p>
+ * The header of the index holds the period for which it lists every uploaded file: from the creation of the local index
+ * (the index of the next day is created ahead of time) until its upload, or until the backup time of the oldest file
+ * still queued or being uploaded (see {@link #queued(AbstractBackupPath)}) if earlier. A restore uses the index of a day
+ * only when it covers the part of the restore range within that day and lists the backup location for that day otherwise, e.g.
+ * after the local indexes were lost or for the minutes since the last upload of the index. As files uploaded just before
+ * Priam stopped may be missing from the local indexes, new indexes are started when Priam starts.
+ */
+@Singleton
+public class BackupIndex {
+    private static final Logger logger = LoggerFactory.getLogger(BackupIndex.class);
+    public static final String INDEX_FILE_PREFIX = "index_";
+    private static final String INDEX_FILE_SUFFIX = ".json";
+    private static final String UPLOAD_DIR = "upload";
+    //Local indexes of older days are removed. Files added to such day later on start a new, incomplete index.
+    private static final int LOCAL_RETENTION_DAYS = 2;
+    private final IConfiguration config;
+    private final Provider<AbstractBackupPath> pathFactory;
+    private final IBackupFileSystem fs;
+    private final Set<String> pendingDays = new TreeSet<>();
+    private final Map<String, Long> lastUploadTimes = new HashMap<>();
+    //Files uploaded concurrently, appended to the index by the next call to add.
+    private final Queue<AbstractBackupPath> uploaded = new ConcurrentLinkedQueue<>();
+    //Backup time of the files queued or being uploaded, by local path.
+    private final Map<String, Date> inFlight = new ConcurrentHashMap<>();
+    private String currentDay;
+    private String nextDay;
+
+    @Inject
+    public BackupIndex(IConfiguration config, Provider<AbstractBackupPath> pathFactory, IFileSystemContext backupFileSystemCtx) {
+        this(config, pathFactory, backupFileSystemCtx.getFileStrategy(config));
+    }
+
+    BackupIndex(IConfiguration config, Provider<AbstractBackupPath> pathFactory, IBackupFileSystem fs) {
+        this.config = config;
+        this.pathFactory = pathFactory;
+        this.fs = fs;
+    }
+
+    /*
+     * Day of the backup time in yyyyMMdd format, same as the start of the time part of the remote path.
+     */
+    private static String getDay(Date date) {
+        return AbstractBackupPath.formatDate(date).substring(0, 8);
+    }
+
+    private Date parseDay(String day) {
+        return pathFactory.get().parseDate(day + "0000");
+    }
+
+    Date now() {
+        return new Date();
+    }
+
+    private File getLocalFile(String day) {
+        return new File(config.getBackupIndexLocation(), INDEX_FILE_PREFIX + day + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Record a file about to be uploaded by a concurrent uploader. Until {@link #uploaded(AbstractBackupPath)} is called
+     * for it, or its local file no longer exists, the uploaded indexes do not cover its backup time.
+     */
+    public void queued(AbstractBackupPath path) {
+        if (!config.isBackupIndexEnabled() || path.getBackupFile() == null)
+            return;
+        inFlight.merge(path.getBackupFile().getAbsolutePath(), path.getTime(), (time1, time2) -> time1.before(time2) ? time1 : time2);
+    }
+
+    /**
+     * Record a file uploaded by a concurrent uploader, before its local file is deleted. The file is added to the index
+     * by the next call to {@link #add(List)}.
+     */
+    public void uploaded(AbstractBackupPath path) {
+        if (!config.isBackupIndexEnabled())
+            return;
+        //Taken by add() before it is no longer in flight, see getCoveredUntil.
+        uploaded.add(path);
+        if (path.getBackupFile() != null)
+            inFlight.remove(path.getBackupFile().getAbsolutePath());
+    }
+
+    /*
+     * End of the period the uploaded indexes cover: now, or the backup time of the oldest file still queued or being
+     * uploaded. Files which are no longer in flight when this returns were already handed over by uploaded().
+     */
+    private Date getCoveredUntil(Date now) {
+        Date coveredUntil = now;
+        for (Map.Entry<String, Date> entry : inFlight.entrySet()) {
+            //e.g. removed by another uploader, or a kept snapshot which was cleared.
+            if (!new File(entry.getKey()).exists()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            if (entry.getValue().before(coveredUntil))
+                coveredUntil = entry.getValue();
+        }
+        return coveredUntil;
+    }
+
+    /**
+     * Add the uploaded files, and the files recorded by {@link #uploaded(AbstractBackupPath)}, to the index of their day
+     * and upload the indexes which are due. It should be called after every backup run, even if no file was uploaded,
+     * so that the index of the current day is kept up to date.
+     * Failures are logged: restores list the backup location for the days without a complete index.
+     * @param paths files successfully uploaded.
+     */
+    public synchronized void add(List<AbstractBackupPath> paths) {
+        if (!config.isBackupIndexEnabled())
+            return;
+
+        Date now = now();
+        Date coveredUntil = getCoveredUntil(now);
+        File indexDir = new File(config.getBackupIndexLocation());
+        if (currentDay == null)
+            FileUtils.deleteQuietly(indexDir);
+        indexDir.mkdirs();
+
+        Map<String, List<AbstractBackupPath>> pathsByDay = new TreeMap<>();
+        for (AbstractBackupPath path : paths)
+            pathsByDay.computeIfAbsent(getDay(path.getTime()), day -> new ArrayList<>()).add(path);
+        for (AbstractBackupPath path = uploaded.poll(); path != null; path = uploaded.poll())
+            pathsByDay.computeIfAbsent(getDay(path.getTime()), day -> new ArrayList<>()).add(path);
+
+        for (Map.Entry<String, List<AbstractBackupPath>> entry : pathsByDay.entrySet()) {
+            try {
+                append(entry.getKey(), entry.getValue(), now);
+                pendingDays.add(entry.getKey());
+            } catch (Exception e) {
+                //Some files may be missing from the index, start a new one which does not claim to cover the past.
+                logger.error("Failed to add files to the backup index of {}: {}", entry.getKey(), e.getMessage(), e);
+                FileUtils.deleteQuietly(getLocalFile(entry.getKey()));
+            }
+        }
+
+        //The index of a day is uploaded once more after the day is over so it covers the whole day.
+        String today = getDay(now);
+        boolean newDay = !today.equals(currentDay);
+        if (currentDay != null && newDay)
+            pendingDays.add(currentDay);
+        currentDay = today;
+        pendingDays.add(today);
+
+        //Create the index of the next day ahead of time, so it covers the next day from its start.
+        String tomorrow = getDay(new DateTime(now).plusDays(1).toDate());
+        if (!tomorrow.equals(nextDay)) {
+            try {
+                append(tomorrow, Collections.emptyList(), now);
+                nextDay = tomorrow;
+            } catch (Exception e) {
+                logger.error("Failed to create the backup index of {}: {}", tomorrow, e.getMessage(), e);
+            }
+        }
+
+        uploadPending(now, coveredUntil);
+        if (newDay)
+            cleanup(now);
+    }
+
+    private void append(String day, List<AbstractBackupPath> paths, Date now) throws IOException {
+        File indexFile = getLocalFile(day);
+        if (!indexFile.exists()) {
+            File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+            new BackupManifest.Writer(tmpFile, day, now, null).close();
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        if (paths.isEmpty())
+            return;
+
+        try (BackupManifest.Writer writer = BackupManifest.Writer.append(indexFile)) {
+            for (AbstractBackupPath path : paths)
+                writer.add(path);
+        }
+    }
+
+    private void uploadPending(Date now, Date coveredUntil) {
+        Iterator<String> days = pendingDays.iterator();
+        while (days.hasNext()) {
+            String day = days.next();
+            Long lastUploadTime = lastUploadTimes.get(day);
+            if (day.equals(currentDay) && lastUploadTime != null
+                    && now.getTime() - lastUploadTime < config.getBackupIndexUploadIntervalInSecs() * 1000L)
+                continue;
+
+            try {
+                upload(day, coveredUntil);
+                lastUploadTimes.put(day, now.getTime());
+                days.remove();
+            } catch (Exception e) {
+                logger.error("Failed to upload the backup index of {}, will retry: {}", day, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void upload(String day, Date coveredUntil) throws Exception {
+        File indexFile = getLocalFile(day);
+        if (!indexFile.exists())
+            return;
+
+        //Copy of the local index, stating the period it covers.
+        File uploadFile = new File(new File(config.getBackupIndexLocation(), UPLOAD_DIR), indexFile.getName());
+        uploadFile.getParentFile().mkdirs();
+        try {
+            try (BackupManifest.Reader reader = new BackupManifest.Reader(indexFile, pathFactory);
+                 BackupManifest.Writer writer = new BackupManifest.Writer(uploadFile, day, reader.getCoveredFrom(), coveredUntil)) {
+                while (reader.hasNext())
+                    writer.add(reader.next());
+            } catch (IOException | RuntimeException e) {
+                //e.g. a partially written entry after a crash, the content of the local index can not be trusted.
+                FileUtils.deleteQuietly(indexFile);
+                throw e;
+            }
+
+            final AbstractBackupPath bp = pathFactory.get();
+            bp.parseLocal(uploadFile, BackupFileType.META);
+            bp.setTime(parseDay(day));
+            new RetryableCallable<Void>() {
+                @Override
+                public Void retriableCall() throws Exception {
+                    fs.upload(bp, bp.localReader());
+                    return null;
+                }
+            }.call();
+            logger.debug("Uploaded backup index {}", bp.getRemotePath());
+        } finally {
+            FileUtils.deleteQuietly(uploadFile);
+        }
+    }
+
+    private void cleanup(Date now) {
+        String oldestDay = getDay(new DateTime(now).minusDays(LOCAL_RETENTION_DAYS).toDate());
+        File[] files = new File(config.getBackupIndexLocation()).listFiles();
+        //Nothing to clean up if the directory does not exist.
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith(INDEX_FILE_PREFIX) || !name.endsWith(INDEX_FILE_SUFFIX))
+                continue;
+            String day = name.substring(INDEX_FILE_PREFIX.length(), name.length() - INDEX_FILE_SUFFIX.length());
+            if (day.compareTo(oldestDay) < 0 && !pendingDays.contains(day))
+                FileUtils.deleteQuietly(file);
+        }
+        lastUploadTimes.keySet().removeIf(day -> day.compareTo(oldestDay) < 0);
+    }
+
+    /**
+     * Files backed up between start (inclusive) and till (exclusive), same as {@link IBackupFileSystem#list(String, Date, Date)}.
+     * The files of each day are read from the index of that day. Days without an index covering the requested range are
+     * listed from the file system.
+     * @param fs     file system to read the indexes from.
+     * @param prefix backup location to restore from.
+     */
+    public Iterator<AbstractBackupPath> list(IBackupFileSystem fs, String prefix, Date start, Date till) {
+        if (!config.isBackupIndexEnabled())
+            return fs.list(prefix, start, till);
+
+        List<Date> days = new ArrayList<>();
+        for (DateTime day = new DateTime(parseDay(getDay(start))); day.toDate().before(till) || days.isEmpty(); day = day.plusDays(1))
+            days.add(day.toDate());
+
+        //Indexes are read lazily, one day at a time.
+        return Iterators.concat(Iterators.transform(days.iterator(), day -> {
+            Date dayStart = start.after(day) ? start : day;
+            Date nextDay = new DateTime(day).plusDays(1).toDate();
+            Date dayTill = till.before(nextDay) ? till : new Date(nextDay.getTime() - 1);
+            return listDay(fs, prefix, day, dayStart, dayTill);
+        }));
+    }
+
+    private Iterator<AbstractBackupPath> listDay(IBackupFileSystem fs, String prefix, Date day, Date start, Date till) {
+        AbstractBackupPath indexPath = pathFactory.get();
+        indexPath.parseRemote(indexPath.remotePrefix(day, day, prefix) + AbstractBackupPath.PATH_SEP + BackupFileType.META
+                + AbstractBackupPath.PATH_SEP + INDEX_FILE_PREFIX + getDay(day) + INDEX_FILE_SUFFIX);
+
+        File indexFile = null;
+        try {
+            indexFile = File.createTempFile(INDEX_FILE_PREFIX, INDEX_FILE_SUFFIX);
+            try (OutputStream os = new FileOutputStream(indexFile)) {
+                fs.download(indexPath, os);
+            }
+
+            List<AbstractBackupPath> paths = new ArrayList<>();
+            try (BackupManifest.Reader reader = new BackupManifest.Reader(indexFile, pathFactory)) {
+                Date coveredFrom = reader.getCoveredFrom();
+                Date coveredUntil = reader.getCoveredUntil();
+                if (coveredFrom == null || coveredUntil == null || coveredFrom.after(start) || coveredUntil.before(till)) {
+                    logger.info("Backup index {} covers {} to {}, listing the backup files instead.", indexPath.getRemotePath(), coveredFrom, coveredUntil);
+                    return fs.list(prefix, start, till);
+                }
+
+                while (reader.hasNext()) {
+                    AbstractBackupPath path = reader.next();
+                    if ((path.getTime().after(start) && path.getTime().before(till)) || path.getTime().equals(start))
+                        paths.add(path);
+                }
+            }
+            logger.info("Found {} backup files in backup index {}", paths.size(), indexPath.getRemotePath());
+            return paths.iterator();
+        } catch (Exception e) {
+            logger.info("Backup index {} is not available, listing the backup files instead. Msg: {}", indexPath.getRemotePath(), e.getMessage());
+            return fs.list(prefix, start, till);
+        } finally {
+            FileUtils.deleteQuietly(indexFile);
+        }
+    }
+}
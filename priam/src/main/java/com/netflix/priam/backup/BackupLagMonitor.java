@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.merics.BackupLagMeasurement;
+import com.netflix.priam.merics.IMetricPublisher;
+import com.netflix.priam.notification.INotificationService;
+import com.netflix.priam.scheduler.SimpleTimer;
+import com.netflix.priam.scheduler.Task;
+import com.netflix.priam.scheduler.TaskTimer;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the lag of incremental and commit log backups tracked by {@link BackupLagTracker} every minute, and
+ * notifies when the oldest file waiting to be uploaded exceeds the RPO, see {@link IConfiguration#getBackupRpoInSecs()},
+ * and when it no longer does.
+ */
+@Singleton
+public class BackupLagMonitor extends Task {
+    public static final String JOBNAME = "BackupLagMonitor";
+    private static final Logger logger = LoggerFactory.getLogger(BackupLagMonitor.class);
+    private static final long INTERVAL_IN_MILLISECS = 60 * 1000L;
+    private final BackupLagTracker lagTracker;
+    private final IMetricPublisher metricPublisher;
+    private final INotificationService notificationService;
+    private boolean rpoExceeded = false;
+
+    @Inject
+    public BackupLagMonitor(IConfiguration config, BackupLagTracker lagTracker, IMetricPublisher metricPublisher, INotificationService notificationService) {
+        super(config);
+        this.lagTracker = lagTracker;
+        this.metricPublisher = metricPublisher;
+        this.notificationService = notificationService;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        BackupLagTracker.Lag lag = lagTracker.getLag();
+        for (BackupLagTracker.KeyspaceLag keyspaceLag : lag.keyspaces.values()) {
+            BackupLagMeasurement measurement = new BackupLagMeasurement();
+            measurement.setVal(keyspaceLag);
+            if (lag.rpoSecs > 0 && keyspaceLag.oldestPendingAgeSecs > lag.rpoSecs)
+                measurement.incrementFailureCnt(1);
+            else
+                measurement.incrementSuccessCnt(1);
+            metricPublisher.publish(measurement);
+        }
+
+        if (lag.rpoExceeded == rpoExceeded)
+            return;
+        rpoExceeded = lag.rpoExceeded;
+        if (rpoExceeded)
+            logger.error("Backup RPO of {} seconds exceeded, {} files ({} bytes) are waiting to be uploaded, the oldest for {} seconds",
+                    lag.rpoSecs, lag.pendingFiles, lag.pendingBytes, lag.oldestPendingAgeSecs);
+        else
+            logger.info("Backup lag is back within the RPO of {} seconds", lag.rpoSecs);
+        notify(lag);
+    }
+
+    private void notify(BackupLagTracker.Lag lag) {
+        JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put("s3bucketname", config.getBackupPrefix());
+            jsonObject.put("rack", config.getRac());
+            jsonObject.put("rposecs", lag.rpoSecs);
+            jsonObject.put("rpoexceeded", lag.rpoExceeded);
+            jsonObject.put("oldestpendingagesecs", lag.oldestPendingAgeSecs);
+            jsonObject.put("pendingfiles", lag.pendingFiles);
+            jsonObject.put("pendingbytes", lag.pendingBytes);
+            notificationService.notify(jsonObject.toString());
+        } catch (JSONException exception) {
+            logger.error("JSON exception during generation of backup lag notification: {}", exception.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return JOBNAME;
+    }
+
+    public static TaskTimer getTimer() {
+        return new SimpleTimer(JOBNAME, INTERVAL_IN_MILLISECS);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.utils.GsonJsonSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks how far incremental and commit log backups are behind, i.e. the recovery point of the node.
+ * <p>
+ * A file is pending from the time it appeared in a backups (or commit log archive) directory, its last modification
+ * time, until its upload completes. The age of the oldest pending file is the amount of writes which would be lost if
+ * the node was lost now. Upload latencies, from appearance to upload, are kept per keyspace in a histogram. The lag is
+ * exposed over JMX, REST (/v1/backup/lag) and published by {@link BackupLagMonitor}, which alerts when the
+ * oldest pending file is older than {@link IConfiguration#getBackupRpoInSecs()}.
+ */
+@Singleton
+public class BackupLagTracker implements BackupLagTrackerMBean {
+    private static final Logger logger = LoggerFactory.getLogger(BackupLagTracker.class);
+    //Upper bounds of the upload latency buckets, in seconds. The last bucket is unbounded.
+    static final long[] LATENCY_BUCKETS_SECS = {1, 5, 10, 30, 60, 300, 600, 1800, 3600};
+    private final IConfiguration config;
+    //Key is the local path of the file.
+    private final Map<String, PendingFile> pending = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    private static class PendingFile {
+        private final File file;
+        private final String keyspace;
+        private final long appeared;
+        private final long size;
+
+        private PendingFile(File file, String keyspace, long appeared, long size) {
+            this.file = file;
+            this.keyspace = keyspace;
+            this.appeared = appeared;
+            this.size = size;
+        }
+    }
+
+    private static class LatencyHistogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BUCKETS_SECS.length + 1);
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long latencySecs) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_SECS.length && latencySecs > LATENCY_BUCKETS_SECS[bucket])
+                bucket++;
+            buckets.incrementAndGet(bucket);
+            max.accumulateAndGet(latencySecs, Math::max);
+        }
+    }
+
+    /**
+     * Lag of the files of one keyspace, commit logs are reported under {@link AbstractBackupPath.BackupFileType#CL}.
+     */
+    public static class KeyspaceLag {
+        public String keyspace;
+        public int pendingFiles;
+        public long pendingBytes;
+        public long oldestPendingAgeSecs;
+        public long uploadedFiles;
+        public long maxUploadLatencySecs;
+        //Number of uploads by latency, keyed by the upper bound of the bucket in seconds.
+        public final Map<String, Long> uploadLatencySecs = new LinkedHashMap<>();
+    }
+
+    /**
+     * Lag of the node.
+     */
+    public static class Lag {
+        public int pendingFiles;
+        public long pendingBytes;
+        public long oldestPendingAgeSecs;
+        public long rpoSecs;
+        public boolean rpoExceeded;
+        public final Map<String, KeyspaceLag> keyspaces = new TreeMap<>();
+
+        @Override
+        public String toString() {
+            return GsonJsonSerializer.getGson().toJson(this);
+        }
+    }
+
+    @Inject
+    public BackupLagTracker(IConfiguration config) {
+        this.config = config;
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (Exception e) {
+            logger.warn("Could not register {}: {}", MBEAN_NAME, e.getMessage());
+        }
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static String keyspace(AbstractBackupPath path) {
+        return path.getKeyspace() != null ? path.getKeyspace() : path.getType().name();
+    }
+
+    /**
+     * Record a file to be uploaded. A file already pending keeps the time it was first found.
+     */
+    public void found(AbstractBackupPath path) {
+        File file = path.getBackupFile();
+        if (file == null)
+            return;
+        long now = now();
+        long modified = file.lastModified();
+        long appeared = modified > 0 && modified < now ? modified : now;
+        pending.putIfAbsent(file.getAbsolutePath(), new PendingFile(file, keyspace(path), appeared, path.getSize()));
+    }
+
+    /**
+     * Record the upload of a file, before the local file is deleted.
+     */
+    public void uploaded(AbstractBackupPath path) {
+        if (path.getBackupFile() == null)
+            return;
+        PendingFile file = pending.remove(path.getBackupFile().getAbsolutePath());
+        if (file == null)
+            return;
+        long latencySecs = TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now() - file.appeared));
+        latencies.computeIfAbsent(file.keyspace, keyspace -> new LatencyHistogram()).record(latencySecs);
+    }
+
+    /**
+     * @return the current lag. Files which were removed without being uploaded are no longer pending.
+     */
+    public Lag getLag() {
+        Lag lag = new Lag();
+        long now = now();
+        lag.rpoSecs = config.getBackupRpoInSecs();
+
+        for (Map.Entry<String, PendingFile> entry : pending.entrySet()) {
+            PendingFile file = entry.getValue();
+            if (!file.file.exists()) {
+                pending.remove(entry.getKey(), file);
+                continue;
+            }
+            KeyspaceLag keyspaceLag = keyspaceLag(lag, file.keyspace);
+            long ageSecs = TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now - file.appeared));
+            keyspaceLag.pendingFiles++;
+            keyspaceLag.pendingBytes += file.size;
+            keyspaceLag.oldestPendingAgeSecs = Math.max(keyspaceLag.oldestPendingAgeSecs, ageSecs);
+            lag.pendingFiles++;
+            lag.pendingBytes += file.size;
+            lag.oldestPendingAgeSecs = Math.max(lag.oldestPendingAgeSecs, ageSecs);
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            KeyspaceLag keyspaceLag = keyspaceLag(lag, entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            for (int bucket = 0; bucket <= LATENCY_BUCKETS_SECS.length; bucket++) {
+                long count = histogram.buckets.get(bucket);
+                String bound = bucket < LATENCY_BUCKETS_SECS.length ? String.valueOf(LATENCY_BUCKETS_SECS[bucket]) : "+Inf";
+                keyspaceLag.uploadLatencySecs.put(bound, count);
+                keyspaceLag.uploadedFiles += count;
+            }
+            keyspaceLag.maxUploadLatencySecs = histogram.max.get();
+        }
+
+        lag.rpoExceeded = lag.rpoSecs > 0 && lag.oldestPendingAgeSecs > lag.rpoSecs;
+        return lag;
+    }
+
+    private static KeyspaceLag keyspaceLag(Lag lag, String keyspace) {
+        return lag.keyspaces.computeIfAbsent(keyspace, name -> {
+            KeyspaceLag keyspaceLag = new KeyspaceLag();
+            keyspaceLag.keyspace = name;
+            return keyspaceLag;
+        });
+    }
+
+    @Override
+    public long getOldestPendingAgeSecs() {
+        return getLag().oldestPendingAgeSecs;
+    }
+
+    @Override
+    public int getPendingFiles() {
+        return getLag().pendingFiles;
+    }
+
+    @Override
+    public long getPendingBytes() {
+        return getLag().pendingBytes;
+    }
+
+    @Override
+    public boolean isRpoExceeded() {
+        return getLag().rpoExceeded;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Provider;
+import org.apache.commons.io.IOUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Format of the meta files (meta.json and incremental meta files) listing the files of a backup.
+ * <p>
+ * Version 2 of the format is JSON lines: the first line is a header with the format version, every following line
+ * describes one backed up file with its uncompressed and compressed size, md5 checksum of the uncompressed content,
+ * compression codec and upload time. The file can be written while files are uploaded and read in a streaming fashion.
+ * <p>
+ * Version 1 (a single JSON array of remote paths) is still supported for reading.
+ * <p>
+ * The header of a backup index ({@link BackupIndex}) also holds the period of time for which the index is complete.
+ */
+public class BackupManifest {
+    public static final int VERSION = 2;
+    //All backup file systems compress the files using snappy before upload.
+    public static final String CODEC_SNAPPY = "snappy";
+    private static final Gson gson = new Gson();
+
+    static class Header {
+        private int version;
+        private String name;
+        private Long coveredFrom;
+        private Long coveredUntil;
+
+        Header(int version, String name) {
+            this.version = version;
+            this.name = name;
+        }
+    }
+
+    static class Entry {
+        private String remotePath;
+        private long size;
+        private long compressedSize;
+        private String checksum;
+        private String codec;
+        private long uploadTime;
+    }
+
+    /**
+     * Appends entries to a manifest as the files are uploaded. Thread safe.
+     */
+    public static class Writer implements Closeable {
+        private final java.io.Writer writer;
+
+        /**
+         * @param file location of the manifest. Any existing content is discarded.
+         * @param name name of the backup e.g. snapshot name.
+         */
+        public Writer(File file, String name) throws IOException {
+            this(file, name, null, null);
+        }
+
+        /**
+         * @param file         location of the manifest. Any existing content is discarded.
+         * @param name         name of the backup e.g. snapshot name.
+         * @param coveredFrom  start of the period for which the manifest lists all uploaded files, if any.
+         * @param coveredUntil end of the period for which the manifest lists all uploaded files, if any.
+         */
+        public Writer(File file, String name, Date coveredFrom, Date coveredUntil) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            Header header = new Header(VERSION, name);
+            header.coveredFrom = coveredFrom == null ? null : coveredFrom.getTime();
+            header.coveredUntil = coveredUntil == null ? null : coveredUntil.getTime();
+            writeLine(gson.toJson(header));
+        }
+
+        private Writer(java.io.Writer writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Open an existing manifest to add entries at its end.
+         */
+        public static Writer append(File file) throws IOException {
+            return new Writer(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)));
+        }
+
+        public synchronized void add(AbstractBackupPath path) throws IOException {
+            Entry entry = new Entry();
+            entry.remotePath = path.getRemotePath();
+            entry.size = path.getSize();
+            entry.compressedSize = path.getCompressedFileSize();
+            entry.checksum = path.getChecksum();
+            entry.codec = CODEC_SNAPPY;
+            entry.uploadTime = path.getUploadedTs() == null ? 0 : path.getUploadedTs().getTime();
+            writeLine(gson.toJson(entry));
+        }
+
+        /**
+         * Write the entries added so far to the file, so they are not lost if the process dies.
+         */
+        public synchronized void flush() throws IOException {
+            writer.flush();
+        }
+
+        private void writeLine(String line) throws IOException {
+            writer.write(line);
+            writer.write('\n');
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads the manifest one entry at a time. Version 1 manifests are read into memory as a whole.
+     */
+    public static class Reader implements Iterator<AbstractBackupPath>, Closeable {
+        private final Provider<AbstractBackupPath> pathFactory;
+        private final BufferedReader reader;
+        private Iterator<?> legacyEntries;
+        private Header header;
+        private AbstractBackupPath next;
+        private boolean isDone = false;
+
+        public Reader(File file, Provider<AbstractBackupPath> pathFactory) throws IOException {
+            this.pathFactory = pathFactory;
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                readHeader();
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void readHeader() throws IOException {
+            reader.mark(1);
+            int first = reader.read();
+            while (first != -1 && Character.isWhitespace(first)) {
+                reader.mark(1);
+                first = reader.read();
+            }
+            reader.reset();
+
+            if (first == '[') {
+                try {
+                    legacyEntries = ((JSONArray) new JSONParser().parse(reader)).iterator();
+                } catch (ParseException e) {
+                    throw new IOException("Unable to parse meta file: " + e.getMessage(), e);
+                }
+                close();
+                return;
+            }
+
+            String line = reader.readLine();
+            try {
+                header = line == null ? null : gson.fromJson(line, Header.class);
+            } catch (JsonParseException e) {
+                throw new IOException("Unable to parse meta file header: " + line, e);
+            }
+            if (header == null || header.version != VERSION)
+                throw new IOException("Unsupported meta file version: " + line);
+        }
+
+        /**
+         * @return start of the period for which the manifest lists all uploaded files, null if unknown.
+         */
+        public Date getCoveredFrom() {
+            return header == null || header.coveredFrom == null ? null : new Date(header.coveredFrom);
+        }
+
+        /**
+         * @return end of the period for which the manifest lists all uploaded files, null if unknown.
+         */
+        public Date getCoveredUntil() {
+            return header == null || header.coveredUntil == null ? null : new Date(header.coveredUntil);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = readNext();
+            return next != null;
+        }
+
+        @Override
+        public AbstractBackupPath next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            AbstractBackupPath result = next;
+            next = null;
+            return result;
+        }
+
+        private AbstractBackupPath readNext() {
+            if (legacyEntries != null) {
+                if (!legacyEntries.hasNext())
+                    return null;
+                AbstractBackupPath path = pathFactory.get();
+                path.parseRemote((String) legacyEntries.next());
+                return path;
+            }
+
+            if (isDone)
+                return null;
+
+            try {
+                String line;
+                do {
+                    line = reader.readLine();
+                    if (line == null) {
+                        isDone = true;
+                        close();
+                        return null;
+                    }
+                } while (line.trim().isEmpty());
+
+                Entry entry = gson.fromJson(line, Entry.class);
+                AbstractBackupPath path = pathFactory.get();
+                path.parseRemote(entry.remotePath);
+                path.setSize(entry.size);
+                path.setCompressedFileSize(entry.compressedSize);
+                path.setChecksum(entry.checksum);
+                if (entry.uploadTime > 0)
+                    path.setUploadedTs(new Date(entry.uploadTime));
+                return path;
+            } catch (IOException | JsonParseException e) {
+                throw new RuntimeException("Error reading meta file entry. Msg: " + e.getLocalizedMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+}
@@ -41,6 +41,7 @@ final public class BackupMetadata implements Serializable {
     private Date start, completed;
     private Status status;
     private String snapshotLocation;
+    private String progressLocation;
 
     public BackupMetadata(String token, Date start) throws Exception {
         if (start == null || token == null || StringUtils.isEmpty(token))
@@ -154,6 +155,24 @@ final public class BackupMetadata implements Serializable {
         this.snapshotLocation = snapshotLocation;
     }
 
+    /**
+     * Get the location of the local manifest of the files uploaded so far, used to resume the snapshot if it fails.
+     *
+     * @return location of the upload progress of the snapshot, null if the snapshot cannot be resumed.
+     */
+    public String getProgressLocation() {
+        return this.progressLocation;
+    }
+
+    /**
+     * Set the location of the local manifest of the files uploaded so far.
+     *
+     * @param progressLocation location of the upload progress of the snapshot.
+     */
+    public void setProgressLocation(String progressLocation) {
+        this.progressLocation = progressLocation;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns the tables to the priority classes of incremental backups, so that the files of critical tables are uploaded
+ * first even when another table floods its backups directory, e.g. after a bulk load.
+ * <p>
+ * Tables are assigned to {@link Priority#HIGH} by {@link IConfiguration#getIncrementalHighPriorityFilters()} and to
+ * {@link Priority#LOW} by {@link IConfiguration#getIncrementalLowPriorityFilters()}, all the other tables are
+ * {@link Priority#NORMAL}. Each class gets a share of the uploads proportional to its weight, see
+ * {@link IConfiguration#getIncrementalPriorityWeights()}.
+ */
+@Singleton
+public class BackupPriorityClassifier {
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    private final BackupRestoreUtil highPriority;
+    private final BackupRestoreUtil lowPriority;
+    private final int[] weights = new int[Priority.values().length];
+
+    @Inject
+    public BackupPriorityClassifier(IConfiguration config) {
+        highPriority = toFilter(config.getIncrementalHighPriorityFilters());
+        lowPriority = toFilter(config.getIncrementalLowPriorityFilters());
+
+        String[] configWeights = StringUtils.split(config.getIncrementalPriorityWeights(), ',');
+        if (configWeights == null || configWeights.length != weights.length)
+            throw new IllegalArgumentException("Priority weights need to be \"high,normal,low\".  Invalid input: " + config.getIncrementalPriorityWeights());
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Integer.parseInt(configWeights[i].trim());
+            if (weights[i] <= 0)
+                throw new IllegalArgumentException("Priority weights need to be positive.  Invalid input: " + config.getIncrementalPriorityWeights());
+        }
+    }
+
+    /**
+     * Split the "keyspace" and "keyspace.columnfamily" entries of a priority class, which match like the incremental
+     * backup filters.
+     */
+    private static BackupRestoreUtil toFilter(String configFilter) {
+        List<String> keyspaces = new ArrayList<>();
+        List<String> columnFamilies = new ArrayList<>();
+        if (StringUtils.isNotBlank(configFilter)) {
+            for (String filter : configFilter.split(",")) {
+                if (filter.contains("."))
+                    columnFamilies.add(filter.trim());
+                else
+                    keyspaces.add(filter.trim());
+            }
+        }
+        return new BackupRestoreUtil(String.join(",", keyspaces), String.join(",", columnFamilies));
+    }
+
+    /**
+     * @param keyspace     name of the keyspace, null for files which are not part of a table e.g. commit logs.
+     * @param columnFamily name of the column family directory.
+     * @return the priority class of the table.
+     */
+    public Priority classify(String keyspace, String columnFamily) {
+        if (keyspace == null)
+            return Priority.NORMAL;
+        if (matches(highPriority, keyspace, columnFamily))
+            return Priority.HIGH;
+        if (matches(lowPriority, keyspace, columnFamily))
+            return Priority.LOW;
+        return Priority.NORMAL;
+    }
+
+    public Priority classify(AbstractBackupPath path) {
+        return classify(path.getKeyspace(), path.getColumnFamily());
+    }
+
+    private static boolean matches(BackupRestoreUtil filter, String keyspace, String columnFamily) {
+        return filter.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.KEYSPACE, keyspace)
+                || (columnFamily != null && filter.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.CF, keyspace, columnFamily));
+    }
+
+    /**
+     * @return the relative share of the uploads of the priority class.
+     */
+    public int getWeight(Priority priority) {
+        return weights[priority.ordinal()];
+    }
+}
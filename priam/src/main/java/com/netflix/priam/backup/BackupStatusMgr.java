@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /*
  * A means to manage metadata for various types of backups (snapshots, incrementals)
@@ -88,6 +89,25 @@ public abstract class BackupStatusMgr implements IBackupStatusMgr {
         return metadataLinkedList;
     }
 
+    @Override
+    public List<BackupMetadata> locate(Date startFrom, Date startTo) {
+        List<BackupMetadata> metadataList = new LinkedList<>();
+        //Days are formatted in GMT, see DateUtil.
+        Date day = DateUtil.getDate(DateUtil.formatyyyyMMdd(startTo));
+        if (day.equals(startTo))
+            day = new Date(day.getTime() - TimeUnit.DAYS.toMillis(1));
+        for (; !day.before(DateUtil.getDate(DateUtil.formatyyyyMMdd(startFrom))); day = new Date(day.getTime() - TimeUnit.DAYS.toMillis(1))) {
+            LinkedList<BackupMetadata> dayList = locate(DateUtil.formatyyyyMMdd(day));
+            if (dayList == null)
+                continue;
+            for (BackupMetadata backupMetadata : dayList) {
+                if (!backupMetadata.getStart().before(startFrom) && backupMetadata.getStart().before(startTo))
+                    metadataList.add(backupMetadata);
+            }
+        }
+        return metadataList;
+    }
+
     @Override
     public void start(BackupMetadata backupMetadata) {
         LinkedList<BackupMetadata> metadataLinkedList = locate(backupMetadata.getSnapshotDate());
@@ -160,6 +180,20 @@ public abstract class BackupStatusMgr implements IBackupStatusMgr {
         save(backupMetadata);
     }
 
+    @Override
+    public void resume(BackupMetadata backupMetadata) {
+        backupMetadata.setStatus(Status.STARTED);
+        backupMetadata.setCompleted(null);
+
+        instanceState.setBackupStatus(backupMetadata);
+
+        //Retrieve the snapshot metadata and then update the date/status.
+        retrieveAndUpdate(backupMetadata);
+
+        //Save the backupMetaDataMap
+        save(backupMetadata);
+    }
+
     /**
      * Implementation on how to save the backup metadata
      *
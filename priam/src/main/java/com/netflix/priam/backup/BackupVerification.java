@@ -16,18 +16,29 @@
 package com.netflix.priam.backup;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.netflix.priam.IConfiguration;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
 import com.netflix.priam.utils.DateUtil;
-import org.apache.commons.collections4.CollectionUtils;
-import org.json.simple.parser.JSONParser;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 /**
@@ -43,11 +54,13 @@ public class BackupVerification {
     private static final Logger logger = LoggerFactory.getLogger(BackupVerification.class);
     private IBackupFileSystem bkpStatusFs;
     private IConfiguration config;
+    private Provider<AbstractBackupPath> pathFactory;
 
     @Inject
-    BackupVerification(@Named("backup_status") IBackupFileSystem bkpStatusFs, IConfiguration config) {
+    BackupVerification(@Named("backup_status") IBackupFileSystem bkpStatusFs, IConfiguration config, Provider<AbstractBackupPath> pathFactory) {
         this.bkpStatusFs = bkpStatusFs;
         this.config = config;
+        this.pathFactory = pathFactory;
     }
 
     public BackupVerificationResult verifyBackup(List<BackupMetadata> metadata, Date startTime) {
@@ -95,14 +108,14 @@ public class BackupVerification {
         result.backupFileListAvail = true;
 
         List<AbstractBackupPath> metas = new LinkedList<>();
-        List<String> s3Listing = new ArrayList<>();
+        Map<String, AbstractBackupPath> s3Listing = new HashMap<>();
 
         while (backupfiles.hasNext()) {
             AbstractBackupPath path = backupfiles.next();
             if (path.getFileName().equalsIgnoreCase("meta.json"))
                 metas.add(path);
             else
-                s3Listing.add(path.getRemotePath());
+                s3Listing.put(path.getRemotePath(), path);
         }
 
         if (metas.size() == 0) {
@@ -112,19 +125,33 @@ public class BackupVerification {
 
         result.metaFileFound = true;
         //Download meta.json from backup location and uncompress it.
-        List<String> metaFileList = new ArrayList<>();
+        Map<String, AbstractBackupPath> metaFileList = new LinkedHashMap<>();
+        File metaFile = null;
         try {
-            bkpStatusFs.download(metas.get(0), new FileOutputStream("tmp_meta.json"));
+            metaFile = File.createTempFile("tmp_meta", ".json");
+            bkpStatusFs.download(metas.get(0), new FileOutputStream(metaFile));
             logger.info("Meta file successfully downloaded to localhost: {}", metas.get(0));
 
-            JSONParser jsonParser = new JSONParser();
-            org.json.simple.JSONArray fileList = (org.json.simple.JSONArray) jsonParser.parse(new FileReader("tmp_meta.json"));
-            for (int i = 0; i < fileList.size(); i++)
-                metaFileList.add(fileList.get(i).toString());
+            int referencedFiles = 0;
+            try (BackupManifest.Reader fileList = new BackupManifest.Reader(metaFile, pathFactory)) {
+                while (fileList.hasNext()) {
+                    AbstractBackupPath path = fileList.next();
+                    //Files uploaded by previous backups (see IConfiguration.isBackupDedupEnabled) are not listed with the snapshot.
+                    if (!DateUtil.formatyyyyMMddHHmm(path.getTime()).equals(result.snapshotTime)) {
+                        referencedFiles++;
+                        continue;
+                    }
+                    metaFileList.put(path.getRemotePath(), path);
+                }
+            }
+            if (referencedFiles > 0)
+                logger.info("Meta file references {} files uploaded by previous backups, they are not verified.", referencedFiles);
 
         } catch (Exception e) {
             logger.error("Error while fetching meta.json from path: {}", metas.get(0), e);
             return result;
+        } finally {
+            FileUtils.deleteQuietly(metaFile);
         }
 
         if (metaFileList.isEmpty() && s3Listing.isEmpty()) {
@@ -134,16 +161,114 @@ public class BackupVerification {
         }
 
         //Atleast meta file or s3 listing contains some file.
-        result.filesInS3Only = new ArrayList<>(s3Listing);
-        result.filesInS3Only.removeAll(metaFileList);
-        result.filesInMetaOnly = new ArrayList<>(metaFileList);
-        result.filesInMetaOnly.removeAll(s3Listing);
-        result.filesMatched = (ArrayList<String>) CollectionUtils.intersection(metaFileList, s3Listing);
+        result.filesInS3Only = new ArrayList<>();
+        result.filesInMetaOnly = new ArrayList<>();
+        result.filesMatched = new ArrayList<>();
+        result.filesSizeMismatch = new ArrayList<>();
+        result.keyspaces = new TreeMap<>();
+        int samplePercent = config.getBackupVerificationSamplePercent();
+        List<AbstractBackupPath> sample = new ArrayList<>();
+        for (AbstractBackupPath path : metaFileList.values()) {
+            BackupVerificationResult.KeyspaceResult keyspaceResult = result.keyspaces.computeIfAbsent(getKeyspace(path), keyspace -> new BackupVerificationResult.KeyspaceResult());
+            keyspaceResult.filesInMeta++;
+            AbstractBackupPath listed = s3Listing.get(path.getRemotePath());
+            if (listed == null) {
+                result.filesInMetaOnly.add(path.getRemotePath());
+                keyspaceResult.filesInMetaOnly++;
+                continue;
+            }
+
+            result.filesMatched.add(path.getRemotePath());
+            keyspaceResult.filesMatched++;
+            if (isSizeMismatch(path, listed)) {
+                logger.error("File {} is {} bytes in the backup location, {} bytes in the meta file", path.getRemotePath(), listed.getCompressedFileSize(), path.getCompressedFileSize());
+                result.filesSizeMismatch.add(path.getRemotePath());
+                keyspaceResult.filesSizeMismatch++;
+            }
+            if (samplePercent > 0 && ThreadLocalRandom.current().nextInt(100) < samplePercent)
+                sample.add(path);
+        }
+        for (String remotePath : s3Listing.keySet()) {
+            if (!metaFileList.containsKey(remotePath))
+                result.filesInS3Only.add(remotePath);
+        }
+
+        verifySample(sample, result);
 
         //There could be a scenario that backupfilesystem has more files than meta file. e.g. some leftover objects
-        if (result.filesInMetaOnly.size() == 0)
+        if (result.filesInMetaOnly.isEmpty() && result.filesSizeMismatch.isEmpty() && result.filesChecksumMismatch.isEmpty())
             result.valid = true;
 
         return result;
     }
+
+    private static boolean isSizeMismatch(AbstractBackupPath path, AbstractBackupPath listed) {
+        if (path.getCompressedFileSize() > 0 && listed.getCompressedFileSize() > 0)
+            return path.getCompressedFileSize() != listed.getCompressedFileSize();
+        //Meta files without the compressed size: only an empty object can be told apart.
+        return path.getSize() > 0 && listed.getCompressedFileSize() == 0;
+    }
+
+    private static String getKeyspace(AbstractBackupPath path) {
+        return path.getKeyspace() != null ? path.getKeyspace() : path.getType().name();
+    }
+
+    /**
+     * Download the sampled files concurrently and compare their content with the checksum and size in the meta file.
+     */
+    private void verifySample(List<AbstractBackupPath> sample, BackupVerificationResult result) {
+        result.filesChecksumMismatch = new ArrayList<>();
+        if (sample.isEmpty())
+            return;
+
+        logger.info("Downloading {} files to verify their content", sample.size());
+        ExecutorService executor = new NamedThreadPoolExecutor(config.getMaxBackupDownloadThreads(), "BackupVerification");
+        try {
+            List<Future<Boolean>> checks = new ArrayList<>(sample.size());
+            for (AbstractBackupPath path : sample)
+                checks.add(executor.submit(() -> verifyContent(path)));
+
+            for (int i = 0; i < sample.size(); i++) {
+                AbstractBackupPath path = sample.get(i);
+                boolean verified = false;
+                try {
+                    verified = checks.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.error("Failed to download {} to verify it: {}", path.getRemotePath(), e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Interrupted while verifying {}", path.getRemotePath());
+                }
+
+                BackupVerificationResult.KeyspaceResult keyspaceResult = result.keyspaces.get(getKeyspace(path));
+                result.filesSampled++;
+                keyspaceResult.filesSampled++;
+                if (!verified) {
+                    result.filesChecksumMismatch.add(path.getRemotePath());
+                    keyspaceResult.filesChecksumMismatch++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean verifyContent(AbstractBackupPath path) throws BackupRestoreException {
+        HashingOutputStream hashingStream = new HashingOutputStream(Hashing.md5(), ByteStreams.nullOutputStream());
+        CountingOutputStream countingStream = new CountingOutputStream(hashingStream);
+        //Decompresses, and decrypts, the file.
+        bkpStatusFs.download(path, countingStream);
+
+        boolean verified = true;
+        String checksum = SystemUtils.toHex(hashingStream.hash().asBytes());
+        if (StringUtils.isNotEmpty(path.getChecksum()) && !checksum.equalsIgnoreCase(path.getChecksum())) {
+            logger.error("Checksum of {} is {}, expected {}", path.getRemotePath(), checksum, path.getChecksum());
+            verified = false;
+        }
+        if (path.getSize() > 0 && countingStream.getCount() != path.getSize()) {
+            logger.error("Size of {} is {}, expected {}", path.getRemotePath(), countingStream.getCount(), path.getSize());
+            verified = false;
+        }
+        return verified;
+    }
 }
@@ -16,6 +16,7 @@
 package com.netflix.priam.backup;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by aagrawal on 2/16/17.
@@ -32,4 +33,22 @@ public class BackupVerificationResult {
     public List<String> filesInMetaOnly = null;
     public List<String> filesInS3Only = null;
     public List<String> filesMatched = null;
+    //Files listed empty although the meta file records content.
+    public List<String> filesSizeMismatch = null;
+    public int filesSampled = 0;
+    //Sampled files which could not be downloaded or do not match the checksum or size in the meta file.
+    public List<String> filesChecksumMismatch = null;
+    public Map<String, KeyspaceResult> keyspaces = null;
+
+    /**
+     * Counts of the files of one keyspace.
+     */
+    public static class KeyspaceResult {
+        public int filesInMeta = 0;
+        public int filesMatched = 0;
+        public int filesInMetaOnly = 0;
+        public int filesSizeMismatch = 0;
+        public int filesSampled = 0;
+        public int filesChecksumMismatch = 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a local copy of the SSTables downloaded by restores, so that restoring them again, e.g. repeated test restores
+ * or {@code /v1/backup/restore_verify_key}, does not download them again. Enabled by
+ * {@link IConfiguration#getRestoreCacheSizeInMB()}.
+ * <p>
+ * The cache is content-addressed: a file is stored under the md5 checksum of its uncompressed content recorded at
+ * backup time, see {@link AbstractBackupPath#getChecksum()}, and only stored if the downloaded content matches it.
+ * Files without a checksum are not cached. Once the cache exceeds its size, the least recently used files are removed.
+ * On a hit, {@link #copy(AbstractBackupPath, File)} copies the cached file to its restore location. Cached files are
+ * not hard linked: restored files are written in place (re-downloads, Cassandra rewriting the summary), which would
+ * modify the cached copy. The content of a cached file is verified against its checksum while it is copied, a modified
+ * file is removed from the cache.
+ */
+@Singleton
+public class CachingBackupFileSystem extends ForwardingBackupFileSystem {
+    private static final Logger logger = LoggerFactory.getLogger(CachingBackupFileSystem.class);
+    private static final Pattern MD5 = Pattern.compile("[0-9a-f]{32}");
+    private static final String TMP_SUFFIX = ".tmp";
+    private final IConfiguration config;
+    //Size of the cached files by checksum, least recently used first.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private File cacheDir;
+    private long cachedBytes = 0;
+
+    @Inject
+    public CachingBackupFileSystem(IConfiguration config, PeerBackupFileSystem delegate) {
+        this(config, (IBackupFileSystem) delegate);
+    }
+
+    CachingBackupFileSystem(IConfiguration config, IBackupFileSystem delegate) {
+        super(delegate);
+        this.config = config;
+    }
+
+    private long getMaxBytes() {
+        return config.getRestoreCacheSizeInMB() * 1024L * 1024L;
+    }
+
+    private static String getKey(AbstractBackupPath path) {
+        //Commit logs depend on the restore point, only the SSTables are restored again and again.
+        if (path.getType() != BackupFileType.SST && path.getType() != BackupFileType.SNAP)
+            return null;
+        if (path.getChecksum() == null || path.getSize() <= 0)
+            return null;
+        String key = path.getChecksum().toLowerCase();
+        return MD5.matcher(key).matches() ? key : null;
+    }
+
+    /*
+     * Load the files cached before a restart, ordered by their last use.
+     */
+    private void load() {
+        if (cacheDir != null)
+            return;
+        cacheDir = new File(config.getRestoreCacheLocation());
+        cacheDir.mkdirs();
+        File[] files = cacheDir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX))
+                FileUtils.deleteQuietly(file);
+            else if (MD5.matcher(file.getName()).matches()) {
+                entries.put(file.getName(), file.length());
+                cachedBytes += file.length();
+            }
+        }
+        evict();
+        logger.info("Restore cache {} holds {} files, {} bytes", cacheDir, entries.size(), cachedBytes);
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator(); cachedBytes > getMaxBytes() && iterator.hasNext(); ) {
+            Map.Entry<String, Long> entry = iterator.next();
+            FileUtils.deleteQuietly(new File(cacheDir, entry.getKey()));
+            cachedBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return the cached copy of the file, null if it is not cached.
+     */
+    public synchronized File get(AbstractBackupPath path) {
+        String key = getKey(path);
+        if (getMaxBytes() <= 0 || key == null)
+            return null;
+        load();
+        if (entries.get(key) == null)
+            return null;
+
+        File cached = new File(cacheDir, key);
+        if (cached.length() != path.getSize())
+            return null;
+        //Persists the order of use across restarts.
+        cached.setLastModified(System.currentTimeMillis());
+        return cached;
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size == null)
+            return;
+        FileUtils.deleteQuietly(new File(cacheDir, key));
+        cachedBytes -= size;
+    }
+
+    /*
+     * Copy the cached file, a file whose content does not match its checksum is removed from the cache.
+     */
+    private void copy(File cached, OutputStream os) throws IOException {
+        HashingOutputStream hashing = new HashingOutputStream(Hashing.md5(), os);
+        Files.copy(cached.toPath(), hashing);
+        hashing.flush();
+        if (!cached.getName().equals(SystemUtils.toHex(hashing.hash().asBytes()))) {
+            remove(cached.getName());
+            throw new IOException("Cached file " + cached + " was modified, it is removed from the cache");
+        }
+    }
+
+    /**
+     * Restore the file from the cache by copying its cached copy to the restore location.
+     *
+     * @return true if the file was restored, false if it is not cached.
+     */
+    public boolean copy(AbstractBackupPath path, File restoreLocation) throws IOException {
+        File cached = get(path);
+        if (cached == null)
+            return false;
+
+        //A new file, the restore location may be a link to another file.
+        Files.deleteIfExists(restoreLocation.toPath());
+        restoreLocation.getParentFile().mkdirs();
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(restoreLocation))) {
+            copy(cached, os);
+        } catch (IOException e) {
+            logger.warn("Could not restore {} from the restore cache: {}", path.getRemotePath(), e.getMessage());
+            FileUtils.deleteQuietly(restoreLocation);
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+        download(path, os, null);
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os, String filePath) throws BackupRestoreException {
+        File cached = get(path);
+        if (cached != null) {
+            try (OutputStream out = os) {
+                copy(cached, out);
+            } catch (IOException e) {
+                throw new BackupRestoreException("Could not read the cached copy of " + path.getRemotePath() + ": " + e.getMessage(), e);
+            }
+            hits.incrementAndGet();
+            return;
+        }
+
+        File tmp = createTmpFile(path);
+        if (tmp == null) {
+            delegateDownload(path, os, filePath);
+            return;
+        }
+        misses.incrementAndGet();
+        try {
+            HashingOutputStream hashing = new HashingOutputStream(Hashing.md5(), new BufferedOutputStream(new FileOutputStream(tmp)));
+            //The delegate closes both streams.
+            delegateDownload(path, new TeeOutputStream(os, hashing), filePath);
+            add(path.getRemotePath(), getKey(path), path.getSize(), tmp, SystemUtils.toHex(hashing.hash().asBytes()));
+        } catch (FileNotFoundException e) {
+            throw new BackupRestoreException("Could not cache " + path.getRemotePath() + ": " + e.getMessage(), e);
+        } finally {
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private void delegateDownload(AbstractBackupPath path, OutputStream os, String filePath) throws BackupRestoreException {
+        if (filePath == null)
+            delegate.download(path, os);
+        else
+            delegate.download(path, os, filePath);
+    }
+
+    /**
+     * @return the file to download the file to the cache, null if it is not to be cached.
+     */
+    private synchronized File createTmpFile(AbstractBackupPath path) {
+        String key = getKey(path);
+        if (getMaxBytes() <= 0 || key == null || path.getSize() > getMaxBytes())
+            return null;
+        load();
+        //Caching must not fill the disk the restore writes to.
+        if (cacheDir.getUsableSpace() < 2 * path.getSize())
+            return null;
+        try {
+            return File.createTempFile(key, TMP_SUFFIX, cacheDir);
+        } catch (IOException e) {
+            logger.warn("Could not create a file in the restore cache {}: {}", cacheDir, e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void add(String remotePath, String key, long size, File tmp, String checksum) {
+        if (!checksum.equals(key) || tmp.length() != size) {
+            logger.warn("Downloaded content of {} does not match its checksum or size, it is not cached", remotePath);
+            return;
+        }
+        if (entries.containsKey(key))
+            return;
+        try {
+            Files.move(tmp.toPath(), new File(cacheDir, key).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not add {} to the restore cache: {}", remotePath, e.getMessage());
+            return;
+        }
+        entries.put(key, size);
+        cachedBytes += size;
+        evict();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+}
@@ -15,39 +15,118 @@
  */
 package com.netflix.priam.backup;
 
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.netflix.priam.IConfiguration;
 import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
 import com.netflix.priam.utils.RetryableCallable;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
-//Providing this if we want to use it outside Quart
-public class CommitLogBackup {
+/**
+ * Ships the commit log segments archived by Cassandra, see {@link IConfiguration#getCommitLogBackupArchiveCmd()}.
+ * <p>
+ * Once started by {@link CommitLogBackupTask}, the archive directory is watched and the segments are uploaded by
+ * {@link IConfiguration#getCommitLogBackupThreads()} threads as soon as they are closed, i.e. not modified for
+ * {@link IConfiguration#getCommitLogBackupQuietPeriodInSecs()} seconds. A segment is deleted only once its upload
+ * completed, a failed upload is retried by a later scan. The age of the segments waiting to be uploaded is tracked by
+ * {@link BackupLagTracker}.
+ */
+@Singleton
+public class CommitLogBackup implements CommitLogBackupMBean {
     private static final Logger logger = LoggerFactory.getLogger(CommitLogBackup.class);
+    private final IConfiguration config;
     private final Provider<AbstractBackupPath> pathFactory;
     static List<IMessageObserver> observers = new ArrayList();
-    private final List<String> clRemotePaths = new ArrayList();
+    private final List<String> clRemotePaths = Collections.synchronizedList(new ArrayList<>());
     private final IBackupFileSystem fs;
+    private final BackupIndex backupIndex;
+    private final BackupLagTracker lagTracker;
+    //Local paths of the segments being uploaded, so a scan does not upload them twice.
+    private final Set<String> uploading = ConcurrentHashMap.newKeySet();
+    private final AtomicLong uploadedSegments = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong failedUploads = new AtomicLong();
+    private ExecutorService executor;
+    private Thread shipper;
 
     @Inject
-    public CommitLogBackup(Provider<AbstractBackupPath> pathFactory, @Named("backup") IBackupFileSystem fs) {
+    public CommitLogBackup(IConfiguration config, Provider<AbstractBackupPath> pathFactory, @Named("backup") IBackupFileSystem fs, BackupIndex backupIndex, BackupLagTracker lagTracker) {
+        this.config = config;
         this.pathFactory = pathFactory;
         this.fs = fs;
+        this.backupIndex = backupIndex;
+        this.lagTracker = lagTracker;
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (Exception e) {
+            logger.warn("Could not register {}: {}", MBEAN_NAME, e.getMessage());
+        }
     }
 
+    /**
+     * Upload the closed segments of the archive directory and wait for their uploads to complete.
+     *
+     * @return the uploaded segments.
+     */
     public List<AbstractBackupPath> upload(String archivedDir, final String snapshotName)
             throws Exception {
         logger.info("Inside upload CommitLog files");
+        File archivedCommitLogDir = getArchivedDir(archivedDir);
 
+        List<AbstractBackupPath> bps = new ArrayList<>();
+        for (Future<AbstractBackupPath> future : submit(archivedCommitLogDir, snapshotName)) {
+            try {
+                bps.add(future.get());
+            } catch (ExecutionException e) {
+                //Already logged, the segment is kept for the next scan.
+            }
+        }
+        backupIndex.add(Collections.emptyList());
+        return bps;
+    }
+
+    /**
+     * Start watching the archive directory, uploading the segments as soon as they are closed. Does nothing if the
+     * directory is already watched.
+     */
+    public synchronized void start(String archivedDir) {
+        if (shipper != null && shipper.isAlive())
+            return;
+        final File archivedCommitLogDir = getArchivedDir(archivedDir);
+        shipper = new Thread(() -> ship(archivedCommitLogDir), "CommitLogBackup");
+        shipper.setDaemon(true);
+        shipper.start();
+        logger.info("Shipping the commit logs archived in {}", archivedCommitLogDir);
+    }
+
+    /**
+     * Stop watching the archive directory. Uploads in progress complete.
+     */
+    public synchronized void stop() {
+        if (shipper != null)
+            shipper.interrupt();
+        shipper = null;
+    }
+
+    private static File getArchivedDir(String archivedDir) {
         if (StringUtils.isBlank(archivedDir)) {
             throw new IllegalArgumentException("The archived commitlog director is blank or null");
         }
@@ -56,49 +135,150 @@ public class CommitLogBackup {
         if (!archivedCommitLogDir.exists()) {
             throw new IllegalArgumentException("The archived commitlog director does not exist: " + archivedDir);
         }
+        return archivedCommitLogDir;
+    }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("Scanning for backup in: {}", archivedCommitLogDir.getAbsolutePath());
+    private long getQuietPeriod() {
+        return TimeUnit.SECONDS.toMillis(config.getCommitLogBackupQuietPeriodInSecs());
+    }
+
+    private void ship(File archivedCommitLogDir) {
+        //Segments still being archived are picked up by a later scan, once they are closed.
+        long scanInterval = Math.max(getQuietPeriod(), 1000L);
+        WatchService watchService = null;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            archivedCommitLogDir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.warn("Could not watch {}, it will be scanned every {} ms: {}", archivedCommitLogDir, scanInterval, e.getMessage());
+            closeQuietly(watchService);
+            watchService = null;
         }
-        List bps = Lists.newArrayList();
-        for (final File file : archivedCommitLogDir.listFiles()) {
-            logger.debug("Uploading commit log {} for backup", file.getCanonicalFile());
-            try {
-                AbstractBackupPath abp = (AbstractBackupPath) new RetryableCallable(3, 100L) {
-                    public AbstractBackupPath retriableCall() throws Exception {
-
-                        AbstractBackupPath bp = pathFactory.get();
-                        bp.parseLocal(file, BackupFileType.CL);
-                        if (snapshotName != null)
-                            bp.time = bp.parseDate(snapshotName);
-                        upload(bp);
-                        file.delete(); //TODO: should we put delete call here? We don't want to delete if the upload operaion fails
-                        return bp;
-                    }
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    submit(archivedCommitLogDir, null);
+                    //Segments uploaded since the previous scan are added to the index in one go.
+                    backupIndex.add(Collections.emptyList());
+                } catch (Exception e) {
+                    logger.error("Error while shipping the commit logs of {}", archivedCommitLogDir, e);
                 }
-                        .call();
 
-                if (abp != null) {
-                    bps.add(abp);
+                if (watchService == null) {
+                    Thread.sleep(scanInterval);
+                    continue;
+                }
+                WatchKey key = watchService.poll(scanInterval, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    //The directory is no longer accessible, the next run of the task starts over.
+                    if (!key.reset()) {
+                        logger.warn("{} can no longer be watched, commit log shipping stopped", archivedCommitLogDir);
+                        return;
+                    }
                 }
-                addToRemotePath(abp.getRemotePath());
-            } catch (Exception e) {
-                logger.error("Failed to upload local file {}. Ignoring to continue with rest of backup.", file, e);
             }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.info("Commit log shipping of {} stopped", archivedCommitLogDir);
+        } finally {
+            closeQuietly(watchService);
         }
-        return bps;
     }
 
-    private void upload(final AbstractBackupPath bp)
-            throws Exception {
-        new RetryableCallable() {
-            public Void retriableCall()
-                    throws Exception {
-                fs.upload(bp, bp.localReader());
-                return null;
+    private static void closeQuietly(WatchService watchService) {
+        if (watchService == null)
+            return;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null)
+            executor = new NamedThreadPoolExecutor(config.getCommitLogBackupThreads(), "CommitLogBackup");
+        return executor;
+    }
+
+    /**
+     * Queue the upload of the closed segments which are not already being uploaded.
+     */
+    private List<Future<AbstractBackupPath>> submit(File archivedCommitLogDir, final String snapshotName) throws ParseException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Scanning for backup in: {}", archivedCommitLogDir.getAbsolutePath());
+        }
+        List<Future<AbstractBackupPath>> futures = new ArrayList<>();
+        File[] files = archivedCommitLogDir.listFiles();
+        if (files == null)
+            return futures;
+
+        long closedBefore = System.currentTimeMillis() - getQuietPeriod();
+        for (final File file : files) {
+            if (!file.isFile())
+                continue;
+            final AbstractBackupPath bp = pathFactory.get();
+            bp.parseLocal(file, BackupFileType.CL);
+            lagTracker.found(bp);
+            if (file.lastModified() > closedBefore || !uploading.add(file.getAbsolutePath()))
+                continue;
+            backupIndex.queued(bp);
+            futures.add(getExecutor().submit(() -> upload(file, bp, snapshotName)));
+        }
+        return futures;
+    }
+
+    private AbstractBackupPath upload(final File file, final AbstractBackupPath bp, String snapshotName) throws Exception {
+        try {
+            logger.debug("Uploading commit log {} for backup", file.getCanonicalFile());
+            if (snapshotName != null) {
+                bp.setTime(bp.parseDate(snapshotName));
+                backupIndex.queued(bp);
             }
+            new RetryableCallable<Void>(3, RetryableCallable.DEFAULT_WAIT_TIME) {
+                public Void retriableCall() throws Exception {
+                    fs.upload(bp, bp.localReader());
+                    return null;
+                }
+            }.call();
+            bp.setUploadedTs(new Date());
+            lagTracker.uploaded(bp);
+            backupIndex.uploaded(bp);
+
+            //Only a completed upload removes the segment.
+            if (!file.delete())
+                logger.warn("Could not delete the uploaded commit log {}", file);
+            addToRemotePath(bp.getRemotePath());
+            uploadedSegments.incrementAndGet();
+            uploadedBytes.addAndGet(bp.getSize());
+            return bp;
+        } catch (Exception e) {
+            failedUploads.incrementAndGet();
+            logger.error("Failed to upload local file {}. It will be retried by the next scan.", file, e);
+            throw e;
+        } finally {
+            uploading.remove(file.getAbsolutePath());
         }
-                .call();
+    }
+
+    @Override
+    public int getUploadingSegments() {
+        return uploading.size();
+    }
+
+    @Override
+    public long getUploadedSegments() {
+        return uploadedSegments.get();
+    }
+
+    @Override
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    @Override
+    public long getFailedUploads() {
+        return failedUploads.get();
     }
 
     public static void addObserver(IMessageObserver observer) {
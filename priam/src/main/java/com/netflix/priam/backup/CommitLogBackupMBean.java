@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+/**
+ * MBean exposing the progress of commit log archival, see {@link CommitLogBackup}. The age of the segments waiting to
+ * be uploaded is exposed by {@link BackupLagTrackerMBean}.
+ */
+public interface CommitLogBackupMBean {
+    String MBEAN_NAME = "com.priam.backup:name=CommitLogBackup";
+
+    public int getUploadingSegments();
+
+    public long getUploadedSegments();
+
+    public long getUploadedBytes();
+
+    public long getFailedUploads();
+}
@@ -58,9 +58,10 @@ public class CommitLogBackupTask extends AbstractBackup {
     public void execute() throws Exception {
         try {
             logger.debug("Checking for any archived commitlogs");
-            //double-check the permission
+            //double-check the permission. Segments are shipped as they are archived, this restarts the shipping if it
+            //stopped e.g. the archive directory did not exist yet.
             if (config.isBackingUpCommitLogs())
-                clBackup.upload(config.getCommitLogBackupRestoreFromDirs(), null);
+                clBackup.start(config.getCommitLogBackupRestoreFromDirs());
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A backup file system which forwards all its calls to another one, to be extended by the file systems decorating the
+ * downloads of restores.
+ */
+public abstract class ForwardingBackupFileSystem implements IBackupFileSystem {
+    protected final IBackupFileSystem delegate;
+
+    protected ForwardingBackupFileSystem(IBackupFileSystem delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+        delegate.download(path, os);
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os, String filePath) throws BackupRestoreException {
+        delegate.download(path, os, filePath);
+    }
+
+    @Override
+    public void upload(AbstractBackupPath path, InputStream in) throws BackupRestoreException {
+        delegate.upload(path, in);
+    }
+
+    @Override
+    public Iterator<AbstractBackupPath> list(String path, Date start, Date till) {
+        return delegate.list(path, start, till);
+    }
+
+    @Override
+    public Iterator<AbstractBackupPath> listPrefixes(Date date) {
+        return delegate.listPrefixes(date);
+    }
+
+    @Override
+    public void cleanup() {
+        delegate.cleanup();
+    }
+
+    @Override
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+        delegate.deleteFiles(path, files);
+    }
+
+    @Override
+    public int getActivecount() {
+        return delegate.getActivecount();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public long getBytesUploaded() {
+        return delegate.getBytesUploaded();
+    }
+
+    @Override
+    public int getAWSSlowDownExceptionCounter() {
+        return delegate.getAWSSlowDownExceptionCounter();
+    }
+}
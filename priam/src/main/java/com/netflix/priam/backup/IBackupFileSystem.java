@@ -20,6 +20,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Interface representing a backup storage as a file system
@@ -39,7 +40,8 @@ public interface IBackupFileSystem {
 
     /**
      * Upload/Backup to the specified location with contents from the input
-     * stream. Closes the InputStream after its done.
+     * stream. Closes the InputStream after its done. Sets the compressed file
+     * size of the path to the size of the uploaded object.
      */
     public void upload(AbstractBackupPath path, InputStream in) throws BackupRestoreException;
 
@@ -58,6 +60,12 @@ public interface IBackupFileSystem {
      */
     public void cleanup();
 
+    /**
+     * Delete the specified remote files. The files are in the backup location given by path, as for {@link #list}.
+     * Files which do not exist are ignored.
+     */
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException;
+
     /**
      * Get number of active upload or downloads
      */
@@ -27,7 +27,7 @@ import java.util.Map;
  * status of last 60 days on instance.
  * Created by aagrawal on 1/30/17.
  */
-@ImplementedBy(FileSnapshotStatusMgr.class)
+@ImplementedBy(LogSnapshotStatusMgr.class)
 public interface IBackupStatusMgr {
     /**
      * Return the list of snapshot executed on provided day or null if not present.
@@ -45,6 +45,15 @@ public interface IBackupStatusMgr {
      */
     List<BackupMetadata> locate(String snapshotDate);
 
+    /**
+     * Return the list of snapshots started within the provided period.
+     *
+     * @param startFrom start of the period, inclusive.
+     * @param startTo   end of the period, exclusive.
+     * @return List of snapshots started in the period in descending order of snapshot start time.
+     */
+    List<BackupMetadata> locate(Date startFrom, Date startTo);
+
     /**
      * Save the status of snapshot BackupMetadata which started in-memory and other implementations, if any.
      *
@@ -66,6 +75,14 @@ public interface IBackupStatusMgr {
      */
     void failed(BackupMetadata backupMetadata);
 
+    /**
+     * Save the status of a failed or interrupted snapshot BackupMetadata which is resumed, in-memory and other
+     * implementations, if any.
+     *
+     * @param backupMetadata backupmetadata that is resumed
+     */
+    void resume(BackupMetadata backupMetadata);
+
     /**
      * Get the capacity of in-memory status map holding the snapshot status.
      *
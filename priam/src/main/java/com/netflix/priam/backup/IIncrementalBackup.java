@@ -19,6 +19,9 @@ public interface IIncrementalBackup {
 
     public static long INCREMENTAL_INTERVAL_IN_MILLISECS = 10L * 1000;
 
+    //Only the directories reported by the watcher are listed, see IncrementalBackupWatcher.
+    public static long WATCH_INTERVAL_IN_MILLISECS = 1000;
+
     /*
      * @return the number of files pending to be uploaded.  The semantic depends on whether the implementation
      * is synchronous or asynchronous.
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /*
@@ -41,7 +42,13 @@ public class IncrementalBackup extends AbstractBackup implements IIncrementalBac
     private static final Logger logger = LoggerFactory.getLogger(IncrementalBackup.class);
     public static final String JOBNAME = "IncrementalBackup";
     private final List<String> incrementalRemotePaths = new ArrayList<String>();
+    private final List<AbstractBackupPath> incrementalUploadedFiles = new ArrayList<>();
     private IncrementalMetaData metaData;
+    private final BackupIndex backupIndex;
+    private final BackupDedup backupDedup;
+    private final IncrementalBackupWatcher watcher;
+    private final BackupLagTracker lagTracker;
+    private final BackupPriorityClassifier priorityClassifier;
     private BackupRestoreUtil backupRestoreUtil;
     static List<IMessageObserver> observers = new ArrayList<IMessageObserver>();
 
@@ -49,9 +56,18 @@ public class IncrementalBackup extends AbstractBackup implements IIncrementalBac
     public IncrementalBackup(IConfiguration config, Provider<AbstractBackupPath> pathFactory, IFileSystemContext backupFileSystemCtx
             , IncrementalMetaData metaData
             , BackupNotificationMgr backupNotificationMgr
+            , BackupIndex backupIndex, BackupDedup backupDedup
+            , IncrementalBackupWatcher watcher
+            , BackupLagTracker lagTracker
+            , BackupPriorityClassifier priorityClassifier
     ) {
         super(config, backupFileSystemCtx, pathFactory, backupNotificationMgr);
-        this.metaData = metaData; //a means to upload audit trail (via meta_cf_yyyymmddhhmm.json) of files successfully uploaded)
+        this.backupIndex = backupIndex;
+        this.backupDedup = backupDedup;
+        this.watcher = watcher;
+        this.lagTracker = lagTracker;
+        this.priorityClassifier = priorityClassifier;
+        this.metaData = metaData; //a means to upload audit trail (via meta_incremental_yyyymmddhhmmss.json) of files successfully uploaded)
         backupRestoreUtil = new BackupRestoreUtil(config.getIncrementalKeyspaceFilters(), config.getIncrementalCFFilter());
     }
 
@@ -59,18 +75,29 @@ public class IncrementalBackup extends AbstractBackup implements IIncrementalBac
     public void execute() throws Exception {
         //Clearing remotePath List
         incrementalRemotePaths.clear();
-        initiateBackup("backups", backupRestoreUtil);
+        incrementalUploadedFiles.clear();
+        initiateIncrementalBackup(watcher, backupRestoreUtil, priorityClassifier);
+        //Files are recorded as they are uploaded, see fileUploaded.
+        backupIndex.add(Collections.emptyList());
         if (incrementalRemotePaths.size() > 0) {
             notifyObservers();
         }
+
+        //One meta file for all the column families, once enough files are uploaded.
+        metaData.add(incrementalUploadedFiles);
+        try {
+            metaData.flushIfDue();
+        } catch (Exception e) {
+            logger.error("Failed to upload the meta file of {} incremental files, will retry on the next run", metaData.getAccumulatedCount(), e);
+        }
     }
 
 
     /**
-     * Run every 10 Sec
+     * Run every 10 Sec, or every second when the backup directories are watched.
      */
-    public static TaskTimer getTimer() {
-        return new SimpleTimer(JOBNAME, 10L * 1000);
+    public static TaskTimer getTimer(IConfiguration config) {
+        return new SimpleTimer(JOBNAME, config.isIncrementalBackupWatchEnabled() ? WATCH_INTERVAL_IN_MILLISECS : INCREMENTAL_INTERVAL_IN_MILLISECS);
     }
 
     @Override
@@ -99,16 +126,20 @@ public class IncrementalBackup extends AbstractBackup implements IIncrementalBac
     @Override
     protected void backupUploadFlow(File backupDir) throws Exception {
         List<AbstractBackupPath> uploadedFiles = upload(backupDir, BackupFileType.SST);
+        incrementalUploadedFiles.addAll(uploadedFiles);
+        backupDedup.add(uploadedFiles);
+    }
 
-        if (!uploadedFiles.isEmpty()) {
-            String incrementalUploadTime = AbstractBackupPath.formatDate(uploadedFiles.get(0).getTime()); //format of yyyymmddhhmm (e.g. 201505060901)
-            String metaFileName = "meta_" + backupDir.getParent() + "_" + incrementalUploadTime;
-            logger.info("Uploading meta file for incremental backup: {}", metaFileName);
-            this.metaData.setMetaFileName(metaFileName);
-            this.metaData.set(uploadedFiles, incrementalUploadTime);
-            logger.info("Uploaded meta file for incremental backup: {}", metaFileName);
-        }
+    @Override
+    protected void fileFound(AbstractBackupPath bp) {
+        lagTracker.found(bp);
+        backupIndex.queued(bp);
+    }
 
+    @Override
+    protected void fileUploaded(AbstractBackupPath bp, AbstractBackupPath uploaded) {
+        lagTracker.uploaded(bp);
+        backupIndex.uploaded(uploaded);
     }
 
     @Override
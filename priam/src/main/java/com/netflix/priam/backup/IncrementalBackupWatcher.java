@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the incremental backup directories of the tables which have new files, so that incremental backups do not list
+ * the directory of every table on each run, see {@link IConfiguration#isIncrementalBackupWatchEnabled()}.
+ * <p>
+ * The data directory, the keyspace and table directories, and the backups directories are registered with a
+ * {@link WatchService} (inotify on Linux), so keyspaces and tables created later are watched too. Cassandra hard links
+ * flushed and compacted SSTables into the backups directory of the table, which is reported as the creation of a file.
+ * <p>
+ * Events can be lost (queue overflow, limit of watches), so all the backups directories are scanned when watching
+ * starts, after a lost event and every {@link IConfiguration#getIncrementalBackupReconcileIntervalInSecs()} seconds.
+ * If the directories cannot be watched, they are scanned on every incremental backup as without watching.
+ */
+@Singleton
+public class IncrementalBackupWatcher {
+    public static final String INCREMENTAL_BACKUP_FOLDER = "backups";
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalBackupWatcher.class);
+    private final IConfiguration config;
+    private final Map<WatchKey, WatchedDirectory> watched = new ConcurrentHashMap<>();
+    private final Set<File> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean eventsLost = new AtomicBoolean(false);
+    private WatchService watchService;
+    private long lastWatchAttempt = 0;
+    private long lastScan = 0;
+
+    private enum Level {
+        DATA, KEYSPACE, TABLE, BACKUPS;
+
+        private Level child() {
+            return values()[ordinal() + 1];
+        }
+    }
+
+    private static class WatchedDirectory {
+        private final Path path;
+        private final Level level;
+
+        private WatchedDirectory(Path path, Level level) {
+            this.path = path;
+            this.level = level;
+        }
+    }
+
+    @Inject
+    public IncrementalBackupWatcher(IConfiguration config) {
+        this.config = config;
+    }
+
+    /**
+     * Return the backups directories in which files were created since the previous call. Watching starts on the first
+     * call.
+     *
+     * @return the backups directories with new files, or null if all the backups directories have to be scanned.
+     */
+    public synchronized Set<File> changedDirectories() {
+        long now = System.currentTimeMillis();
+        long reconcileInterval = TimeUnit.SECONDS.toMillis(config.getIncrementalBackupReconcileIntervalInSecs());
+        if (watchService == null && now - lastWatchAttempt >= reconcileInterval) {
+            lastWatchAttempt = now;
+            //Files created before watching started are found by a scan.
+            if (start())
+                lastScan = 0;
+        }
+
+        Set<File> directories = new HashSet<>();
+        for (Iterator<File> iterator = changed.iterator(); iterator.hasNext(); ) {
+            directories.add(iterator.next());
+            iterator.remove();
+        }
+
+        long scanInterval = watchService == null ? IIncrementalBackup.INCREMENTAL_INTERVAL_IN_MILLISECS : reconcileInterval;
+        if (eventsLost.getAndSet(false) || now - lastScan >= scanInterval) {
+            lastScan = now;
+            return null;
+        }
+        return directories;
+    }
+
+    /**
+     * @return true if the backups directories are watched.
+     */
+    public synchronized boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Stop watching, the next call to {@link #changedDirectories()} starts watching again.
+     */
+    public synchronized void stop() {
+        if (watchService == null)
+            return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Error while closing the watch service: {}", e.getMessage());
+        }
+        watchService = null;
+        watched.clear();
+        lastWatchAttempt = 0;
+    }
+
+    private boolean start() {
+        File dataDir = new File(config.getDataFileLocation());
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            register(service, dataDir.toPath(), Level.DATA);
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for incremental backups, the backup directories will be scanned instead: {}", dataDir, e.getMessage());
+            watched.clear();
+            if (service != null) {
+                try {
+                    service.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return false;
+        }
+
+        final WatchService events = service;
+        Thread thread = new Thread(() -> processEvents(events), "IncrementalBackupWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        watchService = service;
+        logger.info("Watching {} directories under {} for incremental backups", watched.size(), dataDir);
+        return true;
+    }
+
+    private void register(WatchService service, Path directory, Level level) throws IOException {
+        WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE);
+        watched.put(key, new WatchedDirectory(directory, level));
+
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                if (level == Level.BACKUPS) {
+                    //Files linked before the directory was watched.
+                    changed.add(directory.toFile());
+                    return;
+                }
+                registerChild(service, child, level.child());
+            }
+        }
+    }
+
+    private void registerChild(WatchService service, Path child, Level level) throws IOException {
+        if (!Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+            return;
+        //Table directories also hold the data files and snapshots, only their backups directory is watched.
+        if (level == Level.BACKUPS && !INCREMENTAL_BACKUP_FOLDER.equals(child.getFileName().toString()))
+            return;
+        register(service, child, level);
+    }
+
+    private void processEvents(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            WatchedDirectory directory = watched.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.warn("Watch events lost, the backup directories will be scanned");
+                    eventsLost.set(true);
+                    continue;
+                }
+                if (directory == null)
+                    continue;
+
+                if (directory.level == Level.BACKUPS) {
+                    changed.add(directory.path.toFile());
+                    continue;
+                }
+                Path child = directory.path.resolve((Path) event.context());
+                try {
+                    registerChild(service, child, directory.level.child());
+                } catch (IOException | ClosedWatchServiceException e) {
+                    logger.warn("Could not watch {}, the backup directories will be scanned: {}", child, e.getMessage());
+                    eventsLost.set(true);
+                }
+            }
+
+            //The directory is no longer accessible e.g. the table was dropped.
+            if (!key.reset())
+                watched.remove(key);
+        }
+    }
+}
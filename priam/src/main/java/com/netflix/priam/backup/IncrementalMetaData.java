@@ -19,18 +19,97 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
 import com.netflix.priam.IConfiguration;
+import com.netflix.priam.utils.DateUtil;
 import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Meta files listing the files uploaded by incremental backups, an audit trail of the incremental backups.
+ * <p>
+ * Uploaded files are accumulated with {@link #add(List)} and written to a single meta file, covering all the column
+ * families, when {@link IConfiguration#getIncrementalMetaFlushIntervalInSecs()} elapsed since the first accumulated file
+ * or {@link IConfiguration#getIncrementalMetaFlushMaxEntries()} files are accumulated, whichever comes first. Files
+ * accumulated but not flushed when Priam stops are uploaded but not listed in a meta file. With parallel incremental
+ * backups, the consumers accumulate the files they uploaded and {@link com.netflix.priam.backup.parallel.IncrementalBackupProducer}
+ * flushes them.
+ */
 public class IncrementalMetaData extends MetaData {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalMetaData.class);
+    private static final String META_FILE_PREFIX = "meta_incremental_";
 
+    private final IConfiguration config;
     private String metaFileName = null; //format meta_cf_time (e.g.
+    private final List<AbstractBackupPath> accumulated = new ArrayList<>();
+    private long firstAccumulated = 0;
+    private long lastFlushed = 0;
 
     @Inject
     public IncrementalMetaData(IConfiguration config, Provider<AbstractBackupPath> pathFactory, IFileSystemContext backupFileSystemCtx) {
         super(pathFactory, backupFileSystemCtx, config);
+        this.config = config;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Accumulate uploaded files to be listed in the next meta file.
+     */
+    public synchronized void add(List<AbstractBackupPath> uploadedFiles) {
+        if (uploadedFiles.isEmpty())
+            return;
+        if (accumulated.isEmpty())
+            firstAccumulated = now();
+        accumulated.addAll(uploadedFiles);
+    }
+
+    /**
+     * @return number of uploaded files not yet listed in a meta file.
+     */
+    public synchronized int getAccumulatedCount() {
+        return accumulated.size();
+    }
+
+    /**
+     * Upload the meta file of the accumulated files if the flush interval elapsed or enough files are accumulated.
+     *
+     * @return the uploaded meta file, null if nothing was uploaded.
+     */
+    public synchronized AbstractBackupPath flushIfDue() throws Exception {
+        if (accumulated.isEmpty())
+            return null;
+        long interval = TimeUnit.SECONDS.toMillis(config.getIncrementalMetaFlushIntervalInSecs());
+        if (now() - firstAccumulated < interval && accumulated.size() < config.getIncrementalMetaFlushMaxEntries())
+            return null;
+        return flush();
+    }
+
+    /**
+     * Upload the meta file of the accumulated files. The files stay accumulated if the upload fails.
+     *
+     * @return the uploaded meta file, null if no file was accumulated.
+     */
+    public synchronized AbstractBackupPath flush() throws Exception {
+        if (accumulated.isEmpty())
+            return null;
+        //Names are unique per node as long as there is at most one flush per second.
+        long flushTime = Math.max(now(), lastFlushed + 1000);
+        String incrementalUploadTime = AbstractBackupPath.formatDate(accumulated.get(0).getTime()); //format of yyyymmddhhmm (e.g. 201505060901)
+        setMetaFileName(META_FILE_PREFIX + DateUtil.formatDate(new Date(flushTime), "yyyyMMddHHmmss"));
+        logger.info("Uploading meta file for incremental backup: {}, {} files", metaFileName, accumulated.size());
+        AbstractBackupPath metaFile = set(accumulated, incrementalUploadTime);
+        lastFlushed = flushTime;
+        accumulated.clear();
+        return metaFile;
     }
 
     public void setMetaFileName(String name) {
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.identity.InstanceIdentity;
+
+import java.io.File;
+
+/**
+ * Finds the local copies of backup objects, which this node serves to the peers restoring them, see
+ * {@link PeerBackupFileSystem}.
+ * <p>
+ * From the data directory, only SSTables backed up by this node are served: SSTables are immutable and their
+ * generation is unique per table on a node, so a file of the data directory with the name and size of an SSTable this
+ * node backed up is that SSTable. An SSTable of another node may have the same name, it is never served.
+ * <p>
+ * SSTables of any node are also served from the restore cache, which holds them by checksum, see
+ * {@link CachingBackupFileSystem}. This is the only copy a peer can have of the SSTables of another node: when a dead
+ * node is replaced, the other nodes of its rack do not own its token, so they only help if they restored, or verified,
+ * the same backup before e.g. repeated test restores or {@code /v1/backup/restore_verify_key}.
+ */
+@Singleton
+public class LocalBackupObjects {
+    private final IConfiguration config;
+    private final InstanceIdentity instanceIdentity;
+    private final CachingBackupFileSystem cache;
+
+    @Inject
+    public LocalBackupObjects(IConfiguration config, InstanceIdentity instanceIdentity, CachingBackupFileSystem cache) {
+        this.config = config;
+        this.instanceIdentity = instanceIdentity;
+        this.cache = cache;
+    }
+
+    /**
+     * @return the local file holding the uncompressed content of the backup object, null if there is none.
+     */
+    public File find(AbstractBackupPath path) {
+        if (path.getType() != BackupFileType.SST && path.getType() != BackupFileType.SNAP)
+            return null;
+        if (path.getKeyspace() == null || path.getColumnFamily() == null || path.getSize() <= 0)
+            return null;
+        File cached = cache.get(path);
+        if (cached != null)
+            return cached;
+        //The path is given by a peer, it cannot point out of the data directory.
+        if (path.getKeyspace().startsWith(".") || path.getColumnFamily().startsWith(".") || path.getFileName().startsWith("."))
+            return null;
+        if (!config.getAppName().equals(path.getClusterName()) || !config.getDC().equals(path.getRegion())
+                || !instanceIdentity.getBackupIdentifier().equals(path.getNodeIdentifier()))
+            return null;
+
+        File file = new File(config.getDataFileLocation(), path.getKeyspace() + File.separator + path.getColumnFamily() + File.separator + path.getFileName());
+        if (!file.isFile() || file.length() != path.getSize())
+            return null;
+        return file;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.health.InstanceState;
+import com.netflix.priam.utils.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Default implementation for {@link IBackupStatusMgr}. Every change of a snapshot status is appended to a local log,
+ * see {@link IConfiguration#getBackupStatusFileLoc()}.
+ * <p>
+ * Each line of the log holds the status of one snapshot as JSON, prefixed by its CRC32 so that a line torn by a crash
+ * is detected and ignored. The log is scanned once at startup to index the offset of the latest status of each snapshot
+ * by start time; status is read from the log only when looked up. Once most lines are superseded, the log is compacted
+ * by writing the latest status of each snapshot to a new file which atomically replaces the log.
+ * <p>
+ * A status file written by {@link FileSnapshotStatusMgr} is converted to a log at startup.
+ */
+@Singleton
+public class LogSnapshotStatusMgr extends BackupStatusMgr {
+    private static final Logger logger = LoggerFactory.getLogger(LogSnapshotStatusMgr.class);
+    private static final int IN_MEMORY_SNAPSHOT_CAPACITY = 60;
+    //Lines of the log before it is compacted, if most of them are superseded.
+    private static final int COMPACTION_MIN_LINES = 1000;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final Gson gson = new Gson();
+    private final File logFile;
+    private final NavigableMap<Key, Location> index = new TreeMap<>();
+    private FileChannel log;
+    private long lines = 0;
+
+    /**
+     * Status of a snapshot as stored in the log. Dates are kept to the millisecond.
+     */
+    private static class Record {
+        private String token;
+        private long start;
+        private Long completed;
+        private Status status;
+        private String snapshotLocation;
+        private String progressLocation;
+    }
+
+    private static class Key implements Comparable<Key> {
+        private final long start;
+        private final String token;
+
+        private Key(long start, String token) {
+            this.start = start;
+            this.token = token;
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int result = Long.compare(start, o.start);
+            return result != 0 ? result : token.compareTo(o.token);
+        }
+    }
+
+    private static class Location {
+        private final long offset;
+        //Length of the line, without the line separator.
+        private final int length;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @param config        {@link IConfiguration} of priam to find where the log should be saved/read from.
+     * @param instanceState Status of the instance encapsulating health and other metadata of Priam and Cassandra.
+     */
+    @Inject
+    public LogSnapshotStatusMgr(IConfiguration config, InstanceState instanceState) {
+        super(IN_MEMORY_SNAPSHOT_CAPACITY, instanceState);
+        this.logFile = new File(config.getBackupStatusFileLoc());
+        init();
+    }
+
+    private synchronized void init() {
+        try {
+            //Earlier versions created an empty directory in place of the status file.
+            if (logFile.isDirectory() && logFile.delete())
+                logger.info("Removed empty directory {} left in place of the snapshot status file", logFile);
+            if (isLegacyFile(logFile))
+                convertLegacyFile();
+
+            log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            load();
+            logger.info("Snapshot status of {} snapshots indexed from {}", index.size(), logFile);
+            if (needsCompaction())
+                compact();
+        } catch (IOException e) {
+            logger.error("Error while trying to open snapshot status log {}. Error: {}", logFile, e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Index the log, truncating a trailing line left incomplete by a crash.
+     */
+    private void load() throws IOException {
+        index.clear();
+        lines = 0;
+        long offset = 0;
+        log.position(0);
+        //Closing the stream would close the log.
+        InputStream in = new BufferedInputStream(Channels.newInputStream(log));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            byte[] bytes = line.toByteArray();
+            Record record = decode(bytes);
+            if (record == null)
+                logger.warn("Ignoring corrupted snapshot status at offset {} of {}", offset, logFile);
+            else
+                index.put(new Key(record.start, record.token), new Location(offset, bytes.length));
+            lines++;
+            offset += bytes.length + 1;
+            line.reset();
+        }
+        if (offset < log.size()) {
+            logger.warn("Truncating incomplete snapshot status at offset {} of {}", offset, logFile);
+            log.truncate(offset);
+        }
+    }
+
+    private boolean needsCompaction() {
+        return lines > COMPACTION_MIN_LINES && lines > 2L * index.size();
+    }
+
+    private void compact() throws IOException {
+        File compacted = new File(logFile.getPath() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Location location : index.values())
+                writeLine(out, read(location));
+            out.force(true);
+        }
+        //The open channel still reads the replaced log, so reopen it after the rename.
+        Files.move(compacted.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        long previousLines = lines;
+        log.close();
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+        logger.info("Compacted snapshot status log {} from {} to {} lines", logFile, previousLines, lines);
+    }
+
+    private static boolean isLegacyFile(File file) throws IOException {
+        if (!file.isFile())
+            return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void convertLegacyFile() throws IOException {
+        Map<String, LinkedList<BackupMetadata>> legacy;
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(logFile))) {
+            legacy = (Map<String, LinkedList<BackupMetadata>>) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read snapshot status file " + logFile, e);
+        }
+
+        File converted = new File(logFile.getPath() + ".compact");
+        try (FileChannel out = FileChannel.open(converted.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (LinkedList<BackupMetadata> metadataList : legacy.values()) {
+                if (metadataList == null)
+                    continue;
+                for (BackupMetadata backupMetadata : metadataList)
+                    writeLine(out, encode(toRecord(backupMetadata)));
+            }
+            out.force(true);
+        }
+        Files.move(converted.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Converted snapshot status of {} days in {} to a log", legacy.size(), logFile);
+    }
+
+    private static Record toRecord(BackupMetadata backupMetadata) {
+        Record record = new Record();
+        record.token = backupMetadata.getToken();
+        record.start = backupMetadata.getStart().getTime();
+        record.completed = backupMetadata.getCompleted() == null ? null : backupMetadata.getCompleted().getTime();
+        record.status = backupMetadata.getStatus();
+        record.snapshotLocation = backupMetadata.getSnapshotLocation();
+        record.progressLocation = backupMetadata.getProgressLocation();
+        return record;
+    }
+
+    private static BackupMetadata toBackupMetadata(Record record) throws Exception {
+        BackupMetadata backupMetadata = new BackupMetadata(record.token, new Date(record.start));
+        if (record.completed != null)
+            backupMetadata.setCompleted(new Date(record.completed));
+        backupMetadata.setStatus(record.status);
+        backupMetadata.setSnapshotLocation(record.snapshotLocation);
+        backupMetadata.setProgressLocation(record.progressLocation);
+        return backupMetadata;
+    }
+
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    private static byte[] encode(Record record) {
+        byte[] json = gson.toJson(record).getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[CHECKSUM_LENGTH + 1 + json.length];
+        byte[] checksum = String.format("%08x ", checksum(json, 0, json.length)).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(checksum, 0, line, 0, checksum.length);
+        System.arraycopy(json, 0, line, checksum.length, json.length);
+        return line;
+    }
+
+    /**
+     * @return the status in the line, or null if the line is corrupted.
+     */
+    private static Record decode(byte[] line) {
+        if (line.length <= CHECKSUM_LENGTH || line[CHECKSUM_LENGTH] != ' ')
+            return null;
+        try {
+            long checksum = Long.parseLong(new String(line, 0, CHECKSUM_LENGTH, StandardCharsets.UTF_8), 16);
+            if (checksum != checksum(line, CHECKSUM_LENGTH + 1, line.length - CHECKSUM_LENGTH - 1))
+                return null;
+            Record record = gson.fromJson(new String(line, CHECKSUM_LENGTH + 1, line.length - CHECKSUM_LENGTH - 1, StandardCharsets.UTF_8), Record.class);
+            if (record == null || record.token == null || record.status == null)
+                return null;
+            return record;
+        } catch (NumberFormatException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static void writeLine(FileChannel channel, byte[] line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 1);
+        buffer.put(line).put((byte) '\n');
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private byte[] read(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, location.offset + buffer.position()) < 0)
+                throw new EOFException("Snapshot status log " + logFile + " is shorter than indexed");
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public synchronized void save(BackupMetadata backupMetadata) {
+        if (log == null) {
+            logger.error("Snapshot status log {} is not open, status of {} is not persisted", logFile, backupMetadata);
+            return;
+        }
+
+        Record record = toRecord(backupMetadata);
+        byte[] line = encode(record);
+        long offset = -1;
+        try {
+            offset = log.size();
+            log.position(offset);
+            writeLine(log, line);
+            log.force(false);
+        } catch (IOException e) {
+            logger.error("Error while trying to persist snapshot status to {}. Error: {}", logFile, e.getLocalizedMessage());
+            //Do not leave a partial line which the next status would be appended to.
+            try {
+                if (offset >= 0)
+                    log.truncate(offset);
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+
+        index.put(new Key(record.start, record.token), new Location(offset, line.length));
+        lines++;
+        logger.info("Snapshot status of {} is saved to {}", backupMetadata.getSnapshotDate(), logFile);
+        if (needsCompaction()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.error("Error while trying to compact snapshot status log {}. Error: {}", logFile, e.getLocalizedMessage());
+            }
+        }
+    }
+
+    @Override
+    public LinkedList<BackupMetadata> fetch(String snapshotDate) {
+        Date day = DateUtil.getDate(snapshotDate.length() > 8 ? snapshotDate.substring(0, 8) : snapshotDate);
+        if (day == null)
+            return null;
+        LinkedList<BackupMetadata> metadataList = locate(day, new Date(day.getTime() + TimeUnit.DAYS.toMillis(1)));
+        return metadataList.isEmpty() ? null : metadataList;
+    }
+
+    @Override
+    public synchronized LinkedList<BackupMetadata> locate(Date startFrom, Date startTo) {
+        LinkedList<BackupMetadata> metadataList = new LinkedList<>();
+        if (log == null)
+            return metadataList;
+
+        for (Location location : index.subMap(new Key(startFrom.getTime(), ""), true, new Key(startTo.getTime(), ""), false).descendingMap().values()) {
+            try {
+                Record record = decode(read(location));
+                if (record == null) {
+                    logger.error("Snapshot status at offset {} of {} is corrupted", location.offset, logFile);
+                    continue;
+                }
+                metadataList.add(toBackupMetadata(record));
+            } catch (Exception e) {
+                logger.error("Error while trying to read snapshot status from {}. Error: {}", logFile, e.getLocalizedMessage());
+            }
+        }
+        return metadataList;
+    }
+}
@@ -25,9 +25,6 @@ import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
 import com.netflix.priam.backup.IMessageObserver.BACKUP_MESSAGE_TYPE;
 import com.netflix.priam.utils.RetryableCallable;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.json.simple.JSONArray;
-import org.json.simple.parser.JSONParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,18 +52,23 @@ public class MetaData {
         this.fs = backupFileSystemCtx.getFileStrategy(config);
     }
 
-    @SuppressWarnings("unchecked")
     public AbstractBackupPath set(List<AbstractBackupPath> bps, String snapshotName) throws Exception {
         File metafile = createTmpMetaFile();
-        FileWriter fr = new FileWriter(metafile);
-        try {
-            JSONArray jsonObj = new JSONArray();
+        try (BackupManifest.Writer writer = new BackupManifest.Writer(metafile, snapshotName)) {
             for (AbstractBackupPath filePath : bps)
-                jsonObj.add(filePath.getRemotePath());
-            fr.write(jsonObj.toJSONString());
-        } finally {
-            IOUtils.closeQuietly(fr);
+                writer.add(filePath);
         }
+        return upload(metafile, snapshotName);
+    }
+
+    /**
+     * Upload a meta file which was already written e.g. using {@link BackupManifest.Writer} while uploading the files of
+     * the backup. The local meta file is removed afterwards.
+     * @param metafile     meta file created using {@link #createTmpMetaFile()}
+     * @param snapshotName name of the snapshot, used as the time of the meta file.
+     * @return the uploaded meta file.
+     */
+    public AbstractBackupPath upload(File metafile, String snapshotName) throws Exception {
         AbstractBackupPath backupfile = decorateMetaJson(metafile, snapshotName);
         try {
             upload(backupfile);
@@ -88,7 +90,7 @@ public class MetaData {
     public AbstractBackupPath decorateMetaJson(File metafile, String snapshotName) throws ParseException {
         AbstractBackupPath backupfile = pathFactory.get();
         backupfile.parseLocal(metafile, BackupFileType.META);
-        backupfile.time = backupfile.parseDate(snapshotName);
+        backupfile.setTime(backupfile.parseDate(snapshotName));
         return backupfile;
     }
 
@@ -126,8 +128,6 @@ public class MetaData {
                 return null;
             }
         }.call();
-
-        bp.setCompressedFileSize(fs.getBytesUploaded());
     }
 
     public File createTmpMetaFile() throws IOException {
@@ -161,16 +161,18 @@ public class MetaData {
         metaRemotePaths.add(remotePath);
     }
 
+    /**
+     * Read the entries of the meta file one at a time. Caller must close the reader if it does not read all the entries.
+     */
+    public BackupManifest.Reader read(File input) throws IOException {
+        return new BackupManifest.Reader(input, pathFactory);
+    }
+
     public List<AbstractBackupPath> toJson(File input) {
         List<AbstractBackupPath> files = Lists.newArrayList();
-        try {
-            JSONArray jsonObj = (JSONArray) new JSONParser().parse(new FileReader(input));
-            for (int i = 0; i < jsonObj.size(); i++) {
-                AbstractBackupPath p = pathFactory.get();
-                p.parseRemote((String) jsonObj.get(i));
-                files.add(p);
-            }
-
+        try (BackupManifest.Reader reader = read(input)) {
+            while (reader.hasNext())
+                files.add(reader.next());
         } catch (Exception ex) {
             throw new RuntimeException("Error transforming file " + input.getAbsolutePath() + " to JSON format.  Msg:" + ex.getLocalizedMessage(), ex);
         }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.identity.IPriamInstanceFactory;
+import com.netflix.priam.identity.PriamInstance;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the backup objects from the Priam of the other nodes of the rack when they have a local copy, see
+ * {@link LocalBackupObjects}, and from the backup file system otherwise. Enabled by
+ * {@link IConfiguration#isRestoreFromPeersEnabled()}.
+ * <p>
+ * Peers hold copies of their own SSTables and of the SSTables in their restore cache only. Restoring the backup of a
+ * dead node, e.g. to replace it, is only served by the peers which cached that backup by restoring or verifying it
+ * before, see {@link CachingBackupFileSystem}.
+ * <p>
+ * Peers are asked in turn for the uncompressed content of the object by its remote path over Priam's REST port. A peer
+ * without the object answers 404 and the next one is asked. A peer which fails is not asked again until the peers are
+ * refreshed. If a peer fails after some of the object was written, the download fails and is retried by the restore.
+ */
+@Singleton
+public class PeerBackupFileSystem extends ForwardingBackupFileSystem {
+    private static final Logger logger = LoggerFactory.getLogger(PeerBackupFileSystem.class);
+    static final String OBJECT_PATH = "/Priam/REST/v1/restore/object";
+    private static final long PEER_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int READ_TIMEOUT = 30000;
+    private final IConfiguration config;
+    //Only needed once restoring from peers, e.g. not by the command line restore.
+    private final Provider<IPriamInstanceFactory> instanceFactory;
+    private final Set<String> failedPeers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong peerDownloads = new AtomicLong();
+    private final AtomicLong peerBytes = new AtomicLong();
+    private volatile List<String> peers;
+    private volatile long peersRefreshed = 0;
+
+    @Inject
+    public PeerBackupFileSystem(IConfiguration config, @Named("backup") IBackupFileSystem delegate, Provider<IPriamInstanceFactory> instanceFactory) {
+        super(delegate);
+        this.config = config;
+        this.instanceFactory = instanceFactory;
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+        if (!downloadFromPeers(path, os))
+            delegate.download(path, os);
+    }
+
+    @Override
+    public void download(AbstractBackupPath path, OutputStream os, String filePath) throws BackupRestoreException {
+        if (!downloadFromPeers(path, os))
+            delegate.download(path, os, filePath);
+    }
+
+    /**
+     * @return the hosts of the other nodes of the rack.
+     */
+    List<String> getPeers() {
+        long now = System.currentTimeMillis();
+        if (peers == null || now - peersRefreshed >= PEER_REFRESH_INTERVAL) {
+            List<String> rackPeers = new ArrayList<>();
+            List<PriamInstance> instances = instanceFactory.get().getAllIds(config.getAppName());
+            for (PriamInstance instance : instances) {
+                if (config.getRac().equals(instance.getRac()) && StringUtils.isNotBlank(instance.getHostIP())
+                        && !instance.getHostIP().equals(config.getHostIP()))
+                    rackPeers.add(instance.getHostIP());
+            }
+            peers = rackPeers;
+            peersRefreshed = now;
+            failedPeers.clear();
+        }
+        return peers;
+    }
+
+    private boolean downloadFromPeers(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+        //Peers only serve the SSTables of known size, see LocalBackupObjects.
+        if (!config.isRestoreFromPeersEnabled() || path.getSize() <= 0
+                || (path.getType() != AbstractBackupPath.BackupFileType.SST && path.getType() != AbstractBackupPath.BackupFileType.SNAP))
+            return false;
+
+        for (String peer : getPeers()) {
+            if (failedPeers.contains(peer))
+                continue;
+            CountingOutputStream counting = new CountingOutputStream(os);
+            try {
+                if (downloadFromPeer(peer, path, counting)) {
+                    peerDownloads.incrementAndGet();
+                    peerBytes.addAndGet(counting.getCount());
+                    logger.debug("Downloaded {} from peer {}", path.getRemotePath(), peer);
+                    return true;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not download {} from peer {}: {}", path.getRemotePath(), peer, e.getMessage());
+                failedPeers.add(peer);
+                if (counting.getCount() > 0)
+                    throw new BackupRestoreException("Download of " + path.getRemotePath() + " from peer " + peer + " failed after " + counting.getCount() + " bytes", e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the peer had the object and it was written to the output stream, which is closed.
+     */
+    private boolean downloadFromPeer(String peer, AbstractBackupPath path, CountingOutputStream os) throws IOException {
+        String query = "?path=" + URLEncoder.encode(path.getRemotePath(), StandardCharsets.UTF_8.name()) + "&size=" + path.getSize();
+        if (path.getChecksum() != null)
+            query += "&checksum=" + URLEncoder.encode(path.getChecksum(), StandardCharsets.UTF_8.name());
+        URL url = new URL("http", peer, config.getRestorePeerPort(), OBJECT_PATH + query);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            conn.setRequestMethod("GET");
+            int responseCode = conn.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND)
+                return false;
+            if (responseCode != HttpURLConnection.HTTP_OK)
+                throw new IOException("Unexpected response code " + responseCode);
+
+            try (InputStream in = conn.getInputStream()) {
+                IOUtils.copyLarge(in, os);
+            }
+            if (os.getCount() != path.getSize())
+                throw new IOException("Peer " + peer + " returned " + os.getCount() + " bytes for " + path.getRemotePath() + ", expected " + path.getSize());
+            os.close();
+            return true;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    public long getPeerDownloads() {
+        return peerDownloads.get();
+    }
+
+    public long getPeerBytes() {
+        return peerBytes.get();
+    }
+}
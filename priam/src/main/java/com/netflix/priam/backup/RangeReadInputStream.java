@@ -49,7 +49,7 @@ public class RangeReadInputStream extends InputStream {
     public int read(final byte b[], final int off, final int len) throws IOException {
 //        logger.info(String.format("incoming buf req's size = %d, off = %d, len to read = %d, on file size %d, cur offset = %d path = %s",
 //                b.length, off, len, path.getSize(), offset, path.getRemotePath()));
-        final long fileSize = path.getSize();
+        final long fileSize = path.getCompressedFileSize();
         if (fileSize > 0 && offset >= fileSize)
             return -1;
         final long firstByte = offset;
@@ -92,7 +92,7 @@ public class RangeReadInputStream extends InputStream {
             return cnt.intValue();
         } catch (Exception e) {
             String msg = String.format("failed to read offset range %d-%d of file %s whose size is %d",
-                    firstByte, endByte, path.getRemotePath(), path.getSize());
+                    firstByte, endByte, path.getRemotePath(), path.getCompressedFileSize());
             throw new IOException(msg, e);
         }
     }
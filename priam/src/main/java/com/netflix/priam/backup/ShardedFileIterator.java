@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.backup;
+
+import com.google.inject.Provider;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Iterator over the files of the backup location which fall between a start and end time.
+ * <p>
+ * With an executor, the range is split into disjoint prefixes (see {@link AbstractBackupPath#remotePrefixes}) which
+ * are listed concurrently: the prefixes following the one being read are listed ahead, and the next page of each prefix
+ * is fetched while the current one is read. Buffering is bounded to one page per prefix listed ahead. Files are returned
+ * in the order of a listing of the whole range. Each listing task is a single request, so the executor can be shared.
+ * <p>
+ * Without an executor, the common prefix of the range is listed one page at a time by the calling thread.
+ */
+public abstract class ShardedFileIterator implements Iterator<AbstractBackupPath> {
+    //Prefixes per listing thread, prefixes of an idle period are cheap to list.
+    private static final int PREFIXES_PER_THREAD = 4;
+    protected final Provider<AbstractBackupPath> pathProvider;
+    protected final Date start;
+    protected final Date till;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final List<String> prefixes;
+    private final List<Future<Page>> fetches = new ArrayList<>();
+    private int current = 0;
+    private Iterator<AbstractBackupPath> iterator = Collections.emptyIterator();
+
+    /**
+     * A page of a listing.
+     */
+    protected static class Page {
+        private final List<AbstractBackupPath> paths;
+        private final Object next;
+
+        /**
+         * @param paths files of the page.
+         * @param next  continuation of the listing passed to {@link #listPage}, null if this is the last page.
+         */
+        public Page(List<AbstractBackupPath> paths, Object next) {
+            this.paths = paths;
+            this.next = next;
+        }
+    }
+
+    /**
+     * @param path        backup location, as for {@link IBackupFileSystem#list}.
+     * @param executor    executor listing the prefixes, null to list the range sequentially.
+     * @param parallelism number of prefixes listed ahead of the one being read.
+     */
+    protected ShardedFileIterator(Provider<AbstractBackupPath> pathProvider, String path, Date start, Date till, ExecutorService executor, int parallelism) {
+        this.pathProvider = pathProvider;
+        this.start = start;
+        this.till = till;
+        this.executor = executor;
+        this.parallelism = executor == null ? 0 : Math.max(parallelism, 1);
+        if (executor == null)
+            this.prefixes = Collections.singletonList(pathProvider.get().remotePrefix(start, till, path));
+        else
+            this.prefixes = pathProvider.get().remotePrefixes(start, till, path, this.parallelism * PREFIXES_PER_THREAD);
+    }
+
+    /**
+     * List one page of the objects under the prefix.
+     * @param prefix       prefix to list.
+     * @param continuation null for the first page, otherwise the continuation of the previous page.
+     */
+    protected abstract Page listPage(String prefix, Object continuation) throws Exception;
+
+    private Future<Page> fetch(String prefix, Object continuation) {
+        Callable<Page> listing = () -> listPage(prefix, continuation);
+        if (executor != null)
+            return executor.submit(listing);
+        FutureTask<Page> task = new FutureTask<>(listing);
+        task.run();
+        return task;
+    }
+
+    private Page get(Future<Page> fetch) {
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while listing " + prefixes.get(current), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException("Exception encountered listing " + prefixes.get(current) + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private boolean inRange(AbstractBackupPath path) {
+        return (path.getTime().after(start) && path.getTime().before(till)) || path.getTime().equals(start);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!iterator.hasNext()) {
+            if (current >= prefixes.size())
+                return false;
+            while (fetches.size() < prefixes.size() && fetches.size() <= current + parallelism)
+                fetches.add(fetch(prefixes.get(fetches.size()), null));
+
+            Page page = get(fetches.get(current));
+            if (page.next != null) {
+                fetches.set(current, fetch(prefixes.get(current), page.next));
+            } else {
+                fetches.set(current, null);
+                current++;
+            }
+            List<AbstractBackupPath> paths = new ArrayList<>(page.paths.size());
+            for (AbstractBackupPath path : page.paths)
+                if (inRange(path))
+                    paths.add(path);
+            iterator = paths.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public AbstractBackupPath next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
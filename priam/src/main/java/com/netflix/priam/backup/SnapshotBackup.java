@@ -28,45 +28,67 @@ import com.netflix.priam.identity.InstanceIdentity;
 import com.netflix.priam.notification.BackupEvent;
 import com.netflix.priam.notification.BackupNotificationMgr;
 import com.netflix.priam.scheduler.CronTimer;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
 import com.netflix.priam.scheduler.TaskTimer;
 import com.netflix.priam.utils.CassandraMonitor;
 import com.netflix.priam.utils.JMXNodeTool;
 import com.netflix.priam.utils.RetryableCallable;
 import com.netflix.priam.utils.ThreadSleeper;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.quartz.CronExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Task for running daily snapshots
+ * <p>
+ * By default all the tables are snapshotted at once and then uploaded, so the snapshot keeps the SSTables compacted
+ * away during the upload on disk. With {@link IConfiguration#getSnapshotTableBatchSize()} set, the tables are
+ * snapshotted, uploaded and cleared a batch at a time, which bounds the extra disk usage to the tables of one batch.
+ * Such a snapshot is not a point in time copy of the node, each batch is as of the time it was snapshotted.
  */
 @Singleton
 public class SnapshotBackup extends AbstractBackup {
     private static final Logger logger = LoggerFactory.getLogger(SnapshotBackup.class);
     public static final String JOBNAME = "SnapshotBackup";
     private final MetaData metaData;
-    private final List<String> snapshotRemotePaths = new ArrayList<String>();
+    private final BackupIndex backupIndex;
+    private final BackupDedup backupDedup;
+    private final List<String> snapshotRemotePaths = Collections.synchronizedList(new ArrayList<String>());
     static List<IMessageObserver> observers = new ArrayList<IMessageObserver>();
     private final ThreadSleeper sleeper = new ThreadSleeper();
     private static final long WAIT_TIME_MS = 60 * 1000 * 10;
+    private static final String PROGRESS_FILE_PREFIX = "snapshot_";
+    private static final String PROGRESS_FILE_SUFFIX = ".progress";
     private final CommitLogBackup clBackup;
     private InstanceIdentity instanceIdentity;
     private IBackupStatusMgr snapshotStatusMgr;
     private BackupRestoreUtil backupRestoreUtil;
     private String snapshotName = null;
-    private List<AbstractBackupPath> abstractBackupPaths = null;
+    private volatile BackupManifest.Writer manifestWriter = null;
+    private volatile BackupMetadata inProgress = null;
 
     @Inject
     public SnapshotBackup(IConfiguration config, Provider<AbstractBackupPath> pathFactory,
                           MetaData metaData, CommitLogBackup clBackup, IFileSystemContext backupFileSystemCtx
             , IBackupStatusMgr snapshotStatusMgr
-            , BackupNotificationMgr backupNotificationMgr, InstanceIdentity instanceIdentity) {
+            , BackupNotificationMgr backupNotificationMgr, InstanceIdentity instanceIdentity
+            , BackupIndex backupIndex, BackupDedup backupDedup) {
         super(config, backupFileSystemCtx, pathFactory, backupNotificationMgr);
         this.metaData = metaData;
+        this.backupIndex = backupIndex;
+        this.backupDedup = backupDedup;
         this.clBackup = clBackup;
         this.snapshotStatusMgr = snapshotStatusMgr;
         this.instanceIdentity = instanceIdentity;
@@ -82,31 +104,68 @@ public class SnapshotBackup extends AbstractBackup {
         }
 
         Date startTime = Calendar.getInstance(TimeZone.getTimeZone("GMT")).getTime();
-        snapshotName = pathFactory.get().formatDate(startTime);
         String backupIdentifier = instanceIdentity.getBackupIdentifier();
+        boolean progressive = config.getSnapshotTableBatchSize() > 0;
+        //Progressive snapshots clear the tables already uploaded, they cannot be resumed.
+        boolean resumable = config.getSnapshotResumeWindowInHours() > 0 && !progressive;
 
-        // Save start snapshot status
-        BackupMetadata backupMetadata = new BackupMetadata(backupIdentifier, startTime);
-        snapshotStatusMgr.start(backupMetadata);
+        BackupMetadata backupMetadata = resumable ? findResumableSnapshot(backupIdentifier, startTime) : null;
+        boolean resumed = backupMetadata != null;
+        if (resumed) {
+            snapshotName = pathFactory.get().formatDate(backupMetadata.getStart());
+            logger.info("Resuming snapshot {}", snapshotName);
+            snapshotStatusMgr.resume(backupMetadata);
+        } else {
+            snapshotName = pathFactory.get().formatDate(startTime);
+            // Save start snapshot status
+            backupMetadata = new BackupMetadata(backupIdentifier, startTime);
+            backupMetadata.setProgressLocation(getProgressFile(snapshotName).getPath());
+            snapshotStatusMgr.start(backupMetadata);
+        }
+        //Only the latest snapshot can be resumed, the other snapshots kept to be resumed never will be.
+        clearKeptSnapshots(backupMetadata.getProgressLocation());
+        File progressFile = new File(backupMetadata.getProgressLocation());
+        inProgress = backupMetadata;
+        boolean snapshotTaken = false;
+        boolean keepSnapshot = false;
 
         try {
             logger.info("Starting snapshot {}", snapshotName);
             //Clearing remotePath List
             snapshotRemotePaths.clear();
-            takeSnapshot(snapshotName);
+            backupDedup.compact();
+            if (!progressive && !resumed)
+                takeSnapshot(snapshotName);
 
-            // Collect all snapshot dir's under keyspace dir's
-            abstractBackupPaths = Lists.newArrayList();
-            initiateBackup("snapshots", backupRestoreUtil);
+            // Collect all snapshot dir's under keyspace dir's. Uploaded files are added to the progress file as they are
+            // uploaded, before the local file is deleted.
+            try (BackupManifest.Writer writer = resumed ? reopenProgressFile(progressFile) : new BackupManifest.Writer(progressFile, snapshotName)) {
+                //The progress file is only created once the snapshot of all the tables is taken, a partial snapshot is
+                //never resumed.
+                snapshotTaken = true;
+                //meta.json has the time of the snapshot, the uploaded indexes do not cover it until it is uploaded.
+                backupIndex.queued(metaData.decorateMetaJson(progressFile, snapshotName));
+                manifestWriter = writer;
+                if (progressive)
+                    progressiveBackup();
+                else
+                    initiateBackup("snapshots", backupRestoreUtil);
+            } finally {
+                manifestWriter = null;
+            }
 
-            //pre condition notifiy of meta.json upload
+            //The progress file is kept until meta.json is uploaded, in case the upload fails.
             File tmpMetaFile = metaData.createTmpMetaFile(); //Note: no need to remove this temp as it is done within createTmpMetaFile()
+            Files.copy(progressFile.toPath(), tmpMetaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            //pre condition notifiy of meta.json upload
             AbstractBackupPath metaJsonAbp = metaData.decorateMetaJson(tmpMetaFile, snapshotName);
             metaJsonAbp.setCompressedFileSize(0);
             notifyEventStart(new BackupEvent(metaJsonAbp));
 
             // Upload meta file
-            AbstractBackupPath metaJson = metaData.set(abstractBackupPaths, snapshotName);
+            AbstractBackupPath metaJson = metaData.upload(tmpMetaFile, snapshotName);
+            backupIndex.add(Collections.singletonList(metaJson));
 
             logger.info("Snapshot upload complete for {}", snapshotName);
             notifyEventSuccess(new BackupEvent(metaJsonAbp));
@@ -120,16 +179,189 @@ public class SnapshotBackup extends AbstractBackup {
         } catch (Exception e) {
             logger.error("Exception occured while taking snapshot: {}. Exception: {}", snapshotName, e.getLocalizedMessage());
             snapshotStatusMgr.failed(backupMetadata);
+            keepSnapshot = resumable && snapshotTaken;
             throw e;
         } finally {
+            inProgress = null;
+            if (keepSnapshot) {
+                logger.info("Keeping snapshot {} to resume it within {} hours", snapshotName, config.getSnapshotResumeWindowInHours());
+            } else {
+                try {
+                    clearSnapshot(snapshotName);
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                }
+                FileUtils.deleteQuietly(progressFile);
+            }
+        }
+    }
+
+    /**
+     * Find the latest snapshot of this node if it failed or was interrupted less than
+     * {@link IConfiguration#getSnapshotResumeWindowInHours()} ago and its snapshot and upload progress are still on disk.
+     *
+     * @return the snapshot to resume, null if a new snapshot has to be taken.
+     */
+    private BackupMetadata findResumableSnapshot(String backupIdentifier, Date now) {
+        Date startFrom = new Date(now.getTime() - TimeUnit.HOURS.toMillis(config.getSnapshotResumeWindowInHours()));
+        for (BackupMetadata backupMetadata : snapshotStatusMgr.locate(startFrom, new Date(now.getTime() + 1))) {
+            if (!backupIdentifier.equals(backupMetadata.getToken()))
+                continue;
+            //Only the latest snapshot is resumed, and not while it is still running.
+            if (backupMetadata.getStatus() == Status.FINISHED || backupMetadata.equals(inProgress))
+                return null;
+            if (backupMetadata.getProgressLocation() == null || !new File(backupMetadata.getProgressLocation()).exists())
+                return null;
+            //The local files are deleted as they are uploaded, without the snapshot the remaining files are unknown.
+            if (!snapshotExists(pathFactory.get().formatDate(backupMetadata.getStart()))) {
+                logger.info("Snapshot {} is no longer on disk, it cannot be resumed", backupMetadata.getStart());
+                return null;
+            }
+            return backupMetadata;
+        }
+        return null;
+    }
+
+    private boolean snapshotExists(String snapshotName) {
+        File[] keyspaceDirs = new File(config.getDataFileLocation()).listFiles();
+        if (keyspaceDirs == null)
+            return false;
+        for (File keyspaceDir : keyspaceDirs) {
+            File[] columnFamilyDirs = keyspaceDir.listFiles();
+            if (columnFamilyDirs == null)
+                continue;
+            for (File columnFamilyDir : columnFamilyDirs) {
+                if (new File(columnFamilyDir, "snapshots" + File.separator + snapshotName).isDirectory())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the local manifest of the files of the snapshot uploaded so far, next to the snapshot status file.
+     */
+    private File getProgressFile(String snapshotName) {
+        return new File(getStatusDir(), PROGRESS_FILE_PREFIX + snapshotName + PROGRESS_FILE_SUFFIX);
+    }
+
+    private File getStatusDir() {
+        return new File(config.getBackupStatusFileLoc()).getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Clear the snapshots kept to be resumed, and delete their progress file, except the given one. A snapshot is kept
+     * as long as its progress file exists.
+     */
+    private void clearKeptSnapshots(String keepProgressLocation) {
+        File[] progressFiles = getStatusDir().listFiles((dir, name) -> name.startsWith(PROGRESS_FILE_PREFIX) && name.endsWith(PROGRESS_FILE_SUFFIX));
+        if (progressFiles == null)
+            return;
+        BackupMetadata running = inProgress;
+        for (File progressFile : progressFiles) {
+            if (progressFile.getPath().equals(keepProgressLocation) || (running != null && progressFile.getPath().equals(running.getProgressLocation())))
+                continue;
+            String name = progressFile.getName();
+            String keptSnapshot = name.substring(PROGRESS_FILE_PREFIX.length(), name.length() - PROGRESS_FILE_SUFFIX.length());
+            logger.info("Clearing snapshot {} which was kept to be resumed", keptSnapshot);
             try {
-                clearSnapshot(snapshotName);
+                clearSnapshot(keptSnapshot);
             } catch (Exception e) {
-                logger.error(e.getMessage(), e);
+                logger.error("Failed to clear snapshot {}: {}", keptSnapshot, e.getMessage(), e);
+                continue;
+            }
+            FileUtils.deleteQuietly(progressFile);
+        }
+    }
+
+    /**
+     * Open the progress file of an interrupted snapshot to add the files uploaded when it is resumed. A line torn by a
+     * crash is dropped, the local file was deleted only after its line was written.
+     */
+    private BackupManifest.Writer reopenProgressFile(File progressFile) throws Exception {
+        List<AbstractBackupPath> uploaded = new ArrayList<>();
+        try (BackupManifest.Reader reader = metaData.read(progressFile)) {
+            while (reader.hasNext())
+                uploaded.add(reader.next());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring the end of the snapshot progress file {}: {}", progressFile, e.getMessage());
+        }
+        logger.info("{} files of snapshot {} were already uploaded", uploaded.size(), snapshotName);
+
+        File rewritten = new File(progressFile.getPath() + ".tmp");
+        try (BackupManifest.Writer writer = new BackupManifest.Writer(rewritten, snapshotName)) {
+            for (AbstractBackupPath path : uploaded)
+                writer.add(path);
+        }
+        Files.move(rewritten.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return BackupManifest.Writer.append(progressFile);
+    }
+
+    /**
+     * Snapshot, upload and clear the tables a batch at a time. The tables of a batch are uploaded by
+     * {@link IConfiguration#getSnapshotBatchThreads()} threads.
+     */
+    private void progressiveBackup() throws Exception {
+        List<File> columnFamilyDirs = getSnapshotColumnFamilyDirs();
+        int batchSize = config.getSnapshotTableBatchSize();
+        logger.info("Snapshotting {} tables in batches of {}", columnFamilyDirs.size(), batchSize);
+
+        ExecutorService executor = new NamedThreadPoolExecutor(Math.max(1, config.getSnapshotBatchThreads()), JOBNAME);
+        try {
+            for (List<File> batch : Lists.partition(columnFamilyDirs, batchSize)) {
+                Set<String> keyspaces = new HashSet<>();
+                for (File columnFamilyDir : batch) {
+                    String keyspace = columnFamilyDir.getParentFile().getName();
+                    takeSnapshot(snapshotName, keyspace, columnFamilyDir.getName().split("-")[0]);
+                    keyspaces.add(keyspace);
+                }
+
+                List<Future<?>> uploads = new ArrayList<>(batch.size());
+                for (File columnFamilyDir : batch)
+                    uploads.add(executor.submit(() -> {
+                        backupUploadFlow(new File(columnFamilyDir, "snapshots"));
+                        return null;
+                    }));
+                for (Future<?> upload : uploads) {
+                    try {
+                        upload.get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+
+                //Tables of the next batches are not snapshotted yet, only the uploaded snapshots are cleared.
+                clearSnapshot(snapshotName, keyspaces.toArray(new String[0]));
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * @return the directories of the tables to back up. Directories without SSTables e.g. of dropped tables are skipped.
+     */
+    private List<File> getSnapshotColumnFamilyDirs() {
+        File dataDir = new File(config.getDataFileLocation());
+        if (!dataDir.exists()) {
+            throw new IllegalArgumentException("The configured 'data file location' does not exist: "
+                    + config.getDataFileLocation());
+        }
+        List<File> columnFamilyDirs = new ArrayList<>();
+        for (File keyspaceDir : dataDir.listFiles()) {
+            if (keyspaceDir.isFile() || FILTER_KEYSPACE.contains(keyspaceDir.getName()))
+                continue;
+            for (File columnFamilyDir : keyspaceDir.listFiles()) {
+                if (!columnFamilyDir.isDirectory() || isFiltered(keyspaceDir, columnFamilyDir, backupRestoreUtil))
+                    continue;
+                File[] sstables = columnFamilyDir.listFiles((dir, name) -> name.endsWith("-Data.db"));
+                if (sstables != null && sstables.length > 0)
+                    columnFamilyDirs.add(columnFamilyDir);
+            }
+        }
+        return columnFamilyDirs;
+    }
+
     private File getValidSnapshot(File snpDir, String snapshotName) {
         for (File snapshotDir : snpDir.listFiles())
             if (snapshotDir.getName().matches(snapshotName))
@@ -148,11 +380,21 @@ public class SnapshotBackup extends AbstractBackup {
         }.call();
     }
 
-    private void clearSnapshot(final String snapshotTag) throws Exception {
+    private void takeSnapshot(final String snapshotName, final String keyspace, final String columnFamily) throws Exception {
+        new RetryableCallable<Void>() {
+            public Void retriableCall() throws Exception {
+                JMXNodeTool nodetool = JMXNodeTool.instance(config);
+                nodetool.takeSnapshot(snapshotName, columnFamily, keyspace);
+                return null;
+            }
+        }.call();
+    }
+
+    private void clearSnapshot(final String snapshotTag, final String... keyspaces) throws Exception {
         new RetryableCallable<Void>() {
             public Void retriableCall() throws Exception {
                 JMXNodeTool nodetool = JMXNodeTool.instance(config);
-                nodetool.clearSnapshot(snapshotTag);
+                nodetool.clearSnapshot(snapshotTag, keyspaces);
                 return null;
             }
         }.call();
@@ -226,9 +468,11 @@ public class SnapshotBackup extends AbstractBackup {
 
         File snapshotDir = getValidSnapshot(backupDir, snapshotName);
         // Add files to this dir
-        if (null != snapshotDir)
-            abstractBackupPaths.addAll(upload(snapshotDir, BackupFileType.SNAP));
-        else
+        if (null != snapshotDir) {
+            //Uploaded files are added to the manifest by fileUploaded.
+            List<AbstractBackupPath> uploadedFiles = upload(snapshotDir, BackupFileType.SNAP);
+            backupDedup.add(uploadedFiles);
+        } else
             logger.warn("{} folder does not contain {} snapshots", backupDir, snapshotName);
     }
 
@@ -236,4 +480,25 @@ public class SnapshotBackup extends AbstractBackup {
     protected void addToRemotePath(String remotePath) {
         snapshotRemotePaths.add(remotePath);
     }
+
+    /*
+     * Record the file in the progress file before the local file is deleted, so a resumed snapshot lists it in meta.json.
+     */
+    @Override
+    protected void fileUploaded(AbstractBackupPath bp, AbstractBackupPath uploaded) {
+        try {
+            manifestWriter.add(uploaded);
+            manifestWriter.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to record the upload of " + uploaded.getRemotePath() + " in the snapshot progress file", e);
+        }
+    }
+
+    /*
+     * meta.json references the SSTables already uploaded, by an incremental backup or a previous snapshot.
+     */
+    @Override
+    protected AbstractBackupPath getUploadedCopy(AbstractBackupPath bp) {
+        return backupDedup.find(bp);
+    }
 }
@@ -19,14 +19,20 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.priam.IConfiguration;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupPriorityClassifier;
+import com.netflix.priam.backup.BackupPriorityClassifier.Priority;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /*
  * 
@@ -36,6 +42,14 @@ import java.util.concurrent.BlockingQueue;
  * - Mechanism to add a task, including de-duplication of tasks before adding to queue.
  * - Guarantee delivery of task to only one consumer.
  * - Provide relevant metrics including number of tasks in queue, etc.
+ *
+ * A file stays in tasksQueued from the time it is added until its upload completes, successfully or not, so a file
+ * found again by the producer while it is queued or uploading is not queued twice, and a failed upload is queued again
+ * by the next producer run. Both collections are safe for concurrent producers and consumers.
+ *
+ * Files are queued per priority class of their table (see BackupPriorityClassifier) and taken by smooth weighted round
+ * robin: while several classes have files queued, each class gets a share of the takes proportional to its weight, and
+ * a class alone in the queue gets all of them.
  */
 
 @Singleton
@@ -43,68 +57,107 @@ public class CassandraBackupQueueMgr implements ITaskQueueMgr<AbstractBackupPath
 
     private static final Logger logger = LoggerFactory.getLogger(CassandraBackupQueueMgr.class);
 
-    BlockingQueue<AbstractBackupPath> tasks; //A queue of files to be uploaded
-    AbstractSet<String> tasksQueued; //A queue to determine what files have been queued, used for deduplication
+    private final BackupPriorityClassifier priorityClassifier;
+    private final Map<Priority, Deque<AbstractBackupPath>> tasks = new EnumMap<>(Priority.class); //Queues of files to be uploaded, per priority class
+    private final int[] currentWeights = new int[Priority.values().length];
+    private final int capacity;
+    private int count = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    Set<String> tasksQueued; //Files queued or being uploaded, used for deduplication
 
     @Inject
-    public CassandraBackupQueueMgr(IConfiguration config) {
-        tasks = new ArrayBlockingQueue<AbstractBackupPath>(config.getUncrementalBkupQueueSize());
-        tasksQueued = new HashSet<String>(config.getUncrementalBkupQueueSize()); //Key to task is the S3 absolute path (BASE/REGION/CLUSTER/TOKEN/[yyyymmddhhmm]/[SST|SNP|META]/KEYSPACE/COLUMNFAMILY/FILE
+    public CassandraBackupQueueMgr(IConfiguration config, BackupPriorityClassifier priorityClassifier) {
+        this.priorityClassifier = priorityClassifier;
+        for (Priority priority : Priority.values())
+            tasks.put(priority, new ArrayDeque<>());
+        capacity = config.getUncrementalBkupQueueSize();
+        tasksQueued = ConcurrentHashMap.newKeySet(config.getUncrementalBkupQueueSize()); //Key to task is the S3 absolute path (BASE/REGION/CLUSTER/TOKEN/[yyyymmddhhmm]/[SST|SNP|META]/KEYSPACE/COLUMNFAMILY/FILE
     }
 
     @Override
     /*
-	 * Add task to queue if it does not already exist.  For performance reasons, this behavior does not acquire a lock on the queue hence
-	 * it is up to the caller to handle possible duplicate tasks.
+	 * Add task to queue if it is not already queued or being uploaded.
 	 * 
 	 * Note: will block until there is space in the queue.
 	 */
     public void add(AbstractBackupPath task) {
-        if (!tasksQueued.contains(task.getRemotePath())) {
-            tasksQueued.add(task.getRemotePath());
-            try {
-                tasks.put(task); //block until space becomes available in queue
-                logger.debug("Queued file {} within CF {}", task.getFileName(), task.getColumnFamily());
-
-            } catch (InterruptedException e) {
-                logger.warn("Interrupted waiting for the task queue to have free space, not fatal will just move on.   Error Msg: {}", e.getLocalizedMessage());
-            }
-        } else {
+        //Only the thread which adds the key queues the task.
+        if (!tasksQueued.add(task.getRemotePath())) {
             logger.debug("Already in queue, no-op.  File: {}", task.getRemotePath());
+            return;
         }
 
-        return;
+        Priority priority = priorityClassifier.classify(task);
+        try {
+            lock.lockInterruptibly();
+            try {
+                while (count == capacity)
+                    notFull.await(); //block until space becomes available in queue
+                tasks.get(priority).add(task);
+                count++;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+            logger.debug("Queued file {} within CF {} with priority {}", task.getFileName(), task.getColumnFamily(), priority);
+        } catch (InterruptedException e) {
+            //Not queued, let the next run of the producer queue it.
+            tasksQueued.remove(task.getRemotePath());
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted waiting for the task queue to have free space, not fatal will just move on.   Error Msg: {}", e.getLocalizedMessage());
+        }
     }
 
     @Override
 	/*
 	 * Guarantee delivery of a task to only one consumer.
 	 * 
-	 * @return task, null if task in queue.
+	 * Note: will block until a task is available.
 	 */
     public AbstractBackupPath take() throws InterruptedException {
-        AbstractBackupPath task = null;
-        if (!tasks.isEmpty()) {
-
-            synchronized (tasks) {
-                task = tasks.poll(); //non-blocking call
-            }
+        lock.lockInterruptibly();
+        try {
+            while (count == 0)
+                notEmpty.await();
+            AbstractBackupPath task = tasks.get(nextPriority()).poll();
+            count--;
+            notFull.signal();
+            return task;
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return task;
+    /*
+     * Smooth weighted round robin over the priority classes with queued files.  Called with the lock held and at least
+     * one file queued.
+     */
+    private Priority nextPriority() {
+        Priority next = null;
+        int totalWeight = 0;
+        for (Priority priority : Priority.values()) {
+            if (tasks.get(priority).isEmpty())
+                continue;
+            int weight = priorityClassifier.getWeight(priority);
+            currentWeights[priority.ordinal()] += weight;
+            totalWeight += weight;
+            if (next == null || currentWeights[priority.ordinal()] > currentWeights[next.ordinal()])
+                next = priority;
+        }
+        currentWeights[next.ordinal()] -= totalWeight;
+        return next;
     }
 
     @Override
 	/*
 	 * @return true if there are more tasks.  
 	 * 
-	 * Note: this is a best effort so the caller should call me again just before taking a task.
-	 * We anticipate this method will be invoked at a high frequency hence, making it thread-safe will slow down the appliation or
-	 * worse yet, create a deadlock.  For example, caller blocks to determine if there are more tasks and also blocks waiting to dequeue
-	 * the task.
+	 * Note: this is a best effort, the task may be taken by another consumer.
 	 */
     public Boolean hasTasks() {
-        return !tasks.isEmpty();
+        return getNumOfTasksToBeProessed() > 0;
     }
 
     @Override
@@ -112,7 +165,7 @@ public class CassandraBackupQueueMgr implements ITaskQueueMgr<AbstractBackupPath
 	 * A means to perform any post processing once the task has been completed.  If post processing is needed,
 	 * the consumer should notify this behavior via callback once the task is completed. 
 	 * 
-	 * *Note: "completed" here can mean success or failure.
+	 * *Note: "completed" here can mean success or failure.  The file can be queued again afterwards.
 	 */
     public void taskPostProcessing(AbstractBackupPath completedTask) {
         this.tasksQueued.remove(completedTask.getRemotePath());
@@ -123,7 +176,12 @@ public class CassandraBackupQueueMgr implements ITaskQueueMgr<AbstractBackupPath
 	 * @return num of pending tasks.  Note, the result is a best guess, don't rely on it to be 100% accurate.
 	 */
     public Integer getNumOfTasksToBeProessed() {
-        return tasks.size();
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
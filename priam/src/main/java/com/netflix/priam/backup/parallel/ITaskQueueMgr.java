@@ -29,7 +29,7 @@ public interface ITaskQueueMgr<E> {
     public void add(E task);
 
     /*
-     * @return task, null if none is available.
+     * @return task, blocks until one is available.
      */
     public E take() throws InterruptedException;
 
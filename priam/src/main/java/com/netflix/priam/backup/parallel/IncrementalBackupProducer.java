@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Singleton
@@ -43,17 +44,31 @@ public class IncrementalBackupProducer extends AbstractBackup implements IIncrem
     private IncrementalConsumerMgr incrementalConsumerMgr;
     private ITaskQueueMgr<AbstractBackupPath> taskQueueMgr;
     private BackupRestoreUtil backupRestoreUtil;
+    private BackupIndex backupIndex;
+    private BackupDedup backupDedup;
+    private IncrementalBackupWatcher watcher;
+    private BackupLagTracker lagTracker;
+    private BackupPriorityClassifier priorityClassifier;
 
     @Inject
     public IncrementalBackupProducer(IConfiguration config, Provider<AbstractBackupPath> pathFactory, IFileSystemContext backupFileSystemCtx
             , IncrementalMetaData metaData
             , @Named("backup") ITaskQueueMgr taskQueueMgr
             , BackupNotificationMgr backupNotificationMgr
+            , BackupIndex backupIndex, BackupDedup backupDedup
+            , IncrementalBackupWatcher watcher
+            , BackupLagTracker lagTracker
+            , BackupPriorityClassifier priorityClassifier
     ) {
 
         super(config, backupFileSystemCtx, pathFactory, backupNotificationMgr);
+        this.watcher = watcher;
+        this.lagTracker = lagTracker;
+        this.priorityClassifier = priorityClassifier;
         this.taskQueueMgr = taskQueueMgr;
         this.metaData = metaData;
+        this.backupIndex = backupIndex;
+        this.backupDedup = backupDedup;
 
         init(backupFileSystemCtx);
     }
@@ -61,7 +76,7 @@ public class IncrementalBackupProducer extends AbstractBackup implements IIncrem
     private void init(IFileSystemContext backupFileSystemCtx) {
         backupRestoreUtil = new BackupRestoreUtil(config.getIncrementalKeyspaceFilters(), config.getIncrementalCFFilter());
         //"this" is a producer, lets wake up the "consumers"
-        this.incrementalConsumerMgr = new IncrementalConsumerMgr(this.taskQueueMgr, backupFileSystemCtx.getFileStrategy(config), super.config);
+        this.incrementalConsumerMgr = new IncrementalConsumerMgr(this.taskQueueMgr, backupFileSystemCtx.getFileStrategy(config), super.config, backupIndex, backupDedup, lagTracker, metaData);
         Thread consumerMgr = new Thread(this.incrementalConsumerMgr);
         consumerMgr.start();
 
@@ -73,6 +88,8 @@ public class IncrementalBackupProducer extends AbstractBackup implements IIncrem
             try {
                 final AbstractBackupPath bp = pathFactory.get();
                 bp.parseLocal(file, BackupFileType.SST);
+                lagTracker.found(bp);
+                backupIndex.queued(bp);
                 this.taskQueueMgr.add(bp); //producer -- populate the queue of files.  *Note: producer will block if queue is full.
             } catch (Exception e) {
                 logger.warn("Unable to queue incremental file, treating as non-fatal and moving on to next.  Msg: {} Fail to queue file: {}",
@@ -95,35 +112,20 @@ public class IncrementalBackupProducer extends AbstractBackup implements IIncrem
     public void execute() throws Exception {
         //Clearing remotePath List
         incrementalRemotePaths.clear();
-        initiateBackup("backups", backupRestoreUtil);
-        return;
+        initiateIncrementalBackup(watcher, backupRestoreUtil, priorityClassifier);
+        //Files uploaded by the consumers are added to the index in one go, which also keeps the index of the current day up to date.
+        backupIndex.add(Collections.emptyList());
+
+        //Uploaded files are accumulated by the consumers, one meta file for all the column families once enough files are uploaded.
+        try {
+            metaData.flushIfDue();
+        } catch (Exception e) {
+            logger.error("Failed to upload the meta file of {} incremental files, will retry on the next run", metaData.getAccumulatedCount(), e);
+        }
     }
 
     public void postProcessing() {
-        /*
-        *
-        * Upload the audit file of completed uploads
-        *
-		List<AbstractBackupPath> uploadedFiles = upload(backupDir, BackupFileType.SST);                 
-		if ( ! uploadedFiles.isEmpty() ) {
-   		String incrementalUploadTime = AbstractBackupPath.formatDate(uploadedFiles.get(0).getTime()); //format of yyyymmddhhmm (e.g. 201505060901)
-   		String metaFileName = "meta_" + columnFamilyDir.getName() + "_" + incrementalUploadTime;
-   		logger.info("Uploading meta file for incremental backup: " + metaFileName); 
-   		this.metaData.setMetaFileName(metaFileName);
-   		this.metaData.set(uploadedFiles, incrementalUploadTime);
-   		logger.info("Uploaded meta file for incremental backup: " + metaFileName);                	
-		}
-        */
-
-    	/* *
-    	 * Notify observers once all incrremental uploads completed
-    	 * 
-        if(incrementalRemotePaths.size() > 0)
-        {
-        	notifyObservers();
-        }
-        * */
-
+        //Meta files are uploaded by execute(), the consumers accumulate the uploaded files in IncrementalMetaData.
     }
 
     @Override
@@ -140,10 +142,10 @@ public class IncrementalBackupProducer extends AbstractBackup implements IIncrem
     }
 
     /**
-     * @return Timer that run every 10 Sec
+     * @return Timer that run every 10 Sec, or every second when the backup directories are watched.
      */
-    public static TaskTimer getTimer() {
-        return new SimpleTimer(JOBNAME, INCREMENTAL_INTERVAL_IN_MILLISECS);
+    public static TaskTimer getTimer(IConfiguration config) {
+        return new SimpleTimer(JOBNAME, config.isIncrementalBackupWatchEnabled() ? WATCH_INTERVAL_IN_MILLISECS : INCREMENTAL_INTERVAL_IN_MILLISECS);
     }
 
     @Override
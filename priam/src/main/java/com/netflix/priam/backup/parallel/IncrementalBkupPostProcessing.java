@@ -16,18 +16,40 @@
 package com.netflix.priam.backup.parallel;
 
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupDedup;
+import com.netflix.priam.backup.BackupIndex;
+import com.netflix.priam.backup.BackupLagTracker;
+import com.netflix.priam.backup.IncrementalMetaData;
+
+import java.util.Collections;
 
 public class IncrementalBkupPostProcessing implements BackupPostProcessingCallback<AbstractBackupPath> {
 
-    private ITaskQueueMgr<AbstractBackupPath> taskQueueMgr;
+    private BackupIndex backupIndex;
+    private BackupDedup backupDedup;
+    private BackupLagTracker lagTracker;
+    private IncrementalMetaData metaData;
 
-    public IncrementalBkupPostProcessing(ITaskQueueMgr<AbstractBackupPath> taskQueueMgr) {
-        this.taskQueueMgr = taskQueueMgr;
+    /*
+     * The task queue is notified of completed uploads by IncrementalConsumerMgr, successful or not.
+     */
+    public IncrementalBkupPostProcessing(BackupIndex backupIndex, BackupDedup backupDedup, BackupLagTracker lagTracker, IncrementalMetaData metaData) {
+        this.backupIndex = backupIndex;
+        this.backupDedup = backupDedup;
+        this.lagTracker = lagTracker;
+        this.metaData = metaData;
     }
 
+    /*
+     * Called after a successful upload, before the local file is deleted.
+     */
     @Override
     public void postProcessing(AbstractBackupPath completedTask) {
-        this.taskQueueMgr.taskPostProcessing(completedTask);
+        this.lagTracker.uploaded(completedTask);
+        this.backupIndex.uploaded(completedTask);
+        this.backupDedup.add(Collections.singletonList(completedTask));
+        //Listed in the next meta file, flushed by IncrementalBackupProducer.
+        this.metaData.add(Collections.singletonList(completedTask));
     }
 
 }
\ No newline at end of file
@@ -15,12 +15,17 @@
  */
 package com.netflix.priam.backup.parallel;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
 import com.netflix.priam.backup.AbstractBackupPath;
 import com.netflix.priam.backup.IBackupFileSystem;
 import com.netflix.priam.utils.RetryableCallable;
+import com.netflix.priam.utils.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Date;
+
 /*
  * Performs an upload of a file, with retries.
  */
@@ -76,8 +81,10 @@ public class IncrementalConsumer implements Runnable {
                         if (is == null) {
                             throw new NullPointerException("Unable to get handle on file: " + bp.getFileName());
                         }
-                        fs.upload(bp, is);
-                        bp.setCompressedFileSize(fs.getBytesUploaded());
+                        HashingInputStream hashingStream = new HashingInputStream(Hashing.md5(), is);
+                        fs.upload(bp, hashingStream);
+                        bp.setChecksum(SystemUtils.toHex(hashingStream.hash().asBytes()));
+                        bp.setUploadedTs(new Date());
                         bp.setAWSSlowDownExceptionCounter(fs.getAWSSlowDownExceptionCounter());
                         return null;
                     } catch (Exception e) {
@@ -90,8 +97,8 @@ public class IncrementalConsumer implements Runnable {
                 }
             }.call();
 
-            this.bp.getBackupFile().delete(); //resource cleanup
             this.callback.postProcessing(bp); //post processing
+            this.bp.getBackupFile().delete(); //resource cleanup
         } catch (Exception e) {
             if (e instanceof java.util.concurrent.CancellationException) {
                 logger.debug("Failed to upload local file {}. Ignoring to continue with rest of backup.  Msg: {}", this.bp.getFileName(), e.getLocalizedMessage());
@@ -17,8 +17,11 @@ package com.netflix.priam.backup.parallel;
 
 import com.netflix.priam.IConfiguration;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupDedup;
+import com.netflix.priam.backup.BackupIndex;
+import com.netflix.priam.backup.BackupLagTracker;
 import com.netflix.priam.backup.IBackupFileSystem;
-import com.netflix.priam.backup.IIncrementalBackup;
+import com.netflix.priam.backup.IncrementalMetaData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,13 +36,16 @@ public class IncrementalConsumerMgr implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(IncrementalConsumerMgr.class);
 
     private AtomicBoolean run = new AtomicBoolean(true);
+    private volatile Thread runner;
     private ThreadPoolExecutor executor;
+    private Semaphore permits;
     private IBackupFileSystem fs;
     private ITaskQueueMgr<AbstractBackupPath> taskQueueMgr;
     private BackupPostProcessingCallback<AbstractBackupPath> callback;
 
     public IncrementalConsumerMgr(ITaskQueueMgr<AbstractBackupPath> taskQueueMgr, IBackupFileSystem fs
-            , IConfiguration config
+            , IConfiguration config, BackupIndex backupIndex, BackupDedup backupDedup, BackupLagTracker lagTracker
+            , IncrementalMetaData metaData
     ) {
         this.taskQueueMgr = taskQueueMgr;
         this.fs = fs;
@@ -52,16 +58,15 @@ public class IncrementalConsumerMgr implements Runnable {
 		/*
 		 * ThreadPoolExecutor will move the file to be uploaded as a Runnable task in the work queue.
 		 */
-        BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<Runnable>(config.getIncrementalBkupMaxConsumers() * 2);
+        executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
 		/*
-		 * If there all workers are busy, the calling thread for the submit() will itself upload the file.  This is a way to throttle how many files are moved to the
-		 * worker queue.  Specifically, the calling will continue to perform the upload unless a worker is avaialble.
+		 * At most maxWorkers * 2 files wait for a worker.  When all workers are busy, dequeuing blocks until an upload completes,
+		 * leaving the files in the task queue which in turn blocks the producer once full.
 		 */
-        RejectedExecutionHandler rejectedExecutionHandler = new ThreadPoolExecutor.CallerRunsPolicy();
-        executor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS,
-                workQueue, rejectedExecutionHandler);
+        permits = new Semaphore(maxWorkers * 3);
 
-        callback = new IncrementalBkupPostProcessing(this.taskQueueMgr);
+        callback = new IncrementalBkupPostProcessing(backupIndex, backupDedup, lagTracker, metaData);
     }
 
     /*
@@ -69,34 +74,50 @@ public class IncrementalConsumerMgr implements Runnable {
      */
     public void shutdown() {
         this.run.set(false);
+        Thread runner = this.runner;
+        if (runner != null)
+            runner.interrupt();
         this.executor.shutdown(); //will not accept new task and waits for active threads to be completed before shutdown.
     }
 
     @Override
     public void run() {
+        this.runner = Thread.currentThread();
         while (this.run.get()) {
-
-            while (this.taskQueueMgr.hasTasks()) {
-                try {
-                    AbstractBackupPath bp = this.taskQueueMgr.take();
-
-                    IncrementalConsumer task = new IncrementalConsumer(bp, this.fs, this.callback);
-                    executor.submit(task); //non-blocking, will be rejected if the task cannot be scheduled
-
-
-                } catch (InterruptedException e) {
-                    logger.warn("Was interrupted while wating to dequeued a task.  Msgl: {}", e.getLocalizedMessage());
-                }
-            }
-
-            //Lets not overwhelmend the node hence we will pause before checking the work queue again.
             try {
-                Thread.currentThread().sleep(IIncrementalBackup.INCREMENTAL_INTERVAL_IN_MILLISECS);
+                AbstractBackupPath bp = this.taskQueueMgr.take(); //blocks until a file is queued
+                dispatch(bp);
             } catch (InterruptedException e) {
-                logger.warn("Was interrupted while sleeping until next interval run.  Msgl: {}", e.getLocalizedMessage());
+                if (this.run.get())
+                    logger.warn("Was interrupted while wating to dequeued a task.  Msgl: {}", e.getLocalizedMessage());
             }
         }
 
     }
 
+    private void dispatch(final AbstractBackupPath bp) throws InterruptedException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            this.taskQueueMgr.taskPostProcessing(bp); //not uploaded, can be queued again
+            throw e;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    new IncrementalConsumer(bp, this.fs, this.callback).run();
+                } finally {
+                    //Uploaded or failed, the file can be queued again.
+                    this.taskQueueMgr.taskPostProcessing(bp);
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Upload of {} rejected, shutting down.  Msg: {}", bp.getFileName(), e.getLocalizedMessage());
+            this.taskQueueMgr.taskPostProcessing(bp);
+            permits.release();
+        }
+    }
+
 }
\ No newline at end of file
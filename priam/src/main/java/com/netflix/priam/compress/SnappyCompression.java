@@ -27,7 +27,7 @@ import java.util.Iterator;
  * SnappyCompression
  */
 public class SnappyCompression implements ICompression {
-    private static final int BUFFER = 2 * 1024;
+    private static final int BUFFER = 64 * 1024;
 
     @Override
     public Iterator<byte[]> compress(InputStream is, long chunkSize) throws IOException {
@@ -1120,6 +1120,11 @@ public class PriamConfiguration implements IConfiguration {
         return config.get(CONFIG_BACKUP_STATUS_FILE_LOCATION,  "backup.status");
     }
 
+    @Override
+    public String getRestoreJournalLocation() {
+        return config.get(PRIAM_PRE + ".restore.journal.location", "restore.journal");
+    }
+
     @Override
     public boolean useSudo() {
         return config.get(CONFIG_CASS_USE_SUDO, true);
@@ -1130,4 +1135,154 @@ public class PriamConfiguration implements IConfiguration {
         return config.get(PRIAM_PRE + ".backup.notification.topic.arn", "");
     }
 
+    @Override
+    public boolean isProgressiveRestoreEnabled() {
+        return config.get(PRIAM_PRE + ".restore.progressive.enabled", false);
+    }
+
+    @Override
+    public List<String> getRestorePriorityTables() {
+        return config.getList(PRIAM_PRE + ".restore.priority.tables");
+    }
+
+    @Override
+    public boolean isBackupIndexEnabled() {
+        return config.get(PRIAM_PRE + ".backup.index.enabled", true);
+    }
+
+    @Override
+    public String getBackupIndexLocation() {
+        return config.get(PRIAM_PRE + ".backup.index.location", "backup.index");
+    }
+
+    @Override
+    public int getBackupIndexUploadIntervalInSecs() {
+        return config.get(PRIAM_PRE + ".backup.index.upload.interval", 300);
+    }
+
+    @Override
+    public boolean isBackupDedupEnabled() {
+        return config.get(PRIAM_PRE + ".backup.dedup.enabled", false);
+    }
+
+    @Override
+    public String getBackupDedupLocation() {
+        return config.get(PRIAM_PRE + ".backup.dedup.location", "backup.dedup");
+    }
+
+    @Override
+    public boolean isBackupGcEnabled() {
+        return config.get(PRIAM_PRE + ".backup.gc.enabled", false);
+    }
+
+    @Override
+    public boolean isBackupGcDryRun() {
+        return config.get(PRIAM_PRE + ".backup.gc.dryrun", true);
+    }
+
+    @Override
+    public String getBackupGcCronExpression() {
+        return config.get(PRIAM_PRE + ".backup.gc.cron", "0 0 12 * * ?");
+    }
+
+    @Override
+    public int getBackupListingThreads() {
+        return config.get(PRIAM_PRE + ".backup.listing.threads", 16);
+    }
+
+    @Override
+    public int getBackupVerificationSamplePercent() {
+        return config.get(PRIAM_PRE + ".backup.verification.sample.percent", 0);
+    }
+
+    @Override
+    public boolean isIncrementalBackupWatchEnabled() {
+        return config.get(PRIAM_PRE + ".backup.incremental.watch.enabled", false);
+    }
+
+    @Override
+    public int getIncrementalBackupReconcileIntervalInSecs() {
+        return config.get(PRIAM_PRE + ".backup.incremental.reconcile.interval", 600);
+    }
+
+    @Override
+    public int getBackupRpoInSecs() {
+        return config.get(PRIAM_PRE + ".backup.rpo.secs", 0);
+    }
+
+    @Override
+    public int getIncrementalMetaFlushIntervalInSecs() {
+        return config.get(PRIAM_PRE + ".backup.incremental.meta.flush.interval", 60);
+    }
+
+    @Override
+    public int getIncrementalMetaFlushMaxEntries() {
+        return config.get(PRIAM_PRE + ".backup.incremental.meta.flush.entries", 1000);
+    }
+
+    @Override
+    public String getIncrementalHighPriorityFilters() {
+        return config.get(PRIAM_PRE + ".backup.incremental.priority.high");
+    }
+
+    @Override
+    public String getIncrementalLowPriorityFilters() {
+        return config.get(PRIAM_PRE + ".backup.incremental.priority.low");
+    }
+
+    @Override
+    public String getIncrementalPriorityWeights() {
+        return config.get(PRIAM_PRE + ".backup.incremental.priority.weights", "8,2,1");
+    }
+
+    @Override
+    public int getSnapshotTableBatchSize() {
+        return config.get(PRIAM_PRE + ".backup.snapshot.batch.tables", 0);
+    }
+
+    @Override
+    public int getSnapshotBatchThreads() {
+        return config.get(PRIAM_PRE + ".backup.snapshot.batch.threads", 1);
+    }
+
+    @Override
+    public int getSnapshotResumeWindowInHours() {
+        return config.get(PRIAM_PRE + ".backup.snapshot.resume.window", 0);
+    }
+
+    @Override
+    public int getCommitLogBackupThreads() {
+        return config.get(PRIAM_PRE + ".backup.commitlog.threads", 4);
+    }
+
+    @Override
+    public int getCommitLogBackupQuietPeriodInSecs() {
+        return config.get(PRIAM_PRE + ".backup.commitlog.quiet.secs", 5);
+    }
+
+    @Override
+    public int getCommitLogRestoreLookaheadInMins() {
+        return config.get(PRIAM_PRE + ".restore.commitlog.lookahead.mins", 60);
+    }
+
+    @Override
+    public boolean isRestoreFromPeersEnabled() {
+        return config.get(PRIAM_PRE + ".restore.peers.enabled", false);
+    }
+
+    @Override
+    public int getRestorePeerPort() {
+        return config.get(PRIAM_PRE + ".restore.peers.port", 8080);
+    }
+
+    @Override
+    public long getRestoreCacheSizeInMB() {
+        return config.get(PRIAM_PRE + ".restore.cache.size.mb", 0L);
+    }
+
+    @Override
+    public String getRestoreCacheLocation() {
+        return config.get(PRIAM_PRE + ".restore.cache.location", "restore_cache");
+    }
+
 }
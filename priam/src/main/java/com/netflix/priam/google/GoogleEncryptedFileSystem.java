@@ -17,7 +17,9 @@ package com.netflix.priam.google;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
@@ -35,6 +37,7 @@ import com.netflix.priam.backup.BackupRestoreException;
 import com.netflix.priam.backup.IBackupFileSystem;
 import com.netflix.priam.backup.IBackupMetrics;
 import com.netflix.priam.restore.GoogleCryptographyRestoreStrategy;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -48,6 +51,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -70,6 +75,7 @@ public class GoogleEncryptedFileSystem implements IBackupFileSystem, GoogleEncry
     protected AtomicLong bytesDownloaded = new AtomicLong();
 
     private ICredentialGeneric gcsCredential;
+    private final ExecutorService listingExecutor;
 
     @Inject
     public GoogleEncryptedFileSystem(Provider<AbstractBackupPath> pathProvider, final IConfiguration config
@@ -90,6 +96,7 @@ public class GoogleEncryptedFileSystem implements IBackupFileSystem, GoogleEncry
         }
 
         this.srcBucketName = getSourcebucket(getPathPrefix());
+        this.listingExecutor = new NamedThreadPoolExecutor(config.getBackupListingThreads(), "GcsListing");
 
         MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
         String mbeanName = MBEAN_NAME;
@@ -265,7 +272,7 @@ public class GoogleEncryptedFileSystem implements IBackupFileSystem, GoogleEncry
 
     @Override
     public Iterator<AbstractBackupPath> list(String path, Date start, Date till) {
-        return new GoogleFileIterator(pathProvider, constructGcsStorageHandle(), path, start, till);
+        return new GoogleFileIterator(pathProvider, constructGcsStorageHandle(), path, start, till, listingExecutor, config.getBackupListingThreads());
     }
 
     @Override
@@ -280,6 +287,27 @@ public class GoogleEncryptedFileSystem implements IBackupFileSystem, GoogleEncry
 
     }
 
+    @Override
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+        String bucket = getSourcebucket(path);
+        int failed = 0;
+        for (AbstractBackupPath file : files) {
+            try {
+                constructObjectResourceHandle().delete(bucket, file.getRemotePath()).execute();
+            } catch (GoogleJsonResponseException e) {
+                //Files which do not exist are ignored.
+                if (e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND)
+                    continue;
+                logger.error("Failed to delete {}: {}", file.getRemotePath(), e.getMessage());
+                failed++;
+            } catch (IOException e) {
+                throw new BackupRestoreException("Failed to delete files from " + bucket + ": " + e.getMessage(), e);
+            }
+        }
+        if (failed > 0)
+            throw new BackupRestoreException("Failed to delete " + failed + " of " + files.size() + " files from " + bucket);
+    }
+
     @Override
     public int getActivecount() {
         // TODO Auto-generated method stub
@@ -289,8 +317,7 @@ public class GoogleEncryptedFileSystem implements IBackupFileSystem, GoogleEncry
 
     @Override
     public void shutdown() {
-        // TODO Auto-generated method stub
-
+        listingExecutor.shutdown();
     }
 
     @Override
@@ -21,33 +21,24 @@ import com.google.common.collect.Lists;
 import com.google.inject.Provider;
 import com.netflix.priam.aws.S3BackupPath;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.ShardedFileIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /*
  * Represents a list of objects within Google Cloud Storage (GCS)
  */
-public class GoogleFileIterator implements Iterator<AbstractBackupPath> {
+public class GoogleFileIterator extends ShardedFileIterator {
     private static final Logger logger = LoggerFactory.getLogger(GoogleFileIterator.class);
 
-    private Date start;
-    private Date till;
-    private Iterator<AbstractBackupPath> iterator;
-    private Provider<AbstractBackupPath> pathProvider;
     private String bucketName;
 
     private Storage.Objects objectsResoruceHandle = null;
-    private Storage.Objects.List listObjectsSrvcHandle = null;
-    private com.google.api.services.storage.model.Objects objectsContainerHandle = null;
-
-    private String pathWithinBucket;
-
-    private String nextPageToken;
 
     /*
      * @param pathProvider
@@ -55,15 +46,19 @@ public class GoogleFileIterator implements Iterator<AbstractBackupPath> {
      * @param path - metadata about where the object exist within the destination.
      * @param start - timeframe of object to restore
      * @param till - timeframe of object to restore
+     * @param executor - lists the time range concurrently, null to list it sequentially.
+     * @param parallelism - number of prefixes of the time range listed ahead.
      */
-    public GoogleFileIterator(Provider<AbstractBackupPath> pathProvider, Storage gcsStorageHandle, String path, Date start, Date till) {
-
-        this.start = start;
-        this.till = till;
-        this.pathProvider = pathProvider;
+    public GoogleFileIterator(Provider<AbstractBackupPath> pathProvider, Storage gcsStorageHandle, String path, Date start, Date till, ExecutorService executor, int parallelism) {
+        super(pathProvider, validate(path), start, till, executor, parallelism);
 
         this.objectsResoruceHandle = gcsStorageHandle.objects();
+        this.bucketName = path.split(String.valueOf(S3BackupPath.PATH_SEP))[0];
 
+        logger.info("Listing objects from GCS: {}, start: {}, till: {}", this.bucketName, start, till);
+    }
+
+    private static String validate(String path) {
         if (path == null) {
             throw new NullPointerException("Path of object to fetch is null");
         }
@@ -72,92 +67,37 @@ public class GoogleFileIterator implements Iterator<AbstractBackupPath> {
         if (paths.length < 1) {
             throw new IllegalStateException("Path of object to fetch is invalid.  Path: " + path);
         }
-
-        this.bucketName = paths[0];
-        this.pathWithinBucket = pathProvider.get().remotePrefix(start, till, path);
-
-        logger.info("Listing objects from GCS: {}, prefix: {}", this.bucketName, this.pathWithinBucket);
-
-        try {
-
-            this.listObjectsSrvcHandle = objectsResoruceHandle.list(bucketName);            //== list objects within bucket
-
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to get gcslist handle to bucket: " + bucketName, e);
-        }
-
-        this.listObjectsSrvcHandle.setPrefix(this.pathWithinBucket); //fetch elements within bucket that matches this prefix
-
-        try {        //== Get the initial page of results
-
-            this.iterator = createIterator();
-
-        } catch (Exception e) {
-            throw new RuntimeException("Exception encountered fetching elements, msg: ." + e.getLocalizedMessage(), e);
-        }
+        return path;
     }
 
     /*
      * Fetch a page of results
      */
-    private Iterator<AbstractBackupPath> createIterator() throws Exception {
-        List<AbstractBackupPath> temp = Lists.newArrayList(); //a container of results
-
-        this.objectsContainerHandle = listObjectsSrvcHandle.execute(); //Sends the metadata request to the server and returns the parsed metadata response.
+    @Override
+    protected Page listPage(String prefix, Object continuation) throws IOException {
+        Storage.Objects.List listObjectsSrvcHandle = objectsResoruceHandle.list(bucketName); //== list objects within bucket
+        listObjectsSrvcHandle.setPrefix(prefix); //fetch elements within bucket that matches this prefix
+        if (continuation != null)
+            listObjectsSrvcHandle.setPageToken((String) continuation); //get the next page of results
 
-        for (StorageObject object : this.objectsContainerHandle.getItems()) { //processing a page of results
-            String fileName = GoogleEncryptedFileSystem.parseObjectname(object.getName());
-            logger.debug("id: {}, parse file name: {}, name: {}", object.getId(), fileName, object.getName());
+        com.google.api.services.storage.model.Objects objectsContainerHandle = listObjectsSrvcHandle.execute(); //Sends the metadata request to the server and returns the parsed metadata response.
 
-            AbstractBackupPath path = pathProvider.get();
-            path.parseRemote(object.getName()); //e.g. of objectname: prod_backup/us-east-1/cass_account/113427455640312821154458202479064646083/201408250801/META/meta.json
-            logger.debug("New key {} path = {} start: {} end: {} my {}", object.getName(), path.getRemotePath(), start, till, path.getTime());
-            if ((path.getTime().after(start) && path.getTime().before(till)) || path.getTime().equals(start)) {
+        List<AbstractBackupPath> temp = Lists.newArrayList(); //a container of results
+        if (objectsContainerHandle.getItems() != null) {
+            for (StorageObject object : objectsContainerHandle.getItems()) { //processing a page of results
+                String fileName = GoogleEncryptedFileSystem.parseObjectname(object.getName());
+                logger.debug("id: {}, parse file name: {}, name: {}", object.getId(), fileName, object.getName());
+
+                AbstractBackupPath path = pathProvider.get();
+                path.parseRemote(object.getName()); //e.g. of objectname: prod_backup/us-east-1/cass_account/113427455640312821154458202479064646083/201408250801/META/meta.json
+                if (object.getSize() != null)
+                    path.setCompressedFileSize(object.getSize().longValue());
+                logger.debug("New key {} path = {} start: {} end: {} my {}", object.getName(), path.getRemotePath(), start, till, path.getTime());
                 temp.add(path);
-                logger.debug("Added key {}", object.getName());
             }
         }
 
-        this.nextPageToken = this.objectsContainerHandle.getNextPageToken();
-
-        return temp.iterator();
-    }
-
-    @Override
-    public boolean hasNext() {
-        if (this.iterator == null)
-            return false;
-
-        if (this.iterator.hasNext()) {
-            return true;
-        }
-
-        if (this.nextPageToken == null) { //there is no additional results
-            return false;
-        }
-
-        try {//if here, you have iterated through all elements of the previous page, now, get the next page of results
-
-            this.listObjectsSrvcHandle.setPageToken(this.nextPageToken); //get the next page of results
-            this.iterator = createIterator();
-
-        } catch (Exception e) {
-            throw new RuntimeException("Exception encountered fetching elements, see previous messages for details.", e);
-        }
-
-        return this.iterator.hasNext();
-
-    }
-
-    @Override
-    public AbstractBackupPath next() {
-        return iterator.next();
-    }
-
-    @Override
-    public void remove() {
-        // TODO Auto-generated method stub
-
+        return new Page(temp, objectsContainerHandle.getNextPageToken());
     }
 
-}
\ No newline at end of file
+}
@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -206,15 +207,70 @@ public class InstanceState {
         private String snapshotMetaFile; //Location of the snapshot meta file selected for restore.
         private Status status;  //the state of a restore.  Note: this is different than the "status" of a Task.
 
-        public void resetStatus(){
+        //Progress of the restore. bytesTotal only covers files whose size was known before download.
+        private long filesTotal, filesDone;
+        private long bytesTotal, bytesDone;
+        private long throughputBytesPerSec; //Measured over the last one to two THROUGHPUT_WINDOW_MS.
+        private LocalDateTime estimatedCompletionTime;
+        private transient boolean isBytesTotalKnown = true;
+        private transient long progressStartMs, windowStartMs, windowStartBytes, prevWindowStartMs, prevWindowStartBytes;
+        private static final long THROUGHPUT_WINDOW_MS = 10000;
+
+        public synchronized void resetStatus(){
             this.snapshotMetaFile = null;
             this.status = null;
             this.startDateRange = endDateRange = null;
             this.executionStartTime = this.executionEndTime = null;
+            this.filesTotal = this.filesDone = this.bytesTotal = this.bytesDone = this.throughputBytesPerSec = 0;
+            this.estimatedCompletionTime = null;
+            this.isBytesTotalKnown = true;
+            this.progressStartMs = this.windowStartMs = this.prevWindowStartMs = System.currentTimeMillis();
+            this.windowStartBytes = this.prevWindowStartBytes = 0;
+        }
+
+        /**
+         * Account for a file which is going to be restored.
+         * @param bytes size of the file if known before download, 0 otherwise.
+         */
+        public synchronized void addFileToRestore(long bytes) {
+            filesTotal++;
+            bytesTotal += bytes;
+            if (bytes <= 0)
+                isBytesTotalKnown = false;
+        }
+
+        /**
+         * Account for a file which has been completely restored and update throughput and estimated completion time.
+         * @param bytes size of the restored file on disk.
+         */
+        public synchronized void fileRestored(long bytes) {
+            filesDone++;
+            bytesDone += bytes;
+
+            long now = System.currentTimeMillis();
+            if (now - windowStartMs >= THROUGHPUT_WINDOW_MS) {
+                prevWindowStartMs = windowStartMs;
+                prevWindowStartBytes = windowStartBytes;
+                windowStartMs = now;
+                windowStartBytes = bytesDone;
+            }
+
+            long elapsed = now - prevWindowStartMs;
+            if (elapsed > 0)
+                throughputBytesPerSec = (bytesDone - prevWindowStartBytes) * 1000 / elapsed;
+
+            long remainingMs = -1;
+            if (isBytesTotalKnown && throughputBytesPerSec > 0)
+                remainingMs = Math.max(0, bytesTotal - bytesDone) * 1000 / throughputBytesPerSec;
+            else if (filesDone > 0)
+                remainingMs = (now - progressStartMs) * Math.max(0, filesTotal - filesDone) / filesDone;
+
+            if (remainingMs >= 0)
+                estimatedCompletionTime = LocalDateTime.now().plus(remainingMs, ChronoUnit.MILLIS);
         }
 
         @Override
-        public String toString() {
+        public synchronized String toString() {
             return GsonJsonSerializer.getGson().toJson(this);
         }
 
@@ -261,5 +317,29 @@ public class InstanceState {
         public void setSnapshotMetaFile(String snapshotMetaFile) {
             this.snapshotMetaFile = snapshotMetaFile;
         }
+
+        public synchronized long getFilesTotal() {
+            return filesTotal;
+        }
+
+        public synchronized long getFilesDone() {
+            return filesDone;
+        }
+
+        public synchronized long getBytesTotal() {
+            return bytesTotal;
+        }
+
+        public synchronized long getBytesDone() {
+            return bytesDone;
+        }
+
+        public synchronized long getThroughputBytesPerSec() {
+            return throughputBytesPerSec;
+        }
+
+        public synchronized LocalDateTime getEstimatedCompletionTime() {
+            return estimatedCompletionTime;
+        }
     }
 }
\ No newline at end of file
@@ -44,7 +44,7 @@ public interface IMeasurement<T> {
     public void setVal(T val);
 
     public enum MMEASUREMENT_TYPE {
-        NOOP, NODETOOLFLUSH, SNAPSHOTBACKUP, BACKUPUPLOADRATE, SNAPSHOTBACKUPUPNOTIFICATION, AWSSLOWDOWNEXCEPTION;
+        NOOP, NODETOOLFLUSH, SNAPSHOTBACKUP, BACKUPUPLOADRATE, SNAPSHOTBACKUPUPNOTIFICATION, AWSSLOWDOWNEXCEPTION, BACKUPLAG;
     }
 
     ;
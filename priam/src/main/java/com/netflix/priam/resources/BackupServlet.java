@@ -51,6 +51,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
@@ -89,6 +90,10 @@ public class BackupServlet {
     private PriamScheduler scheduler;
     @Inject
     private MetaData metaData;
+    @Inject
+    private BackupGarbageCollector backupGarbageCollector;
+    @Inject
+    private BackupLagTracker backupLagTracker;
 
     private IBackupStatusMgr completedBkups;
 
@@ -121,11 +126,31 @@ public class BackupServlet {
     @GET
     @Path("/incremental_backup")
     public Response backupIncrementals() throws Exception {
-        scheduler.addTask("IncrementalBackup", IncrementalBackup.class, IncrementalBackup.getTimer());
+        scheduler.addTask("IncrementalBackup", IncrementalBackup.class, IncrementalBackup.getTimer(config));
         return Response.ok(REST_SUCCESS, MediaType.APPLICATION_JSON).build();
     }
 
 
+    /*
+     * Report the backup objects the garbage collection would delete, without deleting them.
+     */
+    @GET
+    @Path("/gc/report")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response garbageCollectionReport() throws Exception {
+        return Response.ok(backupGarbageCollector.collect(true).toString(), MediaType.APPLICATION_JSON).build();
+    }
+
+    /*
+     * Report the files of incremental and commit log backups waiting to be uploaded and the upload latencies.
+     */
+    @GET
+    @Path("/lag")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lag() throws Exception {
+        return Response.ok(backupLagTracker.getLag().toString(), MediaType.APPLICATION_JSON).build();
+    }
+
     @GET
     @Path("/list")
     /*
@@ -302,6 +327,24 @@ public class BackupServlet {
         jsonReply.put("filesInMetaOnly", result.filesInMetaOnly);
         jsonReply.put("filesInS3Only", result.filesInS3Only);
         jsonReply.put("filesMatched", result.filesMatched);
+        jsonReply.put("filesSizeMismatch", result.filesSizeMismatch);
+        jsonReply.put("filesSampled", result.filesSampled);
+        jsonReply.put("filesChecksumMismatch", result.filesChecksumMismatch);
+        if (result.keyspaces != null) {
+            JSONObject keyspaces = new JSONObject();
+            for (Map.Entry<String, BackupVerificationResult.KeyspaceResult> entry : result.keyspaces.entrySet()) {
+                BackupVerificationResult.KeyspaceResult keyspace = entry.getValue();
+                JSONObject keyspaceReply = new JSONObject();
+                keyspaceReply.put("filesInMeta", keyspace.filesInMeta);
+                keyspaceReply.put("filesMatched", keyspace.filesMatched);
+                keyspaceReply.put("filesInMetaOnly", keyspace.filesInMetaOnly);
+                keyspaceReply.put("filesSizeMismatch", keyspace.filesSizeMismatch);
+                keyspaceReply.put("filesSampled", keyspace.filesSampled);
+                keyspaceReply.put("filesChecksumMismatch", keyspace.filesChecksumMismatch);
+                keyspaces.put(entry.getKey(), keyspaceReply);
+            }
+            jsonReply.put("keyspaces", keyspaces);
+        }
         return Response.ok(jsonReply.toString()).build();
     }
 
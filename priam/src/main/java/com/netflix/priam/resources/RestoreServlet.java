@@ -22,6 +22,7 @@ import com.netflix.priam.ICassandraProcess;
 import com.netflix.priam.IConfiguration;
 import com.netflix.priam.PriamServer;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.LocalBackupObjects;
 import com.netflix.priam.health.InstanceState;
 import com.netflix.priam.identity.IPriamInstanceFactory;
 import com.netflix.priam.identity.PriamInstance;
@@ -40,6 +41,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.File;
 import java.math.BigInteger;
 import java.util.Date;
 import java.util.List;
@@ -55,6 +57,9 @@ public class RestoreServlet {
     private static final String REST_KEYSPACES = "keyspaces";
     private static final String REST_RESTORE_PREFIX = "restoreprefix";
     private static final String REST_SUCCESS = "[\"ok\"]";
+    private static final String REST_OBJECT_PATH = "path";
+    private static final String REST_OBJECT_SIZE = "size";
+    private static final String REST_OBJECT_CHECKSUM = "checksum";
 
     private IConfiguration config;
     private Restore restoreObj;
@@ -64,6 +69,8 @@ public class RestoreServlet {
     private ICassandraProcess cassProcess;
     private RestoreTokenSelector tokenSelector;
     private InstanceState instanceState;
+    @Inject
+    private LocalBackupObjects localBackupObjects;
 
     @Inject
     public RestoreServlet(IConfiguration config, Restore restoreObj, Provider<AbstractBackupPath> pathProvider, PriamServer priamServer
@@ -92,6 +99,33 @@ public class RestoreServlet {
         return Response.ok(instanceState.getRestoreStatus().toString()).build();
     }
 
+    /*
+     * Serve the uncompressed content of a backup object to a peer restoring it, see PeerBackupFileSystem.
+     * @return the object, 404 if this node has no copy of it.
+     */
+    @GET
+    @Path("/restore/object")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response object(@QueryParam(REST_OBJECT_PATH) String remotePath, @QueryParam(REST_OBJECT_SIZE) long size,
+                           @QueryParam(REST_OBJECT_CHECKSUM) String checksum) {
+        if (StringUtils.isBlank(remotePath))
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        File file;
+        try {
+            AbstractBackupPath path = pathProvider.get();
+            path.parseRemote(remotePath);
+            path.setSize(size);
+            path.setChecksum(checksum);
+            file = localBackupObjects.find(path);
+        } catch (RuntimeException e) {
+            logger.warn("Invalid backup object requested: {}", remotePath);
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        if (file == null)
+            return Response.status(Response.Status.NOT_FOUND).build();
+        return Response.ok(file, MediaType.APPLICATION_OCTET_STREAM).header("Content-Length", file.length()).build();
+    }
+
     @GET
     @Path("/restore")
     public Response restore(@QueryParam(REST_HEADER_RANGE) String daterange, @QueryParam(REST_HEADER_REGION) String region, @QueryParam(REST_HEADER_TOKEN) String token,
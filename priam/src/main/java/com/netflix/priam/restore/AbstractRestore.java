@@ -18,6 +18,8 @@ package com.netflix.priam.restore;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Provider;
 import com.netflix.priam.ICassandraProcess;
 import com.netflix.priam.IConfiguration;
@@ -35,8 +37,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A means to perform a restore.  This class contains the following characteristics:
@@ -45,9 +50,8 @@ import java.util.*;
  * - When this class is executed, it uses its own thread pool to execute the restores.
  */
 public abstract class AbstractRestore extends Task implements IRestoreStrategy{
-    // keeps track of the last few download which was executed.
-    // TODO fix the magic number of 1000 => the idea of 80% of 1000 files limit per s3 query
-    protected static final FifoQueue<AbstractBackupPath> tracker = new FifoQueue<AbstractBackupPath>(800);
+    // keeps track of the remote path hash of every file restored by the current restore.
+    private final ConcurrentLongHashSet tracker = new ConcurrentLongHashSet(1024);
     private static final Logger logger = LoggerFactory.getLogger(AbstractRestore.class);
     private static final String JOBNAME = "AbstractRestore";
     private static final String SYSTEM_KEYSPACE = "system";
@@ -61,11 +65,14 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
     private ICassandraProcess cassProcess;
     private InstanceState instanceState;
     private MetaData metaData;
+    private BackupIndex backupIndex;
+    private RestoreJournal restoreJournal;
+    private volatile ProgressiveTableLoader tableLoader; //Only set while a progressive restore downloads a batch of files.
 
     public AbstractRestore(IConfiguration config, IBackupFileSystem fs, String name, Sleeper sleeper,
                            Provider<AbstractBackupPath> pathProvider,
                            InstanceIdentity instanceIdentity, RestoreTokenSelector tokenSelector,
-                           ICassandraProcess cassProcess, MetaData metaData, InstanceState instanceState) {
+                           ICassandraProcess cassProcess, MetaData metaData, InstanceState instanceState, BackupIndex backupIndex) {
         super(config);
         this.fs = fs;
         this.sleeper = sleeper;
@@ -74,8 +81,10 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
         this.tokenSelector = tokenSelector;
         this.cassProcess = cassProcess;
         this.metaData = metaData;
+        this.backupIndex = backupIndex;
         this.instanceState = instanceState;
         backupRestoreUtil = new BackupRestoreUtil(config.getRestoreKeyspaceFilter(), config.getRestoreCFFilter());
+        restoreJournal = new RestoreJournal(config.getRestoreJournalLocation());
     }
 
     public static final boolean isRestoreEnabled(IConfiguration conf) {
@@ -85,59 +94,141 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
     }
 
     private final void download(Iterator<AbstractBackupPath> fsIterator, BackupFileType bkupFileType) throws Exception {
+        List<ListenableFuture<Path>> futureList = new ArrayList<>();
+        ProgressiveTableLoader loader = null;
+        if (isProgressiveRestore() && (bkupFileType == BackupFileType.SNAP || bkupFileType == BackupFileType.SST))
+            loader = new ProgressiveTableLoader(config);
+        tableLoader = loader;
+
         while (fsIterator.hasNext()) {
-            AbstractBackupPath temp = fsIterator.next();
-            if (temp.getType() == BackupFileType.SST && tracker.contains(temp))
-                continue;
+            ListenableFuture<Path> future = download(fsIterator.next(), bkupFileType, loader);
+            if (future != null)
+                futureList.add(future);
+        }
 
-            if (backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.KEYSPACE, temp.getKeyspace())) { //keyspace filtered?
-                logger.info("Bypassing restoring file \"{}\" as its keyspace: \"{}\" is part of the filter list", temp.newRestoreFile(), temp.getKeyspace());
-                continue;
-            }
+        //Wait for all download to finish that were started from this method.
+        try {
+            if (loader != null)
+                loader.allAdded();
 
-            if (backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.CF, temp.getKeyspace(), temp.getColumnFamily())) {
-                logger.info("Bypassing restoring file \"{}\" as it is part of the keyspace.columnfamily filter list.  Its keyspace:cf is: {}:{}",
-                        temp.newRestoreFile(), temp.getKeyspace(), temp.getColumnFamily());
-                continue;
-            }
+            waitToComplete(futureList);
 
-            if (config.getRestoreKeySpaces().size() != 0 && (!config.getRestoreKeySpaces().contains(temp.getKeyspace()) || temp.getKeyspace().equals(SYSTEM_KEYSPACE))) {
-                logger.info("Bypassing restoring file \"{}\" as it is system keyspace", temp.newRestoreFile());
-                continue;
-            }
+            if (loader != null)
+                loader.awaitCompletion();
+        } catch (Exception e) {
+            if (loader != null)
+                loader.cancel();
+            throw e;
+        } finally {
+            tableLoader = null;
+        }
+    }
 
-            if (temp.getType() == bkupFileType)
-            {
-                File localFileHandler = temp.newRestoreFile();
-                if (logger.isDebugEnabled())
-                    logger.debug("Created local file name: " + localFileHandler.getAbsolutePath() + File.pathSeparator + localFileHandler.getName());
-                downloadFile(temp, localFileHandler);
-            }
+    /*
+     * Start the download of the file if it is to be restored.
+     * @return the future of the download, null if the file is not downloaded.
+     */
+    private ListenableFuture<Path> download(AbstractBackupPath temp, BackupFileType bkupFileType, ProgressiveTableLoader loader) throws Exception {
+        if (temp.getType() == BackupFileType.SST && tracker.contains(temp.getRemotePathHash()))
+            return null;
+
+        if (backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.KEYSPACE, temp.getKeyspace())) { //keyspace filtered?
+            logger.info("Bypassing restoring file \"{}\" as its keyspace: \"{}\" is part of the filter list", temp.newRestoreFile(), temp.getKeyspace());
+            return null;
         }
 
-        //Wait for all download to finish that were started from this method.
-        waitToComplete();
+        if (backupRestoreUtil.isFiltered(BackupRestoreUtil.DIRECTORYTYPE.CF, temp.getKeyspace(), temp.getColumnFamily())) {
+            logger.info("Bypassing restoring file \"{}\" as it is part of the keyspace.columnfamily filter list.  Its keyspace:cf is: {}:{}",
+                    temp.newRestoreFile(), temp.getKeyspace(), temp.getColumnFamily());
+            return null;
+        }
+
+        if (config.getRestoreKeySpaces().size() != 0 && (!config.getRestoreKeySpaces().contains(temp.getKeyspace()) || temp.getKeyspace().equals(SYSTEM_KEYSPACE))) {
+            logger.info("Bypassing restoring file \"{}\" as it is system keyspace", temp.newRestoreFile());
+            return null;
+        }
+
+        //With deduplication, a snapshot references the SSTables already uploaded as incrementals.
+        if (temp.getType() == bkupFileType || (bkupFileType == BackupFileType.SNAP && temp.getType() == BackupFileType.SST))
+        {
+            File localFileHandler = temp.newRestoreFile();
+            if (logger.isDebugEnabled())
+                logger.debug("Created local file name: " + localFileHandler.getAbsolutePath() + File.pathSeparator + localFileHandler.getName());
+
+            instanceState.getRestoreStatus().addFileToRestore(temp.getSize());
+            if (loader != null)
+                loader.add(temp);
+
+            //Restored by a previous attempt of this restore and still intact on disk?
+            if (bkupFileType != BackupFileType.META && restoreJournal.isRestored(temp, localFileHandler)) {
+                logger.info("Bypassing restoring file \"{}\" as it was already restored to {}", temp.getRemotePath(), localFileHandler.getAbsolutePath());
+                tracker.add(temp.getRemotePathHash());
+                instanceState.getRestoreStatus().fileRestored(localFileHandler.length());
+                if (loader != null)
+                    loader.restored(temp);
+                return null;
+            }
+
+            return downloadFile(temp, localFileHandler);
+        }
+        return null;
     }
 
-    private final void downloadCommitLogs(Iterator<AbstractBackupPath> fsIterator, BackupFileType filter, int lastN) throws Exception {
-        if (fsIterator == null)
-            return;
+    /*
+     * Wait for all the downloads to finish. Fails fast: as soon as one download failed (after its retries), all the
+     * remaining downloads are cancelled and the failure is propagated to fail the restore.
+     */
+    private final void waitToComplete(List<ListenableFuture<Path>> futureList) throws Exception {
+        ListenableFuture<List<Path>> allDownloads = Futures.allAsList(futureList);
+        try {
+            allDownloads.get();
+        } catch (ExecutionException | InterruptedException e) {
+            for (ListenableFuture<Path> future : futureList)
+                future.cancel(true);
 
-        BoundedList bl = new BoundedList(lastN);
-        while (fsIterator.hasNext()) {
-            AbstractBackupPath temp = fsIterator.next();
-            if (temp.getType() == BackupFileType.SST && tracker.contains(temp))
-                continue;
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
 
-            if (temp.getType() == filter) {
-                bl.add(temp);
-            }
+            throw new BackupRestoreException("Aborting restore as download of a file failed: " + e.getMessage(), e);
         }
+    }
 
-        download(bl.iterator(), filter);
+    /*
+     * Start the download of the commit log segments needed to replay the writes from the snapshot to the end of the
+     * restore, see CommitLogSelector. The segment being written at the end of the restore was closed after it, so the
+     * segments are listed up to getCommitLogRestoreLookaheadInMins() minutes later.
+     */
+    private final List<ListenableFuture<Path>> downloadCommitLogs(String prefix, Date snapshotTime, Date endTime) throws Exception {
+        CommitLogSelector selector = new CommitLogSelector();
+        Date listUntil = new Date(endTime.getTime() + TimeUnit.MINUTES.toMillis(config.getCommitLogRestoreLookaheadInMins()));
+        Iterator<AbstractBackupPath> fsIterator = backupIndex.list(fs, prefix, snapshotTime, listUntil);
+        while (fsIterator.hasNext())
+            selector.add(fsIterator.next());
+
+        List<AbstractBackupPath> segments = selector.select(snapshotTime, endTime);
+        if (segments.size() > config.maxCommitLogsRestore()) {
+            logger.warn("{} commit logs are needed to restore up to {}, only the last {} are restored", segments.size(), endTime, config.maxCommitLogsRestore());
+            segments = segments.subList(segments.size() - config.maxCommitLogsRestore(), segments.size());
+        }
+        logger.info("Downloading {} commit logs", segments.size());
+
+        List<ListenableFuture<Path>> futureList = new ArrayList<>();
+        for (AbstractBackupPath segment : segments) {
+            ListenableFuture<Path> future = download(segment, BackupFileType.CL, null);
+            if (future != null)
+                futureList.add(future);
+        }
+        return futureList;
     }
 
 
+    /*
+     * Tables can only be loaded one by one if Cassandra keeps running i.e. if only some keyspaces are restored.
+     */
+    private boolean isProgressiveRestore() {
+        return config.isProgressiveRestoreEnabled() && config.getRestoreKeySpaces().size() != 0;
+    }
+
     protected final void stopCassProcess() throws IOException {
         if (config.getRestoreKeySpaces().size() == 0)
             cassProcess.stop();
@@ -160,7 +251,7 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
     private final void fetchSnapshotMetaFile(String restorePrefix, List<AbstractBackupPath> out, Date startTime, Date endTime) throws IllegalStateException {
         logger.debug("Looking for snapshot meta file within restore prefix: {}", restorePrefix);
 
-        Iterator<AbstractBackupPath> backupfiles = fs.list(restorePrefix, startTime, endTime);
+        Iterator<AbstractBackupPath> backupfiles = backupIndex.list(fs, restorePrefix, startTime, endTime);
         if (!backupfiles.hasNext()) {
             throw new IllegalStateException("meta.json not found, restore prefix: " + restorePrefix);
         }
@@ -206,7 +297,9 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
         instanceState.getRestoreStatus().setEndDateRange(DateUtil.convert(endTime));
         instanceState.getRestoreStatus().setExecutionStartTime(LocalDateTime.now());
         instanceState.setRestoreStatus(Status.STARTED);
+        tracker.clear();
         String origBackupIdentifier = id.getBackupIdentifier();
+        List<ListenableFuture<Path>> commitLogs = Collections.emptyList();
 
         try {
             if (config.isRestoreClosestToken()) {
@@ -217,8 +310,11 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
             // Stop cassandra if its running and restoring all keyspaces
             stopCassProcess();
 
-            // Cleanup local data
-            SystemUtils.cleanupDir(config.getDataFileLocation(), config.getRestoreKeySpaces());
+            // Cleanup local data, unless we are resuming a previous attempt of the same restore.
+            if (restoreJournal.open(getRestoreId(startTime, endTime)))
+                logger.info("Resuming restore. {} files were already restored by a previous attempt.", restoreJournal.size());
+            else
+                SystemUtils.cleanupDir(config.getDataFileLocation(), config.getRestoreKeySpaces());
 
             // Try and read the Meta file.
             List<AbstractBackupPath> metas = Lists.newArrayList();
@@ -241,20 +337,8 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
             ArrayList<AbstractBackupPath> metaFile = new ArrayList<>();
             metaFile.add(meta);
             download(metaFile.iterator(), BackupFileType.META);
-            waitToComplete();
-
-            //Parse meta.json file to find the files required to download from this snapshot.
-            List<AbstractBackupPath> snapshots = metaData.toJson(meta.newRestoreFile());
-
-            // Download snapshot which is listed in the meta file.
-            download(snapshots.iterator(), BackupFileType.SNAP);
-
-            logger.info("Downloading incrementals");
-            // Download incrementals (SST) after the snapshot meta file.
-            Iterator<AbstractBackupPath> incrementals = fs.list(prefix, meta.getTime(), endTime);
-            download(incrementals, BackupFileType.SST);
 
-            //Downloading CommitLogs
+            //Commit logs are downloaded along with the snapshot and the incrementals.
             if (config.isBackingUpCommitLogs()) {
                 logger.info("Delete all backuped commitlog files in {}", config.getBackupCommitLogLocation());
                 SystemUtils.cleanupDir(config.getBackupCommitLogLocation(), null);
@@ -262,55 +346,83 @@ public abstract class AbstractRestore extends Task implements IRestoreStrategy{
                 logger.info("Delete all commitlog files in {}", config.getCommitLogLocation());
                 SystemUtils.cleanupDir(config.getCommitLogLocation(), null);
 
-                Iterator<AbstractBackupPath> commitLogPathIterator = fs.list(prefix, meta.getTime(), endTime);
-                downloadCommitLogs(commitLogPathIterator, BackupFileType.CL, config.maxCommitLogsRestore());
+                commitLogs = downloadCommitLogs(prefix, meta.getTime(), endTime);
+            }
+
+            //Parse meta.json file to find the files required to download from this snapshot. It is streamed, one entry at a time.
+            try (BackupManifest.Reader snapshots = metaData.read(meta.newRestoreFile())) {
+                Iterator<AbstractBackupPath> snapshotIterator = snapshots;
+                if (isProgressiveRestore()) {
+                    //Ordering the tables requires the whole list.
+                    List<AbstractBackupPath> sortedSnapshots = Lists.newArrayList(snapshots);
+                    tracker.ensureCapacity(sortedSnapshots.size());
+                    ProgressiveTableLoader.sortByPriority(sortedSnapshots, config.getRestorePriorityTables());
+                    snapshotIterator = sortedSnapshots.iterator();
+                } else if (config.isProgressiveRestoreEnabled())
+                    logger.warn("Progressive restore is only supported when restoring specific keyspaces, restoring all tables before starting Cassandra.");
+
+                // Download snapshot which is listed in the meta file.
+                download(snapshotIterator, BackupFileType.SNAP);
             }
 
-            //Ensure all the files are downloaded before declaring restore as finished.
-            waitToComplete();
+            logger.info("Downloading incrementals");
+            // Download incrementals (SST) after the snapshot meta file.
+            Iterator<AbstractBackupPath> incrementals = backupIndex.list(fs, prefix, meta.getTime(), endTime);
+            download(incrementals, BackupFileType.SST);
+
+            waitToComplete(commitLogs);
+
+            //Cassandra will modify the data directory once started, hence journal can no longer be used to resume.
+            restoreJournal.delete();
             instanceState.getRestoreStatus().setExecutionEndTime(LocalDateTime.now());
             instanceState.setRestoreStatus(Status.FINISHED);
 
             //Start cassandra if restore is successful.
             cassProcess.start(true);
         } catch (Exception e) {
+            for (ListenableFuture<Path> future : commitLogs)
+                future.cancel(true);
             instanceState.setRestoreStatus(Status.FAILED);
             instanceState.getRestoreStatus().setExecutionEndTime(LocalDateTime.now());
             logger.error("Error while trying to restore: {}", e.getMessage(), e);
             throw e;
         } finally {
+            restoreJournal.close();
             id.setBackupIdentifier(origBackupIdentifier);
         }
     }
 
-    /**
-     * Download file to the location specified. After downloading the file will be decrypted(optionally) and decompressed before saving to final location.
-     * @param path            - path of object to download from source S3/GCS.
-     * @param restoreLocation - path to the final location of the decompressed and/or decrypted file.
+    /*
+     * Identifies a restore so that only a retry of the same restore can resume from the restore journal.
      */
-    protected abstract void downloadFile(final AbstractBackupPath path, final File restoreLocation) throws Exception;
+    private String getRestoreId(Date startTime, Date endTime) {
+        return StringUtils.join(new Object[]{AbstractBackupPath.formatDate(startTime), AbstractBackupPath.formatDate(endTime),
+                getRestorePrefix(), id.getBackupIdentifier(), config.getRestoreKeySpaces()}, ",");
+    }
 
     /**
-     * A means to wait until until all threads have completed.  It blocks calling thread
-     * until all tasks are completed.
+     * Record the file as completely restored, so a retry of this restore does not need to download it again.
+     * @param path            - path of object downloaded from source S3/GCS.
+     * @param restoreLocation - path to the final location of the restored file.
+     * @param checksum        - md5 checksum of the restored file in hex format.
      */
-    protected abstract void waitToComplete();
-
-    public final class BoundedList<E> extends LinkedList<E> {
-
-        private final int limit;
-
-        public BoundedList(int limit) {
-            this.limit = limit;
-        }
-
-        @Override
-        public boolean add(E o) {
-            super.add(o);
-            while (size() > limit) {
-                super.remove();
-            }
-            return true;
-        }
+    protected final void restoreCompleted(final AbstractBackupPath path, final File restoreLocation, final String checksum) throws IOException {
+        tracker.add(path.getRemotePathHash());
+        if (path.getType() != BackupFileType.META)
+            restoreJournal.record(path, restoreLocation, checksum);
+        instanceState.getRestoreStatus().fileRestored(restoreLocation.length());
+
+        ProgressiveTableLoader loader = tableLoader;
+        if (loader != null)
+            loader.restored(path);
     }
+
+    /**
+     * Download file to the location specified. After downloading the file will be decrypted(optionally) and decompressed before saving to final location.
+     * The download happens asynchronously, a failure of the download (after retries) must fail the returned future.
+     * @param path            - path of object to download from source S3/GCS.
+     * @param restoreLocation - path to the final location of the decompressed and/or decrypted file.
+     * @return future with the path to the final location of the restored file.
+     */
+    protected abstract ListenableFuture<Path> downloadFile(final AbstractBackupPath path, final File restoreLocation) throws Exception;
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import com.netflix.priam.IConfiguration;
 import com.netflix.priam.ICredentialGeneric;
 import com.netflix.priam.aws.S3CrossAccountFileSystem;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupIndex;
 import com.netflix.priam.backup.MetaData;
 import com.netflix.priam.compress.ICompression;
 import com.netflix.priam.cryptography.IFileCryptography;
@@ -53,9 +54,9 @@ public class AwsCrossAccountCryptographyRestoreStrategy extends EncryptedRestore
             , @Named("filecryptoalgorithm") IFileCryptography fileCryptography
             , @Named("pgpcredential") ICredentialGeneric credential
             , ICompression compress, Provider<AbstractBackupPath> pathProvider,
-                                                      InstanceIdentity id, RestoreTokenSelector tokenSelector, MetaData metaData, InstanceState instanceState) {
+                                                      InstanceIdentity id, RestoreTokenSelector tokenSelector, MetaData metaData, InstanceState instanceState, BackupIndex backupIndex) {
 
-        super(config, crossAcctfs.getBackupFileSystem(), JOBNAME, sleeper, cassProcess, pathProvider, id, tokenSelector, credential, fileCryptography, compress, metaData, instanceState);
+        super(config, crossAcctfs.getBackupFileSystem(), JOBNAME, sleeper, cassProcess, pathProvider, id, tokenSelector, credential, fileCryptography, compress, metaData, instanceState, backupIndex);
     }
 
     /**
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2018 Netflix, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.priam.restore;
+
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import org.apache.commons.lang3.time.DateUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the commit log segments to replay on top of a snapshot and its incrementals to restore to a point in time.
+ * <p>
+ * A segment is backed up with the time it was closed, its last modification, to the minute. The writes from a time
+ * to another are in the segments closed from the minute of the start time up to the first segment closed after the
+ * minute of the end time, which was being written at the end time. Segments closed in the same minute are ordered by
+ * their segment id.
+ * When replaying, Cassandra skips the mutations after {@link IConfiguration#getCommitLogBackupRestorePointInTime()}.
+ */
+public class CommitLogSelector {
+    private static final Pattern SEGMENT_ID = Pattern.compile("-(\\d+)\\.log$");
+    private final NavigableSet<AbstractBackupPath> segments = new TreeSet<>(
+            Comparator.comparing(AbstractBackupPath::getTime)
+                    .thenComparingLong(CommitLogSelector::getSegmentId)
+                    .thenComparing(AbstractBackupPath::getRemotePath));
+
+    /**
+     * @return the id of the segment from its file name e.g. CommitLog-4-1534000000123.log, -1 if not a segment.
+     */
+    static long getSegmentId(AbstractBackupPath path) {
+        Matcher matcher = SEGMENT_ID.matcher(path.getFileName());
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Add a backed up file, files other than commit logs are ignored.
+     */
+    public void add(AbstractBackupPath path) {
+        if (path.getType() == BackupFileType.CL)
+            segments.add(path);
+    }
+
+    /**
+     * @param from  time of the snapshot.
+     * @param until point in time to restore to.
+     * @return the segments holding the writes from {@code from} to {@code until}, oldest first.
+     */
+    public List<AbstractBackupPath> select(Date from, Date until) {
+        Date fromMinute = DateUtils.truncate(from, Calendar.MINUTE);
+        Date untilMinute = DateUtils.truncate(until, Calendar.MINUTE);
+        List<AbstractBackupPath> selected = new ArrayList<>();
+        for (AbstractBackupPath segment : segments) {
+            if (segment.getTime().before(fromMinute))
+                continue;
+            selected.add(segment);
+            if (segment.getTime().after(untilMinute))
+                break;
+        }
+        return selected;
+    }
+}
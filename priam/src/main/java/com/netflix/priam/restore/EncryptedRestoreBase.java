@@ -17,6 +17,11 @@ package com.netflix.priam.restore;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Provider;
 import com.netflix.priam.ICassandraProcess;
 import com.netflix.priam.IConfiguration;
@@ -37,9 +42,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides common functionality applicable to all restore strategies
@@ -51,43 +56,41 @@ public abstract class EncryptedRestoreBase extends AbstractRestore{
     private ICredentialGeneric pgpCredential;
     private IFileCryptography fileCryptography;
     private ICompression compress;
-    private final ThreadPoolExecutor executor;
-    private AtomicInteger count = new AtomicInteger();
+    private final ListeningExecutorService executor;
 
     protected EncryptedRestoreBase(IConfiguration config, IBackupFileSystem fs, String jobName, Sleeper sleeper,
                                    ICassandraProcess cassProcess, Provider<AbstractBackupPath> pathProvider,
                                    InstanceIdentity instanceIdentity, RestoreTokenSelector tokenSelector, ICredentialGeneric pgpCredential,
-                                   IFileCryptography fileCryptography, ICompression compress, MetaData metaData, InstanceState instanceState) {
-        super(config, fs, jobName, sleeper, pathProvider, instanceIdentity, tokenSelector, cassProcess, metaData, instanceState);
+                                   IFileCryptography fileCryptography, ICompression compress, MetaData metaData, InstanceState instanceState, BackupIndex backupIndex) {
+        super(config, fs, jobName, sleeper, pathProvider, instanceIdentity, tokenSelector, cassProcess, metaData, instanceState, backupIndex);
 
         this.jobName = jobName;
         this.pgpCredential = pgpCredential;
         this.fileCryptography = fileCryptography;
         this.compress = compress;
-        executor = new NamedThreadPoolExecutor(config.getMaxBackupDownloadThreads(), jobName);
-        executor.allowCoreThreadTimeOut(true);
+        ThreadPoolExecutor threadPoolExecutor = new NamedThreadPoolExecutor(config.getMaxBackupDownloadThreads(), jobName);
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        executor = MoreExecutors.listeningDecorator(threadPoolExecutor);
         logger.info("Trying to restore cassandra cluster with filesystem: {}, RestoreStrategy: {}, Encryption: ON, Compression: {}",
                 fs.getClass(), jobName, compress.getClass());
     }
 
     @Override
-    protected final void downloadFile(final AbstractBackupPath path, final File restoreLocation) throws  Exception{
+    protected final ListenableFuture<Path> downloadFile(final AbstractBackupPath path, final File restoreLocation) throws  Exception{
         final char[] passPhrase = new String(this.pgpCredential.getValue(ICredentialGeneric.KEY.PGP_PASSWORD)).toCharArray();
         File tempFile = new File(restoreLocation.getAbsolutePath() + ".tmp");
-        count.incrementAndGet();
 
         try {
-            executor.submit(new RetryableCallable<Integer>() {
+            return executor.submit(new RetryableCallable<Path>() {
 
                 @Override
-                public Integer retriableCall() throws Exception {
+                public Path retriableCall() throws Exception {
 
                     //== download object from source bucket
                     try {
 
                         logger.info("Downloading file from: {} to: {}", path.getRemotePath(), tempFile.getAbsolutePath());
                         fs.download(path, new FileOutputStream(tempFile), tempFile.getAbsolutePath());
-                        tracker.adjustAndAdd(path);
                         logger.info("Completed downloading file from: {} to: {}", path.getRemotePath(), tempFile.getAbsolutePath());
 
 
@@ -124,13 +127,16 @@ public abstract class EncryptedRestoreBase extends AbstractRestore{
                     //== object downloaded and decrypted successfully, now uncompress it
                     logger.info("Start uncompressing file: {} to the FINAL destination stream", decryptedFile.getAbsolutePath());
 
+                    HashingOutputStream hashingStream = new HashingOutputStream(Hashing.md5(), new RestoreFileOutputStream(restoreLocation, path.getSize()));
                     try(InputStream is = new BufferedInputStream(new FileInputStream(decryptedFile));
-                    BufferedOutputStream finalDestination = new BufferedOutputStream(new FileOutputStream(restoreLocation))) {
+                    BufferedOutputStream finalDestination = new BufferedOutputStream(hashingStream)) {
                         compress.decompressAndClose(is, finalDestination);
                     } catch (Exception ex) {
                         throw new Exception("Exception uncompressing file: " + decryptedFile.getAbsolutePath() + " to the FINAL destination stream", ex);
                     }
 
+                    restoreCompleted(path, restoreLocation, SystemUtils.toHex(hashingStream.hash().asBytes()));
+
                     logger.info("Completed uncompressing file: {} to the FINAL destination stream "
                             + " current worker: {}", decryptedFile.getAbsolutePath(), Thread.currentThread().getName());
                     //if here, everything was successful for this object, lets remove unneeded file(s)
@@ -141,7 +147,7 @@ public abstract class EncryptedRestoreBase extends AbstractRestore{
                         decryptedFile.delete();
                     }
 
-                    return count.decrementAndGet();
+                    return restoreLocation.toPath();
                 }
 
             });
@@ -151,18 +157,6 @@ public abstract class EncryptedRestoreBase extends AbstractRestore{
 
     }
 
-    @Override
-    protected final void waitToComplete() {
-        while (count.get() != 0) {
-            try {
-                sleeper.sleep(1000);
-            } catch (InterruptedException e) {
-                logger.error("Interrupted: ", e);
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
     @Override
     public String getName() {
         return this.jobName;
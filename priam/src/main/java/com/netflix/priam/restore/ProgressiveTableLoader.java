@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.restore;
+
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupRestoreException;
+import com.netflix.priam.scheduler.NamedThreadPoolExecutor;
+import com.netflix.priam.utils.JMXNodeTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads restored tables into a running Cassandra (same as nodetool refresh) as soon as all the files of a table are
+ * restored, rather than once the whole restore is finished.
+ * <p>
+ * A loader is used for one batch of downloads: every file of the batch is registered with {@link #add(AbstractBackupPath)},
+ * then {@link #allAdded()} is called. Files report completion through {@link #restored(AbstractBackupPath)} from any
+ * thread. A table is loaded once all of its registered files are restored and all the files of the batch have been added.
+ */
+public class ProgressiveTableLoader {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressiveTableLoader.class);
+    private final IConfiguration config;
+    private final Map<String, AtomicInteger> pendingFiles = new ConcurrentHashMap<>();
+    private final Set<String> loadedTables = ConcurrentHashMap.newKeySet();
+    private final Set<String> failedTables = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+    private volatile boolean allAdded = false;
+
+    public ProgressiveTableLoader(IConfiguration config) {
+        this.config = config;
+        //Loading one table at a time keeps the impact on the running Cassandra low.
+        this.executor = new NamedThreadPoolExecutor(1, "ProgressiveTableLoader");
+    }
+
+    /**
+     * Order the files so the tables are restored one after another, starting with the priority tables in the configured
+     * order. As downloads are processed in the order they are submitted, this makes the first tables available early.
+     * @param files files to be restored.
+     */
+    public static void sortByPriority(List<AbstractBackupPath> files, List<String> priorityTables) {
+        files.sort(Comparator.comparingInt((AbstractBackupPath path) -> {
+            int idx = priorityTables.indexOf(path.getKeyspace() + "." + getTableName(path));
+            return idx < 0 ? Integer.MAX_VALUE : idx;
+        }).thenComparing(AbstractBackupPath::getKeyspace).thenComparing(ProgressiveTableLoader::getTableName));
+    }
+
+    /*
+     * Directory of a table is <table>-<cfId> since Cassandra 2.1. Table names can not contain '-'.
+     */
+    static String getTableName(AbstractBackupPath path) {
+        return path.getColumnFamily() == null ? "" : path.getColumnFamily().split("-")[0];
+    }
+
+    private static String getKey(AbstractBackupPath path) {
+        return path.getKeyspace() + "." + getTableName(path);
+    }
+
+    public void add(AbstractBackupPath path) {
+        if (path.getColumnFamily() == null)
+            return;
+
+        pendingFiles.computeIfAbsent(getKey(path), key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void restored(AbstractBackupPath path) {
+        AtomicInteger pending = pendingFiles.get(getKey(path));
+        if (pending != null && pending.decrementAndGet() == 0 && allAdded)
+            submitLoad(getKey(path));
+    }
+
+    public void allAdded() {
+        allAdded = true;
+        for (Map.Entry<String, AtomicInteger> entry : pendingFiles.entrySet())
+            if (entry.getValue().get() == 0)
+                submitLoad(entry.getKey());
+    }
+
+    private void submitLoad(String table) {
+        //Both allAdded() and the last restored file of a table may try to load it.
+        if (!loadedTables.add(table))
+            return;
+
+        executor.submit(() -> {
+            String[] pieces = table.split("\\.");
+            try {
+                logger.info("All files of table {} are restored, loading it into Cassandra.", table);
+                loadTable(pieces[0], pieces[1]);
+                logger.info("Table {} is loaded.", table);
+            } catch (Exception e) {
+                logger.error("Failed to load table {}: {}", table, e.getMessage(), e);
+                failedTables.add(table);
+            }
+        });
+    }
+
+    protected void loadTable(String keyspace, String table) throws Exception {
+        JMXNodeTool.instance(config).loadNewSSTables(keyspace, table);
+    }
+
+    /**
+     * Wait for the loading of all the tables to finish.
+     * @throws BackupRestoreException if any table could not be loaded.
+     */
+    public void awaitCompletion() throws BackupRestoreException, InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            logger.info("Waiting for restored tables to be loaded.");
+
+        if (!failedTables.isEmpty())
+            throw new BackupRestoreException("Failed to load restored tables: " + failedTables);
+    }
+
+    /**
+     * Stop loading tables, e.g. when the restore failed.
+     */
+    public void cancel() {
+        executor.shutdownNow();
+    }
+}
@@ -18,15 +18,20 @@ package com.netflix.priam.restore;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
-import com.google.inject.name.Named;
 import com.netflix.priam.ICassandraProcess;
 import com.netflix.priam.IConfiguration;
 import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupIndex;
 import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
-import com.netflix.priam.backup.IBackupFileSystem;
+import com.netflix.priam.backup.CachingBackupFileSystem;
 import com.netflix.priam.backup.MetaData;
 import com.netflix.priam.backup.Status;
 import com.netflix.priam.health.InstanceState;
@@ -44,7 +49,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Collections;
@@ -52,7 +57,6 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main class for restoring data from backup. Backup restored using this way are not encrypted.
@@ -62,45 +66,40 @@ public class Restore extends AbstractRestore {
     public static final String JOBNAME = "AUTO_RESTORE_JOB";
     private static final Logger logger = LoggerFactory.getLogger(Restore.class);
     private final ThreadPoolExecutor executor;
-    private AtomicInteger count = new AtomicInteger();
+    private final ListeningExecutorService downloadExecutor;
+    private final CachingBackupFileSystem cache;
 
     @Inject
-    public Restore(IConfiguration config, @Named("backup") IBackupFileSystem fs, Sleeper sleeper, ICassandraProcess cassProcess,
+    public Restore(IConfiguration config, CachingBackupFileSystem fs, Sleeper sleeper, ICassandraProcess cassProcess,
                    Provider<AbstractBackupPath> pathProvider,
-                   InstanceIdentity instanceIdentity, RestoreTokenSelector tokenSelector, MetaData metaData, InstanceState instanceState) {
-        super(config, fs, JOBNAME, sleeper, pathProvider, instanceIdentity, tokenSelector, cassProcess, metaData, instanceState);
+                   InstanceIdentity instanceIdentity, RestoreTokenSelector tokenSelector, MetaData metaData, InstanceState instanceState, BackupIndex backupIndex) {
+        super(config, fs, JOBNAME, sleeper, pathProvider, instanceIdentity, tokenSelector, cassProcess, metaData, instanceState, backupIndex);
         executor = new NamedThreadPoolExecutor(config.getMaxBackupDownloadThreads(), JOBNAME);
         executor.allowCoreThreadTimeOut(true);
+        downloadExecutor = MoreExecutors.listeningDecorator(executor);
+        cache = fs;
     }
 
     @Override
-    protected final void downloadFile(final AbstractBackupPath path, final File restoreLocation) throws Exception {
-        count.incrementAndGet();
-        executor.submit(new RetryableCallable<Integer>() {
+    protected final ListenableFuture<Path> downloadFile(final AbstractBackupPath path, final File restoreLocation) throws Exception {
+        return downloadExecutor.submit(new RetryableCallable<Path>() {
             @Override
-            public Integer retriableCall() throws Exception {
+            public Path retriableCall() throws Exception {
+                if (cache.copy(path, restoreLocation)) {
+                    restoreCompleted(path, restoreLocation, path.getChecksum());
+                    logger.info("Restored file: {} to: {} from the restore cache", path.getRemotePath(), restoreLocation.getAbsolutePath());
+                    return restoreLocation.toPath();
+                }
                 logger.info("Downloading file: {} to: {}", path.getRemotePath(), restoreLocation.getAbsolutePath());
-                fs.download(path, new FileOutputStream(restoreLocation), restoreLocation.getAbsolutePath());
-                tracker.adjustAndAdd(path);
-                // TODO: fix me -> if there is exception the why hang?
+                HashingOutputStream os = new HashingOutputStream(Hashing.md5(), new RestoreFileOutputStream(restoreLocation, path.getSize()));
+                fs.download(path, os, restoreLocation.getAbsolutePath());
+                restoreCompleted(path, restoreLocation, SystemUtils.toHex(os.hash().asBytes()));
                 logger.info("Completed download of file: {} to: {}", path.getRemotePath(), restoreLocation.getAbsolutePath());
-                return count.decrementAndGet();
+                return restoreLocation.toPath();
             }
         });
     }
 
-    @Override
-    protected final void waitToComplete() {
-        while (count.get() != 0) {
-            try {
-                sleeper.sleep(1000);
-            } catch (InterruptedException e) {
-                logger.error("Interrupted: ", e);
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
     public static TaskTimer getTimer() {
         return new SimpleTimer(JOBNAME);
     }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.restore;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Output stream to write a restored file to its final location.
+ * <p>
+ * Upstream decompression/decryption hands over data in small pieces (a few KB). This stream collects them into large
+ * blocks and writes them sequentially through a {@link FileChannel}. If the size of the file is known upfront, the file is
+ * preallocated using fallocate (Linux only) so the filesystem can place it in few contiguous extents. The file is synced
+ * to disk once on close.
+ */
+public class RestoreFileOutputStream extends OutputStream {
+    private static final Logger logger = LoggerFactory.getLogger(RestoreFileOutputStream.class);
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+    private long written = 0;
+    private boolean closed = false;
+
+    /**
+     * @param file         file to write to. Any existing content is discarded.
+     * @param expectedSize expected size of the file in bytes, used to preallocate the file. Use 0 if unknown.
+     * @throws IOException if the file could not be opened.
+     */
+    public RestoreFileOutputStream(File file, long expectedSize) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            this.channel = raf.getChannel();
+            if (expectedSize > 0)
+                NativeIO.preallocate(raf.getFD(), expectedSize);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining())
+            writeBuffer();
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining())
+                writeBuffer();
+            int count = Math.min(len, buffer.remaining());
+            buffer.put(b, off, count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Hands the buffered data to the OS. Data is only synced to disk on {@link #close()}.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!closed && buffer.position() > 0)
+            writeBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        try {
+            flush();
+            //Release the preallocated space beyond the actual content, the expected size is only an estimate.
+            if (channel.size() > written)
+                channel.truncate(written);
+            channel.force(true);
+        } finally {
+            closed = true;
+            raf.close();
+        }
+
+        if (logger.isDebugEnabled())
+            logger.debug("Wrote {} bytes to {}", written, file.getAbsolutePath());
+    }
+
+    /*
+     * Preallocation through JNA. Not available on non Linux systems or filesystems without fallocate support, in which case
+     * files are written without preallocation.
+     */
+    static final class NativeIO {
+        private static final boolean available;
+        private static Field fdField;
+
+        private static final AtomicBoolean failureLogged = new AtomicBoolean(false);
+
+        static {
+            boolean loaded = false;
+            try {
+                Native.register(NativeIO.class, "c");
+                //Not accessible on recent JDKs unless java.io is opened (--add-opens java.base/java.io=ALL-UNNAMED).
+                fdField = FileDescriptor.class.getDeclaredField("fd");
+                fdField.setAccessible(true);
+                loaded = true;
+            } catch (Throwable e) {
+                logger.warn("fallocate is not available, restored files will not be preallocated. Msg: {}", e.getMessage());
+            }
+            available = loaded;
+        }
+
+        private static native int fallocate(int fd, int mode, long offset, long len) throws LastErrorException;
+
+        static boolean preallocate(FileDescriptor fileDescriptor, long size) {
+            if (!available)
+                return false;
+
+            try {
+                fallocate(fdField.getInt(fileDescriptor), 0, 0, size);
+                return true;
+            } catch (IllegalAccessException | RuntimeException e) {
+                //e.g. EOPNOTSUPP if the filesystem does not support it.
+                if (failureLogged.compareAndSet(false, true))
+                    logger.warn("Unable to preallocate restored files, they are written without preallocation. Msg: {}", e.getMessage());
+                else
+                    logger.debug("Unable to preallocate {} bytes. Msg: {}", size, e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2018 Netflix, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.priam.restore;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent, append-only record of the files a restore has completely written to local disk.
+ * <p>
+ * The first line of the journal identifies the restore (date range, source prefix, token etc.) it belongs to. Every
+ * following line records one restored file with its size and md5 checksum. If a restore fails or Priam is restarted,
+ * the next attempt of the same restore re-opens the journal, keeps the local data and only downloads files which are
+ * either not journaled or whose local copy does not match the journaled size and checksum.
+ */
+public class RestoreJournal {
+    private static final Logger logger = LoggerFactory.getLogger(RestoreJournal.class);
+    private static final Gson gson = new Gson();
+    private final File journalFile;
+    private final Map<String, Entry> restored = new ConcurrentHashMap<>();
+    private Writer writer;
+
+    public RestoreJournal(String journalLocation) {
+        this.journalFile = new File(journalLocation);
+    }
+
+    /**
+     * Open the journal for the given restore. If a journal of the same restore exists on disk, its entries are loaded
+     * and the restore can be resumed, otherwise a new, empty journal is started.
+     *
+     * @param restoreId identity of the restore e.g. date range, restore prefix and token.
+     * @return true if an existing journal for this restore was found and loaded, false if a new journal was started.
+     * @throws IOException if journal could not be read or created.
+     */
+    public synchronized boolean open(String restoreId) throws IOException {
+        close();
+        restored.clear();
+        boolean resumed = load(restoreId);
+
+        if (!resumed) {
+            if (journalFile.getParentFile() != null)
+                journalFile.getParentFile().mkdirs();
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, false), StandardCharsets.UTF_8));
+            append(new Header(restoreId));
+        } else
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+
+        return resumed;
+    }
+
+    private boolean load(String restoreId) {
+        if (!journalFile.exists())
+            return false;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            Header header = line == null ? null : gson.fromJson(line, Header.class);
+            if (header == null || !restoreId.equals(header.restoreId)) {
+                logger.info("Restore journal {} belongs to a different restore: {}. Starting a new journal.", journalFile, header == null ? null : header.restoreId);
+                return false;
+            }
+
+            while ((line = reader.readLine()) != null) {
+                try {
+                    Entry entry = gson.fromJson(line, Entry.class);
+                    if (entry != null && entry.remotePath != null)
+                        restored.put(entry.remotePath, entry);
+                } catch (JsonParseException e) {
+                    //Most likely a partially written last line because of a crash. Everything before it is still valid.
+                    logger.warn("Ignoring corrupt entry in restore journal {}: {}", journalFile, line);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.error("Error while reading restore journal {}. Starting a new journal. Msg: {}", journalFile, e.getLocalizedMessage());
+            restored.clear();
+            return false;
+        }
+
+        logger.info("Loaded restore journal {} with {} restored files.", journalFile, restored.size());
+        return true;
+    }
+
+    /**
+     * Verify if the file was restored by an earlier attempt of this restore and is still intact on disk.
+     *
+     * @param path      remote file to be restored.
+     * @param localFile location of the restored file on disk.
+     * @return true if the local file matches the size and checksum recorded in the journal.
+     */
+    public boolean isRestored(AbstractBackupPath path, File localFile) {
+        Entry entry = restored.get(path.getRemotePath());
+        if (entry == null)
+            return false;
+
+        if (!localFile.exists() || localFile.length() != entry.size) {
+            logger.info("Journaled file {} is missing or has a different size on disk, will restore it again.", localFile);
+            restored.remove(path.getRemotePath());
+            return false;
+        }
+
+        if (!SystemUtils.md5(localFile).equals(entry.checksum)) {
+            logger.info("Journaled file {} does not match its checksum, will restore it again.", localFile);
+            restored.remove(path.getRemotePath());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Record that the file has been completely restored to disk.
+     *
+     * @param path      remote file that was restored.
+     * @param localFile location of the restored file on disk.
+     * @param checksum  md5 checksum of the restored file in hex format.
+     * @throws IOException if the entry could not be written to the journal.
+     */
+    public void record(AbstractBackupPath path, File localFile, String checksum) throws IOException {
+        Entry entry = new Entry(path.getRemotePath(), localFile.getAbsolutePath(), localFile.length(), checksum);
+        restored.put(entry.remotePath, entry);
+        synchronized (this) {
+            if (writer != null)
+                append(entry);
+        }
+    }
+
+    private void append(Object entry) throws IOException {
+        writer.write(gson.toJson(entry));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * @return number of files recorded as restored.
+     */
+    public int size() {
+        return restored.size();
+    }
+
+    public synchronized void close() {
+        IOUtils.closeQuietly(writer);
+        writer = null;
+    }
+
+    /**
+     * Close and remove the journal from disk. This should be called once the restore is complete as Cassandra will start
+     * modifying the restored files.
+     */
+    public synchronized void delete() {
+        close();
+        restored.clear();
+        FileUtils.deleteQuietly(journalFile);
+    }
+
+    static class Header {
+        private String restoreId;
+
+        Header(String restoreId) {
+            this.restoreId = restoreId;
+        }
+    }
+
+    static class Entry {
+        private String remotePath;
+        private String localPath;
+        private long size;
+        private String checksum;
+
+        Entry(String remotePath, String localPath, long size, String checksum) {
+            this.remotePath = remotePath;
+            this.localPath = localPath;
+            this.size = size;
+            this.checksum = checksum;
+        }
+    }
+}
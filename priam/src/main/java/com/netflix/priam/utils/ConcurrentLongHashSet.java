@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.utils;
+
+/**
+ * A thread safe set of primitive longs, e.g. hashes of backup file paths.
+ * <p>
+ * Keys are stored in open addressing (linear probing) tables of longs, so an entry costs ~16 bytes instead of the
+ * object graph of a {@link java.util.TreeSet} or {@link java.util.HashSet}. The set is split into segments, each with its
+ * own lock, to keep contention low when many threads add and look up keys. The set grows as required; size it with the
+ * expected number of keys to avoid rehashing.
+ */
+public class ConcurrentLongHashSet {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MIN_TABLE_SIZE = 8;
+    private static final long EMPTY = 0L; //Marks a free slot, key 0 is tracked separately.
+
+    private final Segment[] segments;
+    private final int segmentBits;
+    private volatile boolean containsEmptyKey;
+
+    public ConcurrentLongHashSet(int expectedSize) {
+        this(expectedSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentLongHashSet(int expectedSize, int concurrencyLevel) {
+        if (expectedSize < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException("Invalid expectedSize: " + expectedSize + " or concurrencyLevel: " + concurrencyLevel);
+
+        int numSegments = 1;
+        int bits = 0;
+        while (numSegments < concurrencyLevel) {
+            numSegments <<= 1;
+            bits++;
+        }
+
+        this.segmentBits = bits;
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            segments[i] = new Segment(expectedSize / numSegments);
+    }
+
+    /**
+     * @return true if the key was added, false if it was already present.
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            synchronized (this) {
+                boolean added = !containsEmptyKey;
+                containsEmptyKey = true;
+                return added;
+            }
+        }
+
+        long hash = mix(key);
+        return segmentFor(hash).add(key, hash);
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY)
+            return containsEmptyKey;
+
+        long hash = mix(key);
+        return segmentFor(hash).contains(key, hash);
+    }
+
+    /**
+     * Grow the set upfront so it can hold the expected number of keys without rehashing.
+     */
+    public void ensureCapacity(int expectedSize) {
+        for (Segment segment : segments)
+            segment.ensureCapacity(expectedSize / segments.length);
+    }
+
+    public int size() {
+        int size = containsEmptyKey ? 1 : 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    public void clear() {
+        containsEmptyKey = false;
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    private Segment segmentFor(long hash) {
+        return segmentBits == 0 ? segments[0] : segments[(int) (hash >>> (64 - segmentBits))];
+    }
+
+    //Finalizer of murmur3, spreads the keys evenly over segments and slots even if they are not uniformly distributed.
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long required = Math.max(MIN_TABLE_SIZE, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        if (required > (1 << 30))
+            return 1 << 30;
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+
+    private static final class Segment {
+        private long[] table;
+        private int size;
+
+        Segment(int expectedSize) {
+            this.table = new long[tableSizeFor(expectedSize)];
+        }
+
+        synchronized boolean add(long key, long hash) {
+            if (size + 1 > table.length * LOAD_FACTOR)
+                rehash(table.length << 1);
+
+            if (!insert(table, key, hash))
+                return false;
+
+            size++;
+            return true;
+        }
+
+        synchronized boolean contains(long key, long hash) {
+            int mask = table.length - 1;
+            for (int idx = (int) hash & mask; table[idx] != EMPTY; idx = (idx + 1) & mask) {
+                if (table[idx] == key)
+                    return true;
+            }
+            return false;
+        }
+
+        synchronized void ensureCapacity(int expectedSize) {
+            int tableSize = tableSizeFor(expectedSize);
+            if (tableSize > table.length)
+                rehash(tableSize);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            table = new long[MIN_TABLE_SIZE];
+            size = 0;
+        }
+
+        private void rehash(int tableSize) {
+            long[] newTable = new long[tableSize];
+            for (long key : table) {
+                if (key != EMPTY)
+                    insert(newTable, key, mix(key));
+            }
+            table = newTable;
+        }
+
+        private static boolean insert(long[] table, long key, long hash) {
+            int mask = table.length - 1;
+            int idx = (int) hash & mask;
+            while (table[idx] != EMPTY) {
+                if (table[idx] == key)
+                    return false;
+                idx = (idx + 1) & mask;
+            }
+            table[idx] = key;
+            return true;
+        }
+    }
+}
@@ -867,6 +867,11 @@ public class FakeConfiguration implements IConfiguration
         return "backupstatus.ser";
     }
 
+    @Override
+    public String getRestoreJournalLocation() {
+        return "cass/restore.journal";
+    }
+
     @Override
     public boolean useSudo() {
         return true;
@@ -886,4 +891,154 @@ public class FakeConfiguration implements IConfiguration
     public String getFlushCronExpression() {
         return null;
     }
+
+    @Override
+    public boolean isProgressiveRestoreEnabled() {
+        return false;
+    }
+
+    @Override
+    public List<String> getRestorePriorityTables() {
+        return Lists.newArrayList();
+    }
+
+    @Override
+    public boolean isBackupIndexEnabled() {
+        return false;
+    }
+
+    @Override
+    public String getBackupIndexLocation() {
+        return "target/backup.index";
+    }
+
+    @Override
+    public int getBackupIndexUploadIntervalInSecs() {
+        return 0;
+    }
+
+    @Override
+    public boolean isBackupDedupEnabled() {
+        return false;
+    }
+
+    @Override
+    public String getBackupDedupLocation() {
+        return "target/backup.dedup";
+    }
+
+    @Override
+    public boolean isBackupGcEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isBackupGcDryRun() {
+        return false;
+    }
+
+    @Override
+    public String getBackupGcCronExpression() {
+        return "0 0 12 * * ?";
+    }
+
+    @Override
+    public int getBackupListingThreads() {
+        return 4;
+    }
+
+    @Override
+    public int getBackupVerificationSamplePercent() {
+        return 0;
+    }
+
+    @Override
+    public boolean isIncrementalBackupWatchEnabled() {
+        return false;
+    }
+
+    @Override
+    public int getIncrementalBackupReconcileIntervalInSecs() {
+        return 600;
+    }
+
+    @Override
+    public int getBackupRpoInSecs() {
+        return 0;
+    }
+
+    @Override
+    public int getIncrementalMetaFlushIntervalInSecs() {
+        return 60;
+    }
+
+    @Override
+    public int getIncrementalMetaFlushMaxEntries() {
+        return 1000;
+    }
+
+    @Override
+    public String getIncrementalHighPriorityFilters() {
+        return null;
+    }
+
+    @Override
+    public String getIncrementalLowPriorityFilters() {
+        return null;
+    }
+
+    @Override
+    public String getIncrementalPriorityWeights() {
+        return "8,2,1";
+    }
+
+    @Override
+    public int getSnapshotTableBatchSize() {
+        return 0;
+    }
+
+    @Override
+    public int getSnapshotBatchThreads() {
+        return 1;
+    }
+
+    @Override
+    public int getSnapshotResumeWindowInHours() {
+        return 0;
+    }
+
+    @Override
+    public int getCommitLogBackupThreads() {
+        return 2;
+    }
+
+    @Override
+    public int getCommitLogBackupQuietPeriodInSecs() {
+        return 5;
+    }
+
+    @Override
+    public int getCommitLogRestoreLookaheadInMins() {
+        return 60;
+    }
+
+    @Override
+    public boolean isRestoreFromPeersEnabled() {
+        return false;
+    }
+
+    @Override
+    public int getRestorePeerPort() {
+        return 8080;
+    }
+
+    @Override
+    public long getRestoreCacheSizeInMB() {
+        return 0;
+    }
+
+    @Override
+    public String getRestoreCacheLocation() {
+        return "target/restore_cache";
+    }
 }
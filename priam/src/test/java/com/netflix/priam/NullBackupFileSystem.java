@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import com.netflix.priam.backup.AbstractBackupPath;
 import com.netflix.priam.backup.BackupRestoreException;
@@ -77,6 +78,11 @@ public class NullBackupFileSystem implements IBackupFileSystem
     {
         // TODO Auto-generated method stub
         
+    }
+
+    @Override
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException
+    {
     }
 
 	@Override
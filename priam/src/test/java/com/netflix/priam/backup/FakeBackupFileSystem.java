@@ -122,7 +122,7 @@ public class FakeBackupFileSystem implements IBackupFileSystem
     }
 
     @Override
-    public void upload(AbstractBackupPath path, InputStream in) throws BackupRestoreException
+    public synchronized void upload(AbstractBackupPath path, InputStream in) throws BackupRestoreException
     {
         uploadedFiles.add(path.backupFile.getAbsolutePath());
     }
@@ -187,6 +187,15 @@ public class FakeBackupFileSystem implements IBackupFileSystem
         
     }
 
+    @Override
+    public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException
+    {
+        Set<String> remotePaths = new HashSet<String>();
+        for (AbstractBackupPath file : files)
+            remotePaths.add(file.getRemotePath());
+        flist.removeIf(file -> remotePaths.contains(file.getRemotePath()));
+    }
+
 	@Override
 	public void download(AbstractBackupPath path, OutputStream os,
 			String diskPath) throws BackupRestoreException {
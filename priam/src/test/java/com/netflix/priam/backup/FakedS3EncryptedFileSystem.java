@@ -22,6 +22,7 @@ import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -84,6 +85,10 @@ public class FakedS3EncryptedFileSystem implements IBackupFileSystem {
 
 	}
 
+	@Override
+	public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+	}
+
 	@Override
 	public int getActivecount() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+
+public class TestBackupDedup {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public boolean isBackupDedupEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isBackupGcEnabled() {
+            return true;
+        }
+    };
+    private final File cfDir = new File(config.getDataFileLocation(), "ks1/cf1-0123");
+
+    @Before
+    public void setup() {
+        cleanup();
+        new File(cfDir, "backups").mkdirs();
+        new File(cfDir, "snapshots/201808110030").mkdirs();
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(new File(config.getDataFileLocation()));
+        FileUtils.deleteQuietly(new File(config.getBackupDedupLocation()));
+    }
+
+    private AbstractBackupPath getPath(String dir, String content, BackupFileType type) throws Exception {
+        File file = new File(cfDir, dir + "/ks1-cf1-ka-1-Data.db");
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        AbstractBackupPath path = pathFactory.get();
+        path.parseLocal(file, type);
+        return path;
+    }
+
+    private AbstractBackupPath getUploadedIncremental(String content, Date uploadTime) throws Exception {
+        AbstractBackupPath path = getPath("backups", content, BackupFileType.SST);
+        path.setChecksum(SystemUtils.toHex(Files.asByteSource(path.getBackupFile()).hash(Hashing.md5()).asBytes()));
+        path.setUploadedTs(uploadTime);
+        return path;
+    }
+
+    @Test
+    public void testFindUploadedIncremental() throws Exception {
+        BackupDedup dedup = new BackupDedup(config, pathFactory);
+        AbstractBackupPath incremental = getUploadedIncremental("content1", new Date());
+        dedup.add(Collections.singletonList(incremental));
+
+        AbstractBackupPath snapshotFile = getPath("snapshots/201808110030", "content1", BackupFileType.SNAP);
+        Assert.assertEquals(incremental.getRemotePath(), dedup.find(snapshotFile).getRemotePath());
+
+        //The record survives a restart.
+        AbstractBackupPath found = new BackupDedup(config, pathFactory).find(snapshotFile);
+        Assert.assertEquals(incremental.getRemotePath(), found.getRemotePath());
+        Assert.assertEquals(incremental.getChecksum(), found.getChecksum());
+    }
+
+    @Test
+    public void testDifferentContent() throws Exception {
+        BackupDedup dedup = new BackupDedup(config, pathFactory);
+        dedup.add(Collections.singletonList(getUploadedIncremental("content1", new Date())));
+        //Same name and size, different checksum.
+        Assert.assertNull(dedup.find(getPath("snapshots/201808110030", "content2", BackupFileType.SNAP)));
+    }
+
+    @Test
+    public void testOutsideRetention() throws Exception {
+        BackupDedup dedup = new BackupDedup(config, pathFactory);
+        Date uploadTime = new DateTime().minusDays(config.getBackupRetentionDays()).toDate();
+        dedup.add(Collections.singletonList(getUploadedIncremental("content1", uploadTime)));
+        Assert.assertNull(dedup.find(getPath("snapshots/201808110030", "content1", BackupFileType.SNAP)));
+
+        dedup.compact();
+        Assert.assertNull(new BackupDedup(config, pathFactory).find(getPath("snapshots/201808110030", "content1", BackupFileType.SNAP)));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        BackupDedup dedup = new BackupDedup(new FakeConfiguration(), pathFactory);
+        dedup.add(Collections.singletonList(getUploadedIncremental("content1", new Date())));
+        Assert.assertNull(dedup.find(getPath("snapshots/201808110030", "content1", BackupFileType.SNAP)));
+        Assert.assertFalse(new File(config.getBackupDedupLocation()).exists());
+    }
+
+    @Test
+    public void testGcDisabled() throws Exception {
+        //Objects expire by age without the garbage collector, a snapshot must not reference them.
+        BackupDedup dedup = new BackupDedup(new FakeConfiguration() {
+            @Override
+            public boolean isBackupDedupEnabled() {
+                return true;
+            }
+        }, pathFactory);
+        dedup.add(Collections.singletonList(getUploadedIncremental("content1", new Date())));
+        Assert.assertNull(dedup.find(getPath("snapshots/201808110030", "content1", BackupFileType.SNAP)));
+        Assert.assertFalse(new File(config.getBackupDedupLocation()).exists());
+    }
+}
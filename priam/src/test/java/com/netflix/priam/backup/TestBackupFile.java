@@ -124,4 +124,54 @@ public class TestBackupFile
         Assert.assertEquals("casstestbackup", backupfile.baseDir);
         Assert.assertEquals("casstestbackup/"+FakeConfiguration.FAKE_REGION+"/fake-app/1234567/201108082320/META/1234567.meta", backupfile.getRemotePath());
     }
+
+    @Test
+    public void testParseRemote()
+    {
+        String key = "casstestbackup/" + FakeConfiguration.FAKE_REGION + "/fake-app/1234567/201108082320/SNAP/Keyspace1/Standard1/Keyspace1-Standard1-ia-5-Data.db";
+        S3BackupPath backupfile = injector.getInstance(S3BackupPath.class);
+        backupfile.parseRemote("/" + key.replace("/SNAP/", "//SNAP/"));
+        Assert.assertEquals(BackupFileType.SNAP, backupfile.type);
+        Assert.assertEquals("Keyspace1", backupfile.keyspace);
+        Assert.assertEquals("Standard1", backupfile.columnFamily);
+        Assert.assertEquals("Keyspace1-Standard1-ia-5-Data.db", backupfile.fileName);
+        Assert.assertEquals(backupfile.parseDate("201108082320"), backupfile.time);
+        Assert.assertEquals(key, backupfile.getRemotePath());
+
+        //Cassandra 1.0 paths have no column family.
+        S3BackupPath oldfile = injector.getInstance(S3BackupPath.class);
+        oldfile.parseRemote(key.replace("/Standard1/", "/"));
+        Assert.assertTrue(oldfile.isCassandra1_0());
+        Assert.assertEquals("Keyspace1", oldfile.keyspace);
+        Assert.assertEquals(key.replace("/Standard1/", "/"), oldfile.getRemotePath());
+
+        S3BackupPath metafile = injector.getInstance(S3BackupPath.class);
+        metafile.parseRemote("casstestbackup/" + FakeConfiguration.FAKE_REGION + "/fake-app/1234567/201108082320/META/meta.json");
+        Assert.assertEquals(BackupFileType.META, metafile.type);
+        Assert.assertEquals("meta.json", metafile.fileName);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRemoteTooShort()
+    {
+        injector.getInstance(S3BackupPath.class).parseRemote("casstestbackup/" + FakeConfiguration.FAKE_REGION + "/fake-app/1234567/201108082320/META");
+    }
+
+    @Test
+    public void testRemotePathChanges()
+    {
+        String key = "casstestbackup/" + FakeConfiguration.FAKE_REGION + "/fake-app/1234567/201108082320/SST/Keyspace1/Standard1/Keyspace1-Standard1-ia-5-Data.db";
+        S3BackupPath backupfile = injector.getInstance(S3BackupPath.class);
+        backupfile.parseRemote(key);
+        long hash = backupfile.getRemotePathHash();
+        Assert.assertEquals(key, backupfile.getRemotePath());
+
+        backupfile.setTime(backupfile.parseDate("201108090000"));
+        Assert.assertEquals(key.replace("201108082320", "201108090000"), backupfile.getRemotePath());
+        Assert.assertNotEquals(hash, backupfile.getRemotePathHash());
+
+        backupfile.parseRemote(key);
+        Assert.assertEquals(key, backupfile.getRemotePath());
+        Assert.assertEquals(hash, backupfile.getRemotePathHash());
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestBackupGarbageCollector {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration();
+    private GcFileSystem fs;
+
+    public static class GcFileSystem extends FakeBackupFileSystem {
+        private final Map<String, List<AbstractBackupPath>> metaFiles = new HashMap<>();
+        private final List<Integer> deleteBatches = new ArrayList<>();
+
+        @Override
+        public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+            List<AbstractBackupPath> references = metaFiles.get(path.getRemotePath());
+            if (references == null)
+                throw new BackupRestoreException("Not found: " + path.getRemotePath());
+            try {
+                File file = File.createTempFile("meta", ".json");
+                try (BackupManifest.Writer writer = new BackupManifest.Writer(file, path.getFileName())) {
+                    for (AbstractBackupPath reference : references)
+                        writer.add(reference);
+                }
+                try {
+                    Files.copy(file.toPath(), os);
+                    os.close();
+                } finally {
+                    FileUtils.deleteQuietly(file);
+                }
+            } catch (IOException e) {
+                throw new BackupRestoreException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void deleteFiles(String path, List<AbstractBackupPath> files) throws BackupRestoreException {
+            deleteBatches.add(files.size());
+            super.deleteFiles(path, files);
+        }
+    }
+
+    private class ClockedGarbageCollector extends BackupGarbageCollector {
+        ClockedGarbageCollector() {
+            super(config, fs, pathFactory);
+        }
+
+        @Override
+        Date now() {
+            return date("201808201200");
+        }
+    }
+
+    @Before
+    public void setup() {
+        fs = injector.getInstance(GcFileSystem.class);
+        fs.setupTest();
+    }
+
+    private Date date(String time) {
+        return pathFactory.get().parseDate(time);
+    }
+
+    private AbstractBackupPath addFile(String time, String file) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote(path.remotePrefix(date(time), date(time), config.getBackupPrefix()) + "/" + file);
+        fs.addFile(path.getRemotePath());
+        return path;
+    }
+
+    private void addSnapshot(String time, AbstractBackupPath... references) {
+        AbstractBackupPath meta = addFile(time, "META/meta.json");
+        fs.metaFiles.put(meta.getRemotePath(), Arrays.asList(references));
+    }
+
+    private List<String> listFiles() {
+        List<String> files = new ArrayList<>();
+        fs.list(config.getBackupPrefix(), new Date(0), date("201808201200")).forEachRemaining(path -> files.add(path.getRemotePath()));
+        return files;
+    }
+
+    private List<String> setupBackups() {
+        //Snapshot older than the snapshot restores within the retention period start from.
+        AbstractBackupPath oldFile = addFile("201808130000", "SNAP/ks1/cf1/f1.db");
+        AbstractBackupPath sharedFile = addFile("201808130000", "SNAP/ks1/cf1/f2.db");
+        addSnapshot("201808130000", oldFile, sharedFile);
+        AbstractBackupPath oldIncremental = addFile("201808140000", "SST/ks1/cf1/f3.db");
+        //Last snapshot before the retention period (5 days).
+        AbstractBackupPath file = addFile("201808150000", "SNAP/ks1/cf1/f4.db");
+        addSnapshot("201808150000", file);
+        addFile("201808160000", "SST/ks1/cf1/f5.db");
+        //Snapshot referencing an SSTable uploaded by the old snapshot.
+        addSnapshot("201808170000", sharedFile, file);
+
+        AbstractBackupPath oldMeta = pathFactory.get();
+        oldMeta.parseRemote(oldFile.getRemotePath().replace("SNAP/ks1/cf1/f1.db", "META/meta.json"));
+        return Arrays.asList(oldFile.getRemotePath(), oldMeta.getRemotePath(), oldIncremental.getRemotePath());
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        List<String> unreferenced = setupBackups();
+        List<String> expected = listFiles();
+        expected.removeAll(unreferenced);
+
+        BackupGarbageCollector.Report report = new ClockedGarbageCollector().collect(false);
+        Assert.assertEquals(date("201808150000"), report.deleteBefore);
+        Assert.assertEquals(2, report.retainedSnapshots);
+        Assert.assertEquals(4, report.scannedFiles);
+        Assert.assertEquals(3, report.deletableFiles);
+        Assert.assertEquals(3, report.deletedFiles);
+        Assert.assertEquals(new HashSet<>(unreferenced), new HashSet<>(report.sampleFiles));
+        Assert.assertEquals(Collections.singletonList(3), fs.deleteBatches);
+        Assert.assertEquals(new HashSet<>(expected), new HashSet<>(listFiles()));
+    }
+
+    @Test
+    public void testDryRun() throws Exception {
+        List<String> unreferenced = setupBackups();
+        List<String> files = listFiles();
+
+        BackupGarbageCollector.Report report = new ClockedGarbageCollector().collect(true);
+        Assert.assertEquals(3, report.deletableFiles);
+        Assert.assertEquals(0, report.deletedFiles);
+        Assert.assertEquals(new HashSet<>(unreferenced), new HashSet<>(report.sampleFiles));
+        Assert.assertTrue(fs.deleteBatches.isEmpty());
+        Assert.assertEquals(files, listFiles());
+    }
+
+    @Test
+    public void testNoSnapshotBeforeRetention() throws Exception {
+        addFile("201808160000", "SST/ks1/cf1/f1.db");
+        addSnapshot("201808170000");
+
+        BackupGarbageCollector.Report report = new ClockedGarbageCollector().collect(false);
+        Assert.assertNull(report.deleteBefore);
+        Assert.assertEquals(0, report.scannedFiles);
+        Assert.assertEquals(2, listFiles().size());
+    }
+}
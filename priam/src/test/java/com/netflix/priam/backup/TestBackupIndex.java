@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestBackupIndex {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public boolean isBackupIndexEnabled() {
+            return true;
+        }
+    };
+    private IndexFileSystem fs;
+    private Date now;
+
+    public static class IndexFileSystem extends FakeBackupFileSystem {
+        private final Map<String, byte[]> objects = new HashMap<>();
+        private int listCalls = 0;
+
+        @Override
+        public void upload(AbstractBackupPath path, InputStream in) throws BackupRestoreException {
+            try {
+                in.close();
+                objects.put(path.getRemotePath(), Files.readAllBytes(path.getBackupFile().toPath()));
+            } catch (IOException e) {
+                throw new BackupRestoreException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+            byte[] content = objects.get(path.getRemotePath());
+            if (content == null)
+                throw new BackupRestoreException("Not found: " + path.getRemotePath());
+            try {
+                os.write(content);
+            } catch (IOException e) {
+                throw new BackupRestoreException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public Iterator<AbstractBackupPath> list(String bucket, Date start, Date till) {
+            listCalls++;
+            return super.list(bucket, start, till);
+        }
+    }
+
+    private class ClockedBackupIndex extends BackupIndex {
+        ClockedBackupIndex() {
+            super(config, pathFactory, fs);
+        }
+
+        @Override
+        Date now() {
+            return now;
+        }
+    }
+
+    @Before
+    public void setup() {
+        FileUtils.deleteQuietly(new File(config.getBackupIndexLocation()));
+        fs = injector.getInstance(IndexFileSystem.class);
+        fs.setupTest();
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(new File(config.getBackupIndexLocation()));
+    }
+
+    private Date date(String time) {
+        return pathFactory.get().parseDate(time);
+    }
+
+    private AbstractBackupPath getPath(String time, String file) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote(path.remotePrefix(date(time), date(time), config.getBackupPrefix()) + "/SST/ks1/cf1/" + file);
+        return path;
+    }
+
+    private AbstractBackupPath getLocalPath(String time, String file) throws Exception {
+        File localFile = new File(config.getDataFileLocation(), "ks1/cf1/backups/" + file);
+        FileUtils.writeStringToFile(localFile, file, StandardCharsets.UTF_8);
+        AbstractBackupPath path = pathFactory.get();
+        path.parseLocal(localFile, AbstractBackupPath.BackupFileType.SST);
+        path.setTime(date(time));
+        return path;
+    }
+
+    private List<String> list(BackupIndex index, String start, String till) {
+        List<String> files = new ArrayList<>();
+        index.list(fs, config.getBackupPrefix(), date(start), date(till)).forEachRemaining(path -> files.add(path.getFileName()));
+        return files;
+    }
+
+    @Test
+    public void testListFromIndex() {
+        BackupIndex index = new ClockedBackupIndex();
+        //Creates the index of the next day ahead of time.
+        now = date("201808101200");
+        index.add(Collections.emptyList());
+
+        now = date("201808110100");
+        index.add(Arrays.asList(getPath("201808110030", "f1.db"), getPath("201808110035", "f2.db")));
+
+        Assert.assertEquals(Arrays.asList("f1.db", "f2.db"), list(index, "201808110000", "201808110100"));
+        Assert.assertEquals(Collections.singletonList("f2.db"), list(index, "201808110035", "201808110040"));
+        Assert.assertEquals(0, fs.listCalls);
+    }
+
+    @Test
+    public void testListDaysNotCovered() {
+        BackupIndex index = new ClockedBackupIndex();
+        now = date("201808101200");
+        index.add(Collections.emptyList());
+        now = date("201808110100");
+        index.add(Collections.singletonList(getPath("201808110030", "f1.db")));
+
+        //Index of 20180809 does not exist, index of 20180810 only covers the day from noon.
+        Assert.assertEquals(Collections.singletonList("f1.db"), list(index, "201808090000", "201808110100"));
+        Assert.assertEquals(2, fs.listCalls);
+
+        //Index of 20180811 is not uploaded yet for files after 01:00.
+        list(index, "201808110000", "201808110200");
+        Assert.assertEquals(3, fs.listCalls);
+    }
+
+    @Test
+    public void testFilesInFlight() throws Exception {
+        BackupIndex index = new ClockedBackupIndex();
+        now = date("201808101200");
+        index.add(Collections.emptyList());
+
+        //Recorded by concurrent uploaders, added to the index by the next call to add.
+        index.uploaded(getPath("201808110030", "f1.db"));
+        AbstractBackupPath uploading = getLocalPath("201808110035", "f2.db");
+        index.queued(uploading);
+        now = date("201808110100");
+        index.add(Collections.emptyList());
+
+        //The index does not cover the time of the file still being uploaded.
+        Assert.assertEquals(Collections.singletonList("f1.db"), list(index, "201808110000", "201808110035"));
+        Assert.assertEquals(0, fs.listCalls);
+        list(index, "201808110000", "201808110100");
+        Assert.assertEquals(1, fs.listCalls);
+
+        index.uploaded(uploading);
+        FileUtils.deleteQuietly(uploading.getBackupFile());
+        now = date("201808110110");
+        index.add(Collections.emptyList());
+        Assert.assertEquals(Arrays.asList("f1.db", "f2.db"), list(index, "201808110000", "201808110100"));
+        Assert.assertEquals(1, fs.listCalls);
+    }
+
+    @Test
+    public void testRestartStartsNewIndex() {
+        BackupIndex index = new ClockedBackupIndex();
+        now = date("201808101200");
+        index.add(Collections.emptyList());
+
+        //Files uploaded just before the restart may be missing, the index no longer covers the day from its start.
+        index = new ClockedBackupIndex();
+        now = date("201808110100");
+        index.add(Collections.singletonList(getPath("201808110030", "f1.db")));
+        list(index, "201808110000", "201808110100");
+        Assert.assertEquals(1, fs.listCalls);
+    }
+
+    @Test
+    public void testDisabled() {
+        BackupIndex index = new BackupIndex(new FakeConfiguration(), pathFactory, fs);
+        index.add(Collections.singletonList(getPath("201808110030", "f1.db")));
+        Assert.assertTrue(fs.objects.isEmpty());
+        list(index, "201808110000", "201808110100");
+        Assert.assertEquals(1, fs.listCalls);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.AbstractBackupPath.BackupFileType;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+public class TestBackupLagTracker {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public int getBackupRpoInSecs() {
+            return 600;
+        }
+    };
+    private final File backupDir = new File(config.getDataFileLocation(), "ks1/cf1-0123/backups");
+    private long now = 1534000000000L;
+    private BackupLagTracker tracker;
+
+    @Before
+    public void setup() {
+        cleanup();
+        backupDir.mkdirs();
+        tracker = new BackupLagTracker(config) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(new File(config.getDataFileLocation()));
+    }
+
+    private AbstractBackupPath getPath(String fileName, long modified) throws Exception {
+        File file = new File(backupDir, fileName);
+        FileUtils.writeStringToFile(file, "0123456789", StandardCharsets.UTF_8);
+        file.setLastModified(modified);
+        AbstractBackupPath path = pathFactory.get();
+        path.parseLocal(file, BackupFileType.SST);
+        return path;
+    }
+
+    @Test
+    public void testPendingAndUploaded() throws Exception {
+        AbstractBackupPath old = getPath("ks1-cf1-ka-1-Data.db", now - 120 * 1000L);
+        AbstractBackupPath recent = getPath("ks1-cf1-ka-2-Data.db", now - 2 * 1000L);
+        tracker.found(old);
+        tracker.found(recent);
+        //Found again by the next scan while still pending.
+        now += 1000;
+        tracker.found(old);
+
+        BackupLagTracker.Lag lag = tracker.getLag();
+        Assert.assertEquals(2, lag.pendingFiles);
+        Assert.assertEquals(20, lag.pendingBytes);
+        Assert.assertEquals(121, lag.oldestPendingAgeSecs);
+        Assert.assertFalse(lag.rpoExceeded);
+        Assert.assertEquals(2, lag.keyspaces.get("ks1").pendingFiles);
+
+        tracker.uploaded(old);
+        tracker.uploaded(recent);
+        lag = tracker.getLag();
+        Assert.assertEquals(0, lag.pendingFiles);
+        Assert.assertEquals(0, lag.oldestPendingAgeSecs);
+        BackupLagTracker.KeyspaceLag keyspaceLag = lag.keyspaces.get("ks1");
+        Assert.assertEquals(2, keyspaceLag.uploadedFiles);
+        Assert.assertEquals(121, keyspaceLag.maxUploadLatencySecs);
+        Assert.assertEquals(1L, keyspaceLag.uploadLatencySecs.get("5").longValue());
+        Assert.assertEquals(1L, keyspaceLag.uploadLatencySecs.get("300").longValue());
+        Assert.assertEquals(0L, keyspaceLag.uploadLatencySecs.get("+Inf").longValue());
+    }
+
+    @Test
+    public void testRpoExceeded() throws Exception {
+        tracker.found(getPath("ks1-cf1-ka-1-Data.db", now));
+        Assert.assertFalse(tracker.isRpoExceeded());
+
+        now += 601 * 1000L;
+        Assert.assertTrue(tracker.isRpoExceeded());
+        Assert.assertEquals(601, tracker.getOldestPendingAgeSecs());
+    }
+
+    @Test
+    public void testRemovedFile() throws Exception {
+        AbstractBackupPath path = getPath("ks1-cf1-ka-1-Data.db", now);
+        tracker.found(path);
+        Assert.assertEquals(1, tracker.getPendingFiles());
+
+        //Deleted without being uploaded, e.g. the table was dropped.
+        path.getBackupFile().delete();
+        Assert.assertEquals(0, tracker.getPendingFiles());
+        Assert.assertEquals(0, tracker.getPendingBytes());
+    }
+}
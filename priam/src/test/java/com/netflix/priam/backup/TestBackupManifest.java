@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.aws.S3BackupPath;
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONArray;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class TestBackupManifest {
+    private static final String PATH_PREFIX = "test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/201108110030/SNAP/ks1/cf1/";
+    private final Provider<AbstractBackupPath> pathFactory = () -> new S3BackupPath(new FakeConfiguration(), null);
+    private final File metaFile = new File("target/manifest/meta.json");
+
+    @Before
+    public void setup() {
+        metaFile.getParentFile().mkdirs();
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(metaFile.getParentFile());
+    }
+
+    private AbstractBackupPath getPath(String fileName) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote(PATH_PREFIX + fileName);
+        return path;
+    }
+
+    private List<AbstractBackupPath> read() throws IOException {
+        List<AbstractBackupPath> paths = new ArrayList<>();
+        try (BackupManifest.Reader reader = new BackupManifest.Reader(metaFile, pathFactory)) {
+            while (reader.hasNext())
+                paths.add(reader.next());
+        }
+        return paths;
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        Date uploadTime = new Date();
+        try (BackupManifest.Writer writer = new BackupManifest.Writer(metaFile, "201108110030")) {
+            for (int i = 0; i < 3; i++) {
+                AbstractBackupPath path = getPath("f" + i + ".db");
+                path.setSize(1000 + i);
+                path.setCompressedFileSize(500 + i);
+                path.setChecksum("checksum" + i);
+                path.setUploadedTs(uploadTime);
+                writer.add(path);
+            }
+        }
+
+        List<AbstractBackupPath> paths = read();
+        Assert.assertEquals(3, paths.size());
+        for (int i = 0; i < 3; i++) {
+            AbstractBackupPath path = paths.get(i);
+            Assert.assertEquals(PATH_PREFIX + "f" + i + ".db", path.getRemotePath());
+            Assert.assertEquals(1000 + i, path.getSize());
+            Assert.assertEquals(500 + i, path.getCompressedFileSize());
+            Assert.assertEquals("checksum" + i, path.getChecksum());
+            Assert.assertEquals(uploadTime, path.getUploadedTs());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        new BackupManifest.Writer(metaFile, "201108110030").close();
+        Assert.assertTrue(read().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadLegacyFormat() throws IOException {
+        JSONArray jsonArray = new JSONArray();
+        jsonArray.add(PATH_PREFIX + "f1.db");
+        jsonArray.add(PATH_PREFIX + "f2.db");
+        FileUtils.writeStringToFile(metaFile, jsonArray.toJSONString(), StandardCharsets.UTF_8);
+
+        List<AbstractBackupPath> paths = read();
+        Assert.assertEquals(2, paths.size());
+        Assert.assertEquals(PATH_PREFIX + "f1.db", paths.get(0).getRemotePath());
+        Assert.assertEquals(PATH_PREFIX + "f2.db", paths.get(1).getRemotePath());
+        Assert.assertEquals(0, paths.get(0).getSize());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        FileUtils.writeStringToFile(metaFile, "{\"version\":3}\n", StandardCharsets.UTF_8);
+        read();
+    }
+}
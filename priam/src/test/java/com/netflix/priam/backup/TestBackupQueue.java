@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.backup.parallel.CassandraBackupQueueMgr;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class TestBackupQueue {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathProvider = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public String getIncrementalHighPriorityFilters() {
+            return "critical";
+        }
+
+        @Override
+        public String getIncrementalLowPriorityFilters() {
+            return "analytics,ks1.events";
+        }
+
+        @Override
+        public String getIncrementalPriorityWeights() {
+            return "4,2,1";
+        }
+    };
+    private final BackupPriorityClassifier priorityClassifier = new BackupPriorityClassifier(config);
+    private CassandraBackupQueueMgr queue;
+
+    @Before
+    public void setup() {
+        queue = new CassandraBackupQueueMgr(config, priorityClassifier);
+    }
+
+    private AbstractBackupPath path(int file) {
+        return path("ks1", "cf1", file);
+    }
+
+    private AbstractBackupPath path(String keyspace, String columnFamily, int file) {
+        AbstractBackupPath path = pathProvider.get();
+        Date time = path.parseDate("201808110030");
+        path.parseRemote(path.remotePrefix(time, time, config.getBackupPrefix()) + "/SST/" + keyspace + "/" + columnFamily + "/"
+                + keyspace + "-" + columnFamily + "-ka-" + file + "-Data.db");
+        return path;
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int producer = 0; producer < 8; producer++) {
+            futures.add(producers.submit(() -> {
+                for (int file = 0; file < 50; file++)
+                    queue.add(path(file));
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        producers.shutdown();
+
+        Assert.assertEquals(50, queue.getNumOfTasksToBeProessed().intValue());
+        Set<String> taken = new HashSet<>();
+        while (queue.hasTasks())
+            Assert.assertTrue(taken.add(queue.take().getRemotePath()));
+        Assert.assertEquals(50, taken.size());
+    }
+
+    @Test
+    public void testBlockingTake() throws Exception {
+        ExecutorService consumer = Executors.newSingleThreadExecutor();
+        Future<AbstractBackupPath> task = consumer.submit(() -> queue.take());
+        try {
+            task.get(200, TimeUnit.MILLISECONDS);
+            Assert.fail("Nothing was queued");
+        } catch (TimeoutException e) {
+            //expected
+        }
+
+        queue.add(path(1));
+        Assert.assertEquals(path(1).getRemotePath(), task.get(5, TimeUnit.SECONDS).getRemotePath());
+        consumer.shutdown();
+    }
+
+    @Test
+    public void testQueueAgainAfterCompletion() throws Exception {
+        queue.add(path(1));
+        AbstractBackupPath task = queue.take();
+
+        //Still being uploaded.
+        queue.add(path(1));
+        Assert.assertFalse(queue.hasTasks());
+
+        //Uploaded or failed, the next scan queues it again if the file is still there.
+        queue.taskPostProcessing(task);
+        queue.add(path(1));
+        Assert.assertTrue(queue.hasTasks());
+    }
+
+    @Test
+    public void testClassify() {
+        Assert.assertEquals(BackupPriorityClassifier.Priority.HIGH, priorityClassifier.classify("critical", "users-1234"));
+        Assert.assertEquals(BackupPriorityClassifier.Priority.LOW, priorityClassifier.classify("analytics", "clicks-1234"));
+        Assert.assertEquals(BackupPriorityClassifier.Priority.LOW, priorityClassifier.classify("ks1", "events-1234"));
+        Assert.assertEquals(BackupPriorityClassifier.Priority.NORMAL, priorityClassifier.classify("ks1", "users-1234"));
+        Assert.assertEquals(BackupPriorityClassifier.Priority.NORMAL, priorityClassifier.classify(null, null));
+    }
+
+    @Test
+    public void testWeightedTake() throws Exception {
+        //The low priority table floods the queue first.
+        for (int file = 0; file < 20; file++)
+            queue.add(path("analytics", "clicks", file));
+        for (int file = 0; file < 20; file++)
+            queue.add(path("ks1", "cf1", file));
+        for (int file = 0; file < 20; file++)
+            queue.add(path("critical", "users", file));
+
+        Map<String, Integer> taken = new HashMap<>();
+        for (int i = 0; i < 14; i++)
+            taken.merge(queue.take().getKeyspace(), 1, Integer::sum);
+        Assert.assertEquals(8, taken.get("critical").intValue());
+        Assert.assertEquals(4, taken.get("ks1").intValue());
+        Assert.assertEquals(2, taken.get("analytics").intValue());
+
+        //A class alone in the queue gets all the takes.
+        while (queue.hasTasks())
+            queue.take();
+        queue.add(path("analytics", "clicks", 100));
+        Assert.assertEquals("analytics", queue.take().getKeyspace());
+    }
+}
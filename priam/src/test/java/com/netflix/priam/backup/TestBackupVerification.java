@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestBackupVerification {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private static final String SNAPSHOT_TIME = "201808110030";
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public int getBackupVerificationSamplePercent() {
+            return 100;
+        }
+    };
+    private VerificationFileSystem fs;
+    private final List<AbstractBackupPath> manifest = new ArrayList<>();
+
+    public static class VerificationFileSystem extends FakeBackupFileSystem {
+        private final Map<String, byte[]> contents = new HashMap<>();
+        private final Map<String, List<AbstractBackupPath>> metaFiles = new HashMap<>();
+
+        @Override
+        public Iterator<AbstractBackupPath> list(String bucket, Date start, Date till) {
+            List<AbstractBackupPath> paths = new ArrayList<>();
+            super.list(bucket, start, till).forEachRemaining(path -> {
+                byte[] content = contents.get(path.getRemotePath());
+                path.setCompressedFileSize(content == null ? 0 : content.length);
+                paths.add(path);
+            });
+            return paths.iterator();
+        }
+
+        @Override
+        public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+            try {
+                List<AbstractBackupPath> references = metaFiles.get(path.getRemotePath());
+                if (references != null) {
+                    File file = File.createTempFile("meta", ".json");
+                    try {
+                        try (BackupManifest.Writer writer = new BackupManifest.Writer(file, path.getFileName())) {
+                            for (AbstractBackupPath reference : references)
+                                writer.add(reference);
+                        }
+                        Files.copy(file.toPath(), os);
+                    } finally {
+                        FileUtils.deleteQuietly(file);
+                    }
+                } else {
+                    byte[] content = contents.get(path.getRemotePath());
+                    if (content == null)
+                        throw new BackupRestoreException("Not found: " + path.getRemotePath());
+                    //Like S3FileSystemBase, which sets the size of the compressed object.
+                    path.setCompressedFileSize(content.length / 2);
+                    os.write(content);
+                }
+                os.close();
+            } catch (IOException e) {
+                throw new BackupRestoreException(e.getMessage(), e);
+            }
+        }
+    }
+
+    @Before
+    public void setup() {
+        fs = injector.getInstance(VerificationFileSystem.class);
+        fs.setupTest();
+        fs.contents.clear();
+        fs.metaFiles.clear();
+        manifest.clear();
+    }
+
+    private Date date(String time) {
+        return pathFactory.get().parseDate(time);
+    }
+
+    private AbstractBackupPath newPath(String file) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote(path.remotePrefix(date(SNAPSHOT_TIME), date(SNAPSHOT_TIME), config.getBackupPrefix()) + "/" + file);
+        return path;
+    }
+
+    //Uploads the file and records it in the meta file of the snapshot.
+    private AbstractBackupPath addFile(String file, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        AbstractBackupPath path = newPath(file);
+        path.setSize(bytes.length);
+        path.setCompressedFileSize(bytes.length);
+        path.setChecksum(SystemUtils.toHex(SystemUtils.md5(bytes)));
+        fs.addFile(path.getRemotePath());
+        fs.contents.put(path.getRemotePath(), bytes);
+        manifest.add(path);
+        return path;
+    }
+
+    private BackupVerificationResult verify() throws Exception {
+        AbstractBackupPath meta = newPath("META/meta.json");
+        fs.addFile(meta.getRemotePath());
+        fs.metaFiles.put(meta.getRemotePath(), manifest);
+        BackupVerification verification = new BackupVerification(fs, config, pathFactory);
+        return verification.verifyBackup(Collections.singletonList(new BackupMetadata("123", date(SNAPSHOT_TIME))), null);
+    }
+
+    @Test
+    public void testValidBackup() throws Exception {
+        addFile("SNAP/ks1/cf1/f1.db", "first");
+        addFile("SNAP/ks1/cf1/f2.db", "second");
+        addFile("SNAP/ks2/cf1/f3.db", "third");
+
+        BackupVerificationResult result = verify();
+        Assert.assertTrue(result.valid);
+        Assert.assertTrue(result.metaFileFound);
+        Assert.assertEquals(3, result.filesMatched.size());
+        Assert.assertTrue(result.filesInMetaOnly.isEmpty());
+        Assert.assertTrue(result.filesInS3Only.isEmpty());
+        Assert.assertEquals(3, result.filesSampled);
+        Assert.assertTrue(result.filesChecksumMismatch.isEmpty());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("ks1", "ks2")), result.keyspaces.keySet());
+        Assert.assertEquals(2, result.keyspaces.get("ks1").filesMatched);
+        Assert.assertEquals(1, result.keyspaces.get("ks2").filesSampled);
+    }
+
+    @Test
+    public void testInvalidBackup() throws Exception {
+        addFile("SNAP/ks1/cf1/f1.db", "first");
+        //Listed but not recorded in the meta file.
+        AbstractBackupPath leftover = newPath("SNAP/ks1/cf1/f0.db");
+        fs.addFile(leftover.getRemotePath());
+        //Recorded in the meta file but not uploaded.
+        AbstractBackupPath missing = newPath("SNAP/ks1/cf1/f2.db");
+        missing.setSize(10);
+        manifest.add(missing);
+        //Corrupted after the upload.
+        AbstractBackupPath corrupted = addFile("SNAP/ks2/cf1/f3.db", "third");
+        fs.contents.put(corrupted.getRemotePath(), "Third".getBytes(StandardCharsets.UTF_8));
+        //Uploaded empty.
+        AbstractBackupPath empty = addFile("SNAP/ks2/cf1/f4.db", "fourth");
+        fs.contents.put(empty.getRemotePath(), new byte[0]);
+        //Truncated after the upload.
+        AbstractBackupPath truncated = addFile("SNAP/ks2/cf1/f5.db", "fifth");
+        fs.contents.put(truncated.getRemotePath(), "fift".getBytes(StandardCharsets.UTF_8));
+
+        BackupVerificationResult result = verify();
+        Assert.assertFalse(result.valid);
+        Assert.assertEquals(Collections.singletonList(leftover.getRemotePath()), result.filesInS3Only);
+        Assert.assertEquals(Collections.singletonList(missing.getRemotePath()), result.filesInMetaOnly);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(empty.getRemotePath(), truncated.getRemotePath())),
+                new HashSet<>(result.filesSizeMismatch));
+        Assert.assertEquals(4, result.filesSampled);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(corrupted.getRemotePath(), empty.getRemotePath(), truncated.getRemotePath())),
+                new HashSet<>(result.filesChecksumMismatch));
+
+        BackupVerificationResult.KeyspaceResult ks1 = result.keyspaces.get("ks1");
+        Assert.assertEquals(2, ks1.filesInMeta);
+        Assert.assertEquals(1, ks1.filesInMetaOnly);
+        Assert.assertEquals(0, ks1.filesChecksumMismatch);
+        BackupVerificationResult.KeyspaceResult ks2 = result.keyspaces.get("ks2");
+        Assert.assertEquals(3, ks2.filesMatched);
+        Assert.assertEquals(2, ks2.filesSizeMismatch);
+        Assert.assertEquals(3, ks2.filesChecksumMismatch);
+    }
+}
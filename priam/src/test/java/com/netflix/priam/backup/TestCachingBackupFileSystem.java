@@ -0,0 +1,223 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TestCachingBackupFileSystem {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IBackupFileSystem backupFs = injector.getInstance(Key.get(IBackupFileSystem.class, Names.named("backup")));
+    //Content of the remote objects, by remote path.
+    private final Map<String, byte[]> remoteObjects = new ConcurrentHashMap<>();
+    private final Map<String, Integer> remoteDownloads = new ConcurrentHashMap<>();
+    private File cacheDir;
+    private IConfiguration config;
+    private IBackupFileSystem remote;
+
+    @Before
+    public void setup() throws IOException {
+        cacheDir = Files.createTempDirectory("restore_cache").toFile();
+        config = new FakeConfiguration() {
+            @Override
+            public long getRestoreCacheSizeInMB() {
+                return 1;
+            }
+
+            @Override
+            public String getRestoreCacheLocation() {
+                return cacheDir.getPath();
+            }
+        };
+        remote = new ForwardingBackupFileSystem(backupFs) {
+            @Override
+            public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+                remoteDownloads.merge(path.getRemotePath(), 1, Integer::sum);
+                byte[] content = remoteObjects.get(path.getRemotePath());
+                //Like S3FileSystemBase, which sets the size of the compressed object.
+                path.setCompressedFileSize(content.length / 2);
+                try (OutputStream out = os) {
+                    out.write(content);
+                } catch (IOException e) {
+                    throw new BackupRestoreException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void download(AbstractBackupPath path, OutputStream os, String filePath) throws BackupRestoreException {
+                download(path, os);
+            }
+        };
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(cacheDir);
+    }
+
+    private AbstractBackupPath addObject(String fileName, int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) fileName.hashCode());
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/201808110030/SNAP/ks1/cf1/" + fileName);
+        path.setSize(size);
+        path.setChecksum(SystemUtils.toHex(SystemUtils.md5(content)));
+        remoteObjects.put(path.getRemotePath(), content);
+        return path;
+    }
+
+    //A new path for each download, as read from meta.json by a restore.
+    private AbstractBackupPath copy(AbstractBackupPath path) {
+        AbstractBackupPath copy = pathFactory.get();
+        copy.parseRemote(path.getRemotePath());
+        copy.setSize(path.getSize());
+        copy.setChecksum(path.getChecksum());
+        return copy;
+    }
+
+    private byte[] download(CachingBackupFileSystem fs, AbstractBackupPath path) throws BackupRestoreException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        fs.download(copy(path), os, "/tmp/" + path.getFileName());
+        return os.toByteArray();
+    }
+
+    private int remoteDownloads(AbstractBackupPath path) {
+        return remoteDownloads.getOrDefault(path.getRemotePath(), 0);
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        AbstractBackupPath path = addObject("ks1-cf1-ka-1-Data.db", 1000);
+
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+        Assert.assertEquals(1, remoteDownloads(path));
+        Assert.assertEquals(1, fs.getMisses());
+        Assert.assertEquals(1, fs.getHits());
+        Assert.assertEquals(1000, fs.getCachedBytes());
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        AbstractBackupPath path = addObject("ks1-cf1-ka-1-Data.db", 1000);
+        File restoreLocation = new File(cacheDir, "data/ks1/cf1/ks1-cf1-ka-1-Data.db");
+
+        Assert.assertFalse(fs.copy(path, restoreLocation));
+        download(fs, path);
+        Assert.assertTrue(fs.copy(path, restoreLocation));
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), FileUtils.readFileToByteArray(restoreLocation));
+        Assert.assertEquals(1, remoteDownloads(path));
+
+        //Writing to the restored file does not modify the cached copy.
+        try (RandomAccessFile file = new RandomAccessFile(restoreLocation, "rw")) {
+            file.write(new byte[]{1, 2, 3});
+        }
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+        Assert.assertEquals(1, remoteDownloads(path));
+    }
+
+    @Test
+    public void testModifiedCachedFile() throws Exception {
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        AbstractBackupPath path = addObject("ks1-cf1-ka-1-Data.db", 1000);
+        download(fs, path);
+        try (RandomAccessFile file = new RandomAccessFile(new File(cacheDir, path.getChecksum()), "rw")) {
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        File restoreLocation = new File(cacheDir, "data/ks1/cf1/ks1-cf1-ka-1-Data.db");
+        Assert.assertFalse(fs.copy(path, restoreLocation));
+        Assert.assertFalse(restoreLocation.exists());
+        Assert.assertEquals(0, fs.getCachedBytes());
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+        Assert.assertEquals(2, remoteDownloads(path));
+    }
+
+    @Test
+    public void testNotCached() throws Exception {
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        AbstractBackupPath mismatch = addObject("ks1-cf1-ka-1-Data.db", 1000);
+        mismatch.setChecksum(SystemUtils.toHex(SystemUtils.md5(new byte[]{1})));
+        AbstractBackupPath noChecksum = addObject("ks1-cf1-ka-2-Data.db", 1000);
+        noChecksum.setChecksum(null);
+
+        for (AbstractBackupPath path : Arrays.asList(mismatch, noChecksum)) {
+            Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+            download(fs, path);
+            Assert.assertEquals(2, remoteDownloads(path));
+        }
+        Assert.assertEquals(0, fs.getCachedBytes());
+        Assert.assertArrayEquals(new String[0], cacheDir.list());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        AbstractBackupPath first = addObject("ks1-cf1-ka-1-Data.db", 400 * 1024);
+        AbstractBackupPath second = addObject("ks1-cf1-ka-2-Data.db", 400 * 1024);
+        AbstractBackupPath third = addObject("ks1-cf1-ka-3-Data.db", 400 * 1024);
+
+        download(fs, first);
+        download(fs, second);
+        //Used last, the second one is evicted by the third one.
+        download(fs, first);
+        download(fs, third);
+        Assert.assertEquals(800 * 1024, fs.getCachedBytes());
+
+        download(fs, first);
+        download(fs, second);
+        Assert.assertEquals(1, remoteDownloads(first));
+        Assert.assertEquals(2, remoteDownloads(second));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        AbstractBackupPath path = addObject("ks1-cf1-ka-1-Data.db", 1000);
+        download(new CachingBackupFileSystem(config, remote), path);
+
+        //After a restart.
+        CachingBackupFileSystem fs = new CachingBackupFileSystem(config, remote);
+        Assert.assertArrayEquals(remoteObjects.get(path.getRemotePath()), download(fs, path));
+        Assert.assertEquals(1, remoteDownloads(path));
+        Assert.assertEquals(1000, fs.getCachedBytes());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestCommitLogBackup {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final FakeBackupFileSystem fs = (FakeBackupFileSystem) injector.getInstance(Key.get(IBackupFileSystem.class, Names.named("backup")));
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public int getCommitLogBackupQuietPeriodInSecs() {
+            return 60;
+        }
+    };
+    private File archiveDir;
+    private CommitLogBackup clBackup;
+
+    @Before
+    public void setup() throws Exception {
+        archiveDir = Files.createTempDirectory("commitlog").toFile();
+        fs.setupTest();
+        clBackup = new CommitLogBackup(config, pathFactory, fs, new BackupIndex(config, pathFactory, fs), new BackupLagTracker(config));
+    }
+
+    @After
+    public void cleanup() {
+        clBackup.stop();
+        FileUtils.deleteQuietly(archiveDir);
+    }
+
+    private File addSegment(int segment, long ageInMillis) throws Exception {
+        File file = new File(archiveDir, "CommitLog-4-" + segment + ".log");
+        FileUtils.writeStringToFile(file, "0123456789", StandardCharsets.UTF_8);
+        file.setLastModified(System.currentTimeMillis() - ageInMillis);
+        return file;
+    }
+
+    @Test
+    public void testUploadClosedSegments() throws Exception {
+        Set<File> closed = new HashSet<>();
+        for (int segment = 0; segment < 10; segment++)
+            closed.add(addSegment(segment, 120 * 1000L));
+        File open = addSegment(10, 0);
+
+        List<AbstractBackupPath> uploaded = clBackup.upload(archiveDir.getPath(), null);
+        Assert.assertEquals(10, uploaded.size());
+        Assert.assertEquals(10, fs.uploadedFiles.size());
+        Assert.assertEquals(10, clBackup.getUploadedSegments());
+        Assert.assertEquals(0, clBackup.getUploadingSegments());
+        for (File file : closed) {
+            Assert.assertTrue(fs.uploadedFiles.contains(file.getAbsolutePath()));
+            Assert.assertFalse(file.exists());
+        }
+
+        //Still being archived.
+        Assert.assertTrue(open.exists());
+        Assert.assertFalse(fs.uploadedFiles.contains(open.getAbsolutePath()));
+    }
+
+    @Test
+    public void testShipArchivedSegments() throws Exception {
+        clBackup.start(archiveDir.getPath());
+        //Already started.
+        clBackup.start(archiveDir.getPath());
+
+        File segment = addSegment(1, 120 * 1000L);
+        for (int i = 0; i < 100 && segment.exists(); i++)
+            Thread.sleep(100);
+        Assert.assertFalse(segment.exists());
+        Assert.assertEquals(1, clBackup.getUploadedSegments());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingArchiveDir() throws Exception {
+        clBackup.upload(new File(archiveDir, "missing").getPath(), null);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.netflix.priam.FakeConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestIncrementalBackupWatcher {
+    private File dataDir;
+    private int reconcileInterval = 600;
+    private IncrementalBackupWatcher watcher;
+
+    @Before
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("data").toFile();
+        watcher = new IncrementalBackupWatcher(new FakeConfiguration() {
+            @Override
+            public String getDataFileLocation() {
+                return dataDir.getPath();
+            }
+
+            @Override
+            public int getIncrementalBackupReconcileIntervalInSecs() {
+                return reconcileInterval;
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        watcher.stop();
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    private File addFile(String keyspace, String table, String file) throws IOException {
+        File backupDir = new File(dataDir, keyspace + "/" + table + "/" + IncrementalBackupWatcher.INCREMENTAL_BACKUP_FOLDER);
+        backupDir.mkdirs();
+        new File(backupDir, file).createNewFile();
+        return backupDir;
+    }
+
+    //Events are delivered asynchronously.
+    private Set<File> awaitChanges(int expected) throws Exception {
+        Set<File> changed = new HashSet<>();
+        for (int i = 0; i < 100 && changed.size() < expected; i++) {
+            Set<File> directories = watcher.changedDirectories();
+            Assert.assertNotNull(directories);
+            changed.addAll(directories);
+            Thread.sleep(100);
+        }
+        return changed;
+    }
+
+    @Test
+    public void testNewFiles() throws Exception {
+        File backupDir = addFile("ks1", "cf1-1234", "ks1-cf1-ka-1-Data.db");
+        new File(dataDir, "ks1/cf2-1234").mkdirs();
+
+        //Files present before watching started are found by a scan.
+        Assert.assertNull(watcher.changedDirectories());
+        Assert.assertTrue(watcher.isWatching());
+        Assert.assertTrue(watcher.changedDirectories().isEmpty());
+
+        addFile("ks1", "cf1-1234", "ks1-cf1-ka-2-Data.db");
+        Assert.assertEquals(Collections.singleton(backupDir), awaitChanges(1));
+
+        //Backups directory, table and keyspace created after watching started.
+        Set<File> expected = new HashSet<>();
+        expected.add(addFile("ks1", "cf2-1234", "ks1-cf2-ka-1-Data.db"));
+        expected.add(addFile("ks1", "cf3-1234", "ks1-cf3-ka-1-Data.db"));
+        expected.add(addFile("ks2", "cf1-1234", "ks2-cf1-ka-1-Data.db"));
+        Assert.assertEquals(expected, awaitChanges(3));
+    }
+
+    @Test
+    public void testIgnoredDirectories() throws Exception {
+        new File(dataDir, "ks1/cf1-1234/snapshots").mkdirs();
+        Assert.assertNull(watcher.changedDirectories());
+
+        new File(dataDir, "ks1/cf1-1234/ks1-cf1-ka-1-Data.db").createNewFile();
+        new File(dataDir, "ks1/cf1-1234/snapshots/ks1-cf1-ka-1-Data.db").createNewFile();
+        File backupDir = addFile("ks1", "cf1-1234", "ks1-cf1-ka-1-Data.db");
+        Assert.assertEquals(Collections.singleton(backupDir), awaitChanges(1));
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        reconcileInterval = 0;
+        addFile("ks1", "cf1-1234", "ks1-cf1-ka-1-Data.db");
+        Assert.assertNull(watcher.changedDirectories());
+        Assert.assertNull(watcher.changedDirectories());
+    }
+}
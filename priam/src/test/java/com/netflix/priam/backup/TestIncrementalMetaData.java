@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class TestIncrementalMetaData {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = new FakeConfiguration() {
+        @Override
+        public int getIncrementalMetaFlushIntervalInSecs() {
+            return 60;
+        }
+
+        @Override
+        public int getIncrementalMetaFlushMaxEntries() {
+            return 4;
+        }
+    };
+    private final List<AbstractBackupPath> metaFiles = new ArrayList<>();
+    private final List<List<AbstractBackupPath>> manifests = new ArrayList<>();
+    private long now = 1534000000000L;
+    private IncrementalMetaData metaData;
+
+    @Before
+    public void setup() {
+        FakeBackupFileSystem fs = new FakeBackupFileSystem() {
+            @Override
+            public void upload(AbstractBackupPath path, InputStream in) {
+                metaFiles.add(path);
+                manifests.add(metaData.toJson(path.getBackupFile()));
+            }
+        };
+        metaData = new IncrementalMetaData(config, pathFactory, conf -> fs) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    private AbstractBackupPath path(String keyspace, String columnFamily, int file) {
+        AbstractBackupPath path = pathFactory.get();
+        Date time = path.parseDate("201808110030");
+        path.parseRemote(path.remotePrefix(time, time, config.getBackupPrefix()) + "/SST/" + keyspace + "/" + columnFamily + "/"
+                + keyspace + "-" + columnFamily + "-ka-" + file + "-Data.db");
+        return path;
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        metaData.add(Arrays.asList(path("ks1", "cf1", 1), path("ks1", "cf2", 1)));
+        Assert.assertNull(metaData.flushIfDue());
+
+        now += 30 * 1000L;
+        metaData.add(Arrays.asList(path("ks2", "cf1", 1)));
+        Assert.assertNull(metaData.flushIfDue());
+
+        //Counted from the first file not yet listed.
+        now += 30 * 1000L;
+        AbstractBackupPath metaFile = metaData.flushIfDue();
+        Assert.assertNotNull(metaFile);
+        Assert.assertEquals(AbstractBackupPath.BackupFileType.META, metaFile.getType());
+        Assert.assertTrue(metaFile.getFileName().startsWith("meta_incremental_"));
+        Assert.assertEquals("201808110030", AbstractBackupPath.formatDate(metaFile.getTime()));
+        Assert.assertEquals(1, manifests.size());
+        Assert.assertEquals(3, manifests.get(0).size());
+        Assert.assertEquals(0, metaData.getAccumulatedCount());
+        Assert.assertFalse(metaFile.getBackupFile().exists());
+
+        Assert.assertNull(metaData.flushIfDue());
+    }
+
+    @Test
+    public void testFlushMaxEntries() throws Exception {
+        metaData.add(Arrays.asList(path("ks1", "cf1", 1), path("ks1", "cf1", 2), path("ks1", "cf2", 1)));
+        Assert.assertNull(metaData.flushIfDue());
+        metaData.add(Arrays.asList(path("ks2", "cf1", 1)));
+        Assert.assertNotNull(metaData.flushIfDue());
+        Assert.assertEquals(4, manifests.get(0).size());
+    }
+
+    @Test
+    public void testUniqueNames() throws Exception {
+        metaData.add(Arrays.asList(path("ks1", "cf1", 1)));
+        metaData.flush();
+        metaData.add(Arrays.asList(path("ks1", "cf1", 2)));
+        metaData.flush();
+        Assert.assertEquals(2, metaFiles.size());
+        Assert.assertNotEquals(metaFiles.get(0).getRemotePath(), metaFiles.get(1).getRemotePath());
+    }
+}
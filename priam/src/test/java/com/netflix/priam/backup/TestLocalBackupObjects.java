@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.identity.InstanceIdentity;
+import com.netflix.priam.utils.SystemUtils;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestLocalBackupObjects {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final IBackupFileSystem backupFs = injector.getInstance(Key.get(IBackupFileSystem.class, Names.named("backup")));
+    @Mocked
+    private InstanceIdentity instanceIdentity;
+    private File dataDir;
+    private File cacheDir;
+    //Content of the objects downloaded from the backup file system.
+    private byte[] remoteContent;
+    private CachingBackupFileSystem cache;
+    private LocalBackupObjects localBackupObjects;
+
+    @Before
+    public void setup() throws IOException {
+        dataDir = Files.createTempDirectory("data").toFile();
+        cacheDir = Files.createTempDirectory("restore_cache").toFile();
+        IConfiguration config = new FakeConfiguration(FakeConfiguration.FAKE_REGION, "fake-app", "az1", "fakeInstance1") {
+            @Override
+            public String getDataFileLocation() {
+                return dataDir.getPath();
+            }
+
+            @Override
+            public long getRestoreCacheSizeInMB() {
+                return 1;
+            }
+
+            @Override
+            public String getRestoreCacheLocation() {
+                return cacheDir.getPath();
+            }
+        };
+        new Expectations() {
+            {
+                instanceIdentity.getBackupIdentifier();
+                result = "1234";
+                minTimes = 0;
+            }
+        };
+        cache = new CachingBackupFileSystem(config, new ForwardingBackupFileSystem(backupFs) {
+            @Override
+            public void download(AbstractBackupPath path, OutputStream os) throws BackupRestoreException {
+                try (OutputStream out = os) {
+                    out.write(remoteContent);
+                } catch (IOException e) {
+                    throw new BackupRestoreException(e.getMessage(), e);
+                }
+            }
+        });
+        localBackupObjects = new LocalBackupObjects(config, instanceIdentity, cache);
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(dataDir);
+        FileUtils.deleteQuietly(cacheDir);
+    }
+
+    private AbstractBackupPath getPath(String nodeIdentifier, byte[] content) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fake-app/" + nodeIdentifier + "/201808110030/SNAP/ks1/cf1/ks1-cf1-ka-1-Data.db");
+        path.setSize(content.length);
+        path.setChecksum(SystemUtils.toHex(SystemUtils.md5(content)));
+        return path;
+    }
+
+    private static byte[] content(int value) {
+        byte[] content = new byte[1000];
+        Arrays.fill(content, (byte) value);
+        return content;
+    }
+
+    @Test
+    public void testOwnSSTable() throws Exception {
+        byte[] content = content(1);
+        File dataFile = new File(dataDir, "ks1/cf1/ks1-cf1-ka-1-Data.db");
+        FileUtils.writeByteArrayToFile(dataFile, content);
+
+        Assert.assertEquals(dataFile, localBackupObjects.find(getPath("1234", content)));
+        Assert.assertNull(localBackupObjects.find(getPath("1234", new byte[10])));
+    }
+
+    @Test
+    public void testReplacedNode() throws Exception {
+        //This node has an SSTable with the same name and size as an SSTable of the dead node being replaced.
+        FileUtils.writeByteArrayToFile(new File(dataDir, "ks1/cf1/ks1-cf1-ka-1-Data.db"), content(1));
+        byte[] deadNodeContent = content(2);
+        AbstractBackupPath deadNodePath = getPath("5678", deadNodeContent);
+        Assert.assertNull(localBackupObjects.find(deadNodePath));
+
+        //Once this node restored, or verified, the backup of the dead node, it is served from the restore cache.
+        remoteContent = deadNodeContent;
+        cache.download(getPath("5678", deadNodeContent), new ByteArrayOutputStream());
+        File cached = localBackupObjects.find(deadNodePath);
+        Assert.assertNotNull(cached);
+        Assert.assertArrayEquals(deadNodeContent, FileUtils.readFileToByteArray(cached));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.health.InstanceState;
+import com.netflix.priam.utils.DateUtil;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+public class TestLogSnapshotStatusMgr {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final InstanceState instanceState = injector.getInstance(InstanceState.class);
+    private File statusFile;
+    private IConfiguration config;
+
+    @Before
+    public void setup() throws Exception {
+        statusFile = File.createTempFile("backupstatus", ".log");
+        statusFile.delete();
+        config = new FakeConfiguration() {
+            @Override
+            public String getBackupStatusFileLoc() {
+                return statusFile.getPath();
+            }
+        };
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(statusFile);
+        FileUtils.deleteQuietly(new File(statusFile.getPath() + ".compact"));
+    }
+
+    private int lines() throws Exception {
+        return Files.readAllLines(statusFile.toPath()).size();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        Date startTime = new Date(DateUtil.getDate("201808110720").getTime() + 1234);
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        BackupMetadata backupMetadata = new BackupMetadata("123", startTime);
+        statusMgr.start(backupMetadata);
+        statusMgr.finish(backupMetadata);
+        statusMgr.start(new BackupMetadata("123", DateUtil.getDate("201808120720")));
+        Assert.assertEquals(3, lines());
+
+        List<BackupMetadata> metadataList = new LogSnapshotStatusMgr(config, instanceState).locate(startTime);
+        Assert.assertEquals(1, metadataList.size());
+        Assert.assertEquals(startTime, metadataList.get(0).getStart());
+        Assert.assertEquals(Status.FINISHED, metadataList.get(0).getStatus());
+        Assert.assertEquals(backupMetadata.getCompleted(), metadataList.get(0).getCompleted());
+    }
+
+    @Test
+    public void testCorruptedLines() throws Exception {
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        BackupMetadata backupMetadata = new BackupMetadata("123", DateUtil.getDate("201808110720"));
+        statusMgr.start(backupMetadata);
+        statusMgr.finish(backupMetadata);
+
+        //Corrupt the finished status and leave a torn line, as a crash while appending would.
+        List<String> lines = Files.readAllLines(statusFile.toPath());
+        String corrupted = lines.get(1).replace("FINISHED", "FAILED");
+        Files.write(statusFile.toPath(), (lines.get(0) + "\n" + corrupted + "\n" + "0000").getBytes(StandardCharsets.UTF_8));
+
+        statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        List<BackupMetadata> metadataList = statusMgr.locate(backupMetadata.getStart());
+        Assert.assertEquals(1, metadataList.size());
+        Assert.assertEquals(Status.STARTED, metadataList.get(0).getStatus());
+
+        //The torn line is truncated before appending.
+        statusMgr.failed(metadataList.get(0));
+        Assert.assertEquals(3, lines());
+        metadataList = new LogSnapshotStatusMgr(config, instanceState).locate(backupMetadata.getStart());
+        Assert.assertEquals(Status.FAILED, metadataList.get(0).getStatus());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        BackupMetadata backupMetadata = new BackupMetadata("123", DateUtil.getDate("201808110720"));
+        backupMetadata.setProgressLocation("/tmp/snapshot_201808110720.progress");
+        statusMgr.start(backupMetadata);
+        statusMgr.failed(backupMetadata);
+
+        statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        BackupMetadata failed = statusMgr.locate(backupMetadata.getStart()).get(0);
+        Assert.assertEquals(Status.FAILED, failed.getStatus());
+        Assert.assertEquals("/tmp/snapshot_201808110720.progress", failed.getProgressLocation());
+
+        statusMgr.resume(failed);
+        List<BackupMetadata> metadataList = new LogSnapshotStatusMgr(config, instanceState).locate(backupMetadata.getStart());
+        Assert.assertEquals(1, metadataList.size());
+        Assert.assertEquals(Status.STARTED, metadataList.get(0).getStatus());
+        Assert.assertNull(metadataList.get(0).getCompleted());
+        Assert.assertEquals(backupMetadata.getStart(), metadataList.get(0).getStart());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        Date startTime = DateUtil.getDate("201808110000");
+        for (int i = 0; i < 400; i++) {
+            BackupMetadata backupMetadata = new BackupMetadata("123", new DateTime(startTime).plusHours(i).toDate());
+            statusMgr.start(backupMetadata);
+            statusMgr.finish(backupMetadata);
+            backupMetadata.setSnapshotLocation("location");
+            statusMgr.save(backupMetadata);
+        }
+        //Compacted once the log exceeded 1000 lines, two thirds of them superseded.
+        Assert.assertTrue(lines() < 1000);
+
+        statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        List<BackupMetadata> metadataList = statusMgr.locate(startTime, new DateTime(startTime).plusHours(400).toDate());
+        Assert.assertEquals(400, metadataList.size());
+        for (BackupMetadata backupMetadata : metadataList)
+            Assert.assertEquals("location", backupMetadata.getSnapshotLocation());
+    }
+
+    @Test
+    public void testLocateRange() throws Exception {
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        Date startTime = DateUtil.getDate("201808110000");
+        for (int i = 0; i < 10; i++)
+            statusMgr.start(new BackupMetadata("123", new DateTime(startTime).plusHours(12 * i).toDate()));
+
+        List<BackupMetadata> metadataList = statusMgr.locate(DateUtil.getDate("201808120000"), DateUtil.getDate("201808140000"));
+        Assert.assertEquals(4, metadataList.size());
+        Assert.assertEquals(DateUtil.getDate("201808131200"), metadataList.get(0).getStart());
+        Assert.assertEquals(DateUtil.getDate("201808120000"), metadataList.get(3).getStart());
+        Assert.assertEquals(2, statusMgr.locate("20180812").size());
+        Assert.assertNull(statusMgr.locate("20180820"));
+    }
+
+    @Test
+    public void testConvertLegacyFile() throws Exception {
+        BackupMetadata backupMetadata = new BackupMetadata("123", DateUtil.getDate("201808110720"));
+        backupMetadata.setStatus(Status.FINISHED);
+        Map<String, LinkedList<BackupMetadata>> legacy = new HashMap<>();
+        legacy.put(backupMetadata.getSnapshotDate(), new LinkedList<>(Collections.singletonList(backupMetadata)));
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(statusFile))) {
+            out.writeObject(legacy);
+        }
+
+        LogSnapshotStatusMgr statusMgr = new LogSnapshotStatusMgr(config, instanceState);
+        List<BackupMetadata> metadataList = statusMgr.locate(backupMetadata.getStart());
+        Assert.assertEquals(1, metadataList.size());
+        Assert.assertEquals(Status.FINISHED, metadataList.get(0).getStatus());
+        Assert.assertEquals(1, lines());
+
+        //Appends to the converted log.
+        statusMgr.start(new BackupMetadata("123", DateUtil.getDate("201808120720")));
+        Assert.assertEquals(2, lines());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TestPeerBackupFileSystem {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private final Provider<AbstractBackupPath> pathFactory = injector.getProvider(AbstractBackupPath.class);
+    private final FakeBackupFileSystem backupFs = (FakeBackupFileSystem) injector.getInstance(Key.get(IBackupFileSystem.class, Names.named("backup")));
+    //Objects held by the stand-in peer, by remote path.
+    private final Map<String, byte[]> peerObjects = new ConcurrentHashMap<>();
+    private HttpServer peer;
+    private PeerBackupFileSystem fs;
+
+    @Before
+    public void setup() throws Exception {
+        backupFs.setupTest();
+        peer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        peer.createContext(PeerBackupFileSystem.OBJECT_PATH, exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String remotePath = URLDecoder.decode(query.substring("path=".length(), query.indexOf('&')), StandardCharsets.UTF_8.name());
+            byte[] object = peerObjects.get(remotePath);
+            if (object == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, object.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(object);
+                }
+            }
+            exchange.close();
+        });
+        peer.start();
+
+        final int port = peer.getAddress().getPort();
+        IConfiguration config = new FakeConfiguration() {
+            @Override
+            public boolean isRestoreFromPeersEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getRestorePeerPort() {
+                return port;
+            }
+        };
+        fs = new PeerBackupFileSystem(config, backupFs, () -> null) {
+            @Override
+            List<String> getPeers() {
+                return Collections.singletonList("127.0.0.1");
+            }
+        };
+    }
+
+    @After
+    public void cleanup() {
+        peer.stop(0);
+    }
+
+    private AbstractBackupPath getPath(String fileName, long size) {
+        AbstractBackupPath path = pathFactory.get();
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/201808110030/SNAP/ks1/cf1/" + fileName);
+        path.setSize(size);
+        return path;
+    }
+
+    @Test
+    public void testDownloadFromPeer() throws Exception {
+        byte[] content = "0123456789".getBytes(StandardCharsets.UTF_8);
+        AbstractBackupPath path = getPath("ks1-cf1-ka-1-Data.db", content.length);
+        peerObjects.put(path.getRemotePath(), content);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        fs.download(path, os, "/tmp/ks1-cf1-ka-1-Data.db");
+        Assert.assertArrayEquals(content, os.toByteArray());
+        Assert.assertTrue(backupFs.downloadedFiles.isEmpty());
+        Assert.assertEquals(1, fs.getPeerDownloads());
+        Assert.assertEquals(content.length, fs.getPeerBytes());
+    }
+
+    @Test
+    public void testFallbackOnMiss() throws Exception {
+        AbstractBackupPath path = getPath("ks1-cf1-ka-2-Data.db", 10);
+        fs.download(path, new ByteArrayOutputStream());
+        Assert.assertTrue(backupFs.downloadedFiles.contains(path.getRemotePath()));
+        Assert.assertEquals(0, fs.getPeerDownloads());
+    }
+
+    @Test
+    public void testPartialDownload() throws Exception {
+        AbstractBackupPath path = getPath("ks1-cf1-ka-3-Data.db", 20);
+        peerObjects.put(path.getRemotePath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        try {
+            fs.download(path, new ByteArrayOutputStream());
+            Assert.fail("The peer returned a truncated object");
+        } catch (BackupRestoreException e) {
+            //expected, the restore retries the download.
+        }
+
+        //The peer is no longer asked.
+        fs.download(path, new ByteArrayOutputStream());
+        Assert.assertTrue(backupFs.downloadedFiles.contains(path.getRemotePath()));
+    }
+}
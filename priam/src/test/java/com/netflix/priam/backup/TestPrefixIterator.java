@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.inject.Provider;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.aws.S3BackupPath;
+import com.netflix.priam.aws.S3PrefixIterator;
+import mockit.Mock;
+import mockit.MockUp;
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestPrefixIterator {
+    private static final int NUM_TOKENS = 50;
+    private static AmazonS3Client s3client;
+    private final IConfiguration config = new FakeConfiguration();
+    private final Provider<AbstractBackupPath> pathProvider = () -> new S3BackupPath(config, null);
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void setupClass() {
+        s3client = new MockAmazonS3Client().getMockInstance();
+    }
+
+    @Ignore
+    public static class MockAmazonS3Client extends MockUp<AmazonS3Client> {
+        static final AtomicInteger probes = new AtomicInteger();
+        static final Set<Integer> maxKeys = Collections.synchronizedSet(new HashSet<>());
+
+        @Mock
+        public ObjectListing listObjects(ListObjectsRequest request) {
+            ObjectListing listing = new ObjectListing();
+            if (request.getDelimiter() != null) {
+                List<String> prefixes = new ArrayList<>();
+                for (int token = 0; token < NUM_TOKENS; token++)
+                    prefixes.add(request.getPrefix() + token + "/");
+                listing.setCommonPrefixes(prefixes);
+                return listing;
+            }
+
+            probes.incrementAndGet();
+            maxKeys.add(request.getMaxKeys());
+            //Only the even tokens have a backup.
+            String[] elements = request.getPrefix().split("/");
+            if (Integer.parseInt(elements[elements.length - 2]) % 2 == 0) {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setKey(request.getPrefix() + "0030/META/meta.json");
+                listing.getObjectSummaries().add(summary);
+            }
+            return listing;
+        }
+    }
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(config.getBackupListingThreads());
+        MockAmazonS3Client.probes.set(0);
+        MockAmazonS3Client.maxKeys.clear();
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTokensWithBackup() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(2018, 7, 11, 0, 0, 0);
+        S3PrefixIterator iterator = new S3PrefixIterator(config, pathProvider, s3client, cal.getTime(), executor);
+
+        List<String> tokens = new ArrayList<>();
+        while (iterator.hasNext())
+            tokens.add(iterator.next().getNodeIdentifier());
+
+        List<String> expected = new ArrayList<>();
+        for (int token = 0; token < NUM_TOKENS; token += 2)
+            expected.add(String.valueOf(token));
+        Assert.assertEquals(expected, tokens);
+        Assert.assertEquals(NUM_TOKENS, MockAmazonS3Client.probes.get());
+        Assert.assertEquals(Collections.singleton(1), MockAmazonS3Client.maxKeys);
+    }
+}
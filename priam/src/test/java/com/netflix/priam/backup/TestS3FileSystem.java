@@ -40,9 +40,12 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.util.Modules;
 import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
 import com.netflix.priam.aws.DataPart;
 import com.netflix.priam.aws.S3BackupPath;
 import com.netflix.priam.aws.S3FileSystem;
@@ -166,6 +169,50 @@ public class TestS3FileSystem
         Assert.assertEquals(5, rule.getExpirationInDays());
     }
 
+    @Test
+    public void testCleanupGc() throws Exception
+    {
+        MockAmazonS3Client.ruleAvailable = true;
+        getGcFileSystem(false).cleanup();
+        Assert.assertEquals(1, MockAmazonS3Client.bconf.getRules().size());
+        BucketLifecycleConfiguration.Rule rule = MockAmazonS3Client.bconf.getRules().get(0);
+        Assert.assertEquals(-1, rule.getExpirationInDays());
+        Assert.assertEquals(1, rule.getAbortIncompleteMultipartUpload().getDaysAfterInitiation());
+    }
+
+    @Test
+    public void testCleanupGcDryRun() throws Exception
+    {
+        //Nothing is deleted during a dry run, objects must keep expiring.
+        MockAmazonS3Client.ruleAvailable = true;
+        getGcFileSystem(true).cleanup();
+        Assert.assertEquals(1, MockAmazonS3Client.bconf.getRules().size());
+        BucketLifecycleConfiguration.Rule rule = MockAmazonS3Client.bconf.getRules().get(0);
+        Assert.assertEquals(new FakeConfiguration().getBackupRetentionDays(), rule.getExpirationInDays());
+        Assert.assertEquals(1, rule.getAbortIncompleteMultipartUpload().getDaysAfterInitiation());
+    }
+
+    private S3FileSystem getGcFileSystem(final boolean dryRun)
+    {
+        final IConfiguration config = new FakeConfiguration(FakeConfiguration.FAKE_REGION, "fake-app", "az1", "fakeInstance1") {
+            @Override
+            public boolean isBackupGcEnabled() {
+                return true;
+            }
+
+            @Override
+            public boolean isBackupGcDryRun() {
+                return dryRun;
+            }
+        };
+        return Guice.createInjector(Modules.override(new BRTestModule()).with(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(IConfiguration.class).toInstance(config);
+            }
+        })).getInstance(S3FileSystem.class);
+    }
+
     
     // Mock Nodeprobe class
     @Ignore
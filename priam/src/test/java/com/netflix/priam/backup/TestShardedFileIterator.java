@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+import com.netflix.priam.IConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestShardedFileIterator {
+    private static final Injector injector = Guice.createInjector(new BRTestModule());
+    private static final int PAGE_SIZE = 2;
+    private final Provider<AbstractBackupPath> pathProvider = injector.getProvider(AbstractBackupPath.class);
+    private final IConfiguration config = injector.getInstance(IConfiguration.class);
+    private final TreeSet<String> objects = new TreeSet<>();
+    private final Set<String> listedPrefixes = Collections.synchronizedSet(new HashSet<>());
+    private ExecutorService executor;
+
+    private class FakeFileIterator extends ShardedFileIterator {
+        FakeFileIterator(Date start, Date till, ExecutorService executor) {
+            super(pathProvider, config.getBackupPrefix(), start, till, executor, 8);
+        }
+
+        @Override
+        protected Page listPage(String prefix, Object continuation) {
+            listedPrefixes.add(prefix);
+            List<AbstractBackupPath> paths = new ArrayList<>();
+            String last = null;
+            for (String key : objects.tailSet(continuation == null ? prefix : (String) continuation, continuation == null)) {
+                if (!key.startsWith(prefix))
+                    break;
+                if (paths.size() == PAGE_SIZE)
+                    return new Page(paths, last);
+                AbstractBackupPath path = pathProvider.get();
+                path.parseRemote(key);
+                paths.add(path);
+                last = key;
+            }
+            return new Page(paths, null);
+        }
+    }
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdown();
+    }
+
+    private Date date(String time) {
+        return pathProvider.get().parseDate(time);
+    }
+
+    private String addFile(String time, String file) {
+        AbstractBackupPath path = pathProvider.get();
+        String key = path.remotePrefix(date(time), date(time), config.getBackupPrefix()) + "/" + file;
+        objects.add(key);
+        return key;
+    }
+
+    private List<String> list(String start, String till, ExecutorService executor) {
+        List<String> files = new ArrayList<>();
+        new FakeFileIterator(date(start), date(till), executor).forEachRemaining(path -> files.add(path.getRemotePath()));
+        return files;
+    }
+
+    @Test
+    public void testSameResultAsSequentialListing() {
+        for (int hour = 10; hour < 24; hour++) {
+            for (int file = 0; file < 5; file++)
+                addFile("20180811" + hour + "00", "SST/ks1/cf1/f" + file + ".db");
+        }
+        addFile("201808110030", "META/meta.json");
+        addFile("201808110030", "SNAP/ks1/cf1/f1.db");
+        addFile("201808120100", "CL/CommitLog-1.log");
+
+        List<String> sequential = list("201808110030", "201808120000", null);
+        Assert.assertEquals(72, sequential.size());
+        listedPrefixes.clear();
+        Assert.assertEquals(sequential, list("201808110030", "201808120000", executor));
+        //One prefix per hour of the range, including the hour of the end.
+        Assert.assertEquals(25, listedPrefixes.size());
+    }
+
+    @Test
+    public void testSingleMinuteByType() {
+        String meta = addFile("201808110030", "META/meta.json");
+        String snap = addFile("201808110030", "SNAP/ks1/cf1/f1.db");
+        addFile("201808110031", "SNAP/ks1/cf1/f2.db");
+
+        Assert.assertEquals(Arrays.asList(meta, snap), list("201808110030", "201808110030", executor));
+        Assert.assertEquals(AbstractBackupPath.BackupFileType.values().length, listedPrefixes.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveUnsupported() {
+        addFile("201808110030", "META/meta.json");
+        FakeFileIterator iterator = new FakeFileIterator(date("201808110030"), date("201808110030"), executor);
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test
+    public void testRemotePrefixes() {
+        AbstractBackupPath path = pathProvider.get();
+        String nodePrefix = path.remotePrefix(date("201808110030"), date("201808110030"), config.getBackupPrefix()).replace("201808110030", "");
+
+        Assert.assertEquals(Arrays.asList(nodePrefix + "20180811", nodePrefix + "20180812", nodePrefix + "20180813"),
+                path.remotePrefixes(date("201808111200"), date("201808131200"), config.getBackupPrefix(), 10));
+        Assert.assertEquals(Arrays.asList(nodePrefix + "2018081123", nodePrefix + "2018081200"),
+                path.remotePrefixes(date("201808112330"), date("201808120030"), config.getBackupPrefix(), 10));
+        //Too many prefixes at any unit.
+        Assert.assertEquals(Collections.singletonList(nodePrefix + "201"),
+                path.remotePrefixes(date("201001010000"), date("201808110000"), config.getBackupPrefix(), 5));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.backup;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+import com.google.inject.util.Modules;
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.IConfiguration;
+import com.netflix.priam.utils.CassandraMonitor;
+import com.netflix.priam.utils.JMXNodeTool;
+import mockit.Mock;
+import mockit.MockUp;
+import org.apache.cassandra.tools.NodeProbe;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class TestSnapshotBackup {
+    private static final File DATA_DIR = new File("target/data");
+    private static final String[] TABLES = {"ks1/cf1-1234", "ks1/cf2-1234", "ks2/cf1-1234"};
+    //Calls to the fake nodetool e.g. "snapshot ks1.cf1" or "clear ks1".
+    private final List<String> nodetoolCalls = Collections.synchronizedList(new ArrayList<>());
+    private int batchSize = 0;
+    private int resumeWindow = 0;
+    private boolean failSnapshot = false;
+    private int maxSnapshotTables = 0;
+    private FakeBackupFileSystem filesystem;
+    private SnapshotBackup snapshotBackup;
+
+    @Before
+    public void setup() throws Exception {
+        CassandraMonitor.setIsCassadraStarted();
+        FileUtils.deleteQuietly(DATA_DIR);
+        for (String table : TABLES) {
+            String[] names = table.split("/");
+            TestBackup.genTestFile(new File(DATA_DIR, table + "/" + names[0] + "-" + names[1].split("-")[0] + "-ka-1-Data.db"));
+        }
+
+        new MockUp<NodeProbe>() {
+            @Mock
+            public void $init(String host, int port) {
+            }
+
+            @Mock
+            public void takeSnapshot(String snapshotName, String columnFamily, String... keyspaces) throws IOException {
+                nodetoolCalls.add("snapshot " + (columnFamily == null ? "all" : keyspaces[0] + "." + columnFamily));
+                for (File columnFamilyDir : getColumnFamilyDirs(keyspaces)) {
+                    if (columnFamily != null && !columnFamilyDir.getName().startsWith(columnFamily + "-"))
+                        continue;
+                    File snapshotDir = new File(columnFamilyDir, "snapshots/" + snapshotName);
+                    for (File file : columnFamilyDir.listFiles(File::isFile))
+                        FileUtils.copyFileToDirectory(file, snapshotDir);
+                    if (failSnapshot)
+                        throw new IOException("Snapshot failed after the first table");
+                }
+                maxSnapshotTables = Math.max(maxSnapshotTables, getSnapshotTables(snapshotName));
+            }
+
+            @Mock
+            public void clearSnapshot(String tag, String... keyspaces) throws IOException {
+                nodetoolCalls.add("clear " + (keyspaces.length == 0 ? "all" : String.join(",", new TreeSet<>(Arrays.asList(keyspaces)))));
+                for (File columnFamilyDir : getColumnFamilyDirs(keyspaces))
+                    FileUtils.deleteDirectory(new File(columnFamilyDir, "snapshots/" + tag));
+            }
+
+            @Mock
+            public void close() {
+            }
+        };
+        final JMXNodeTool nodetool = new JMXNodeTool("localhost", 7199);
+        new MockUp<JMXNodeTool>() {
+            @Mock
+            JMXNodeTool instance(IConfiguration config) {
+                return nodetool;
+            }
+        };
+    }
+
+    private void createSnapshotBackup() {
+        IConfiguration config = new FakeConfiguration(FakeConfiguration.FAKE_REGION, "fake-app", "az1", "fakeInstance1") {
+            @Override
+            public int getSnapshotTableBatchSize() {
+                return batchSize;
+            }
+
+            @Override
+            public int getSnapshotBatchThreads() {
+                return 2;
+            }
+
+            @Override
+            public int getSnapshotResumeWindowInHours() {
+                return resumeWindow;
+            }
+        };
+        Injector injector = Guice.createInjector(Modules.override(new BRTestModule()).with(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(IConfiguration.class).toInstance(config);
+            }
+        }));
+        filesystem = (FakeBackupFileSystem) injector.getInstance(Key.get(IBackupFileSystem.class, Names.named("backup")));
+        filesystem.setupTest();
+        snapshotBackup = injector.getInstance(SnapshotBackup.class);
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(DATA_DIR);
+    }
+
+    private static List<File> getColumnFamilyDirs(String... keyspaces) {
+        List<File> columnFamilyDirs = new ArrayList<>();
+        for (File keyspaceDir : DATA_DIR.listFiles(File::isDirectory)) {
+            if (keyspaces.length == 0 || Arrays.asList(keyspaces).contains(keyspaceDir.getName()))
+                columnFamilyDirs.addAll(Arrays.asList(keyspaceDir.listFiles(File::isDirectory)));
+        }
+        return columnFamilyDirs;
+    }
+
+    private static int getSnapshotTables(String snapshotName) {
+        int tables = 0;
+        for (File columnFamilyDir : getColumnFamilyDirs())
+            if (new File(columnFamilyDir, "snapshots/" + snapshotName).isDirectory())
+                tables++;
+        return tables;
+    }
+
+    private static File[] getProgressFiles() {
+        File statusDir = new File(new FakeConfiguration().getBackupStatusFileLoc()).getAbsoluteFile().getParentFile();
+        return statusDir.listFiles((dir, name) -> name.startsWith("snapshot_") && name.endsWith(".progress"));
+    }
+
+    private void assertUploaded() {
+        Set<String> uploaded = new HashSet<>();
+        for (String file : filesystem.uploadedFiles)
+            uploaded.add(new File(file).getName());
+        Assert.assertTrue(uploaded.containsAll(Arrays.asList("ks1-cf1-ka-1-Data.db", "ks1-cf2-ka-1-Data.db", "ks2-cf1-ka-1-Data.db", "meta.json")));
+        for (File columnFamilyDir : getColumnFamilyDirs()) {
+            String[] snapshots = new File(columnFamilyDir, "snapshots").list();
+            Assert.assertTrue(snapshots == null || snapshots.length == 0);
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        createSnapshotBackup();
+        snapshotBackup.execute();
+
+        Assert.assertEquals(Arrays.asList("snapshot all", "clear all"), nodetoolCalls);
+        Assert.assertEquals(3, maxSnapshotTables);
+        assertUploaded();
+    }
+
+    @Test
+    public void testProgressiveSnapshot() throws Exception {
+        batchSize = 2;
+        createSnapshotBackup();
+        snapshotBackup.execute();
+
+        //Each table is snapshotted on its own, a batch of tables is cleared once it is uploaded.
+        List<String> snapshots = new ArrayList<>();
+        List<Integer> clears = new ArrayList<>();
+        for (int i = 0; i < nodetoolCalls.size(); i++) {
+            if (nodetoolCalls.get(i).startsWith("snapshot "))
+                snapshots.add(nodetoolCalls.get(i));
+            else if (!nodetoolCalls.get(i).equals("clear all"))
+                clears.add(i);
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("snapshot ks1.cf1", "snapshot ks1.cf2", "snapshot ks2.cf1")), new HashSet<>(snapshots));
+        Assert.assertEquals(3, snapshots.size());
+        Assert.assertEquals(2, clears.size());
+        Assert.assertEquals(2, clears.get(0).intValue());
+        Assert.assertEquals(4, clears.get(1).intValue());
+        Assert.assertEquals(2, maxSnapshotTables);
+        assertUploaded();
+    }
+
+    @Test
+    public void testPartialSnapshotNotKept() throws Exception {
+        resumeWindow = 1;
+        failSnapshot = true;
+        createSnapshotBackup();
+        try {
+            snapshotBackup.execute();
+            Assert.fail("The snapshot failed");
+        } catch (IOException e) {
+            //expected
+        }
+
+        //A snapshot which did not complete is cleared, it cannot be resumed.
+        Assert.assertEquals("clear all", nodetoolCalls.get(nodetoolCalls.size() - 1));
+        Assert.assertEquals(0, getProgressFiles().length);
+        for (File columnFamilyDir : getColumnFamilyDirs()) {
+            String[] snapshots = new File(columnFamilyDir, "snapshots").list();
+            Assert.assertTrue(snapshots == null || snapshots.length == 0);
+        }
+    }
+
+    @Test
+    public void testKeptSnapshotCleared() throws Exception {
+        resumeWindow = 1;
+        //Kept by a run which failed and was never resumed.
+        TestBackup.genTestFile(new File(DATA_DIR, "ks1/cf1-1234/snapshots/201001010000/ks1-cf1-ka-1-Data.db"));
+        File statusDir = new File(new FakeConfiguration().getBackupStatusFileLoc()).getAbsoluteFile().getParentFile();
+        File progressFile = new File(statusDir, "snapshot_201001010000.progress");
+        FileUtils.touch(progressFile);
+
+        createSnapshotBackup();
+        snapshotBackup.execute();
+
+        Assert.assertFalse(new File(DATA_DIR, "ks1/cf1-1234/snapshots/201001010000").exists());
+        Assert.assertFalse(progressFile.exists());
+        assertUploaded();
+    }
+}
@@ -42,6 +42,27 @@ public class TestInstanceStatus {
         Assert.assertFalse(testInstanceState.setParams(false,true, true, true, false, false, true).isHealthy());
     }
 
+    @Test
+    public void testRestoreProgress() {
+        InstanceState.RestoreStatus restoreStatus = new InstanceState.RestoreStatus();
+        restoreStatus.resetStatus();
+        restoreStatus.addFileToRestore(100);
+        restoreStatus.addFileToRestore(300);
+        Assert.assertNull(restoreStatus.getEstimatedCompletionTime());
+
+        restoreStatus.fileRestored(100);
+        Assert.assertEquals(2, restoreStatus.getFilesTotal());
+        Assert.assertEquals(1, restoreStatus.getFilesDone());
+        Assert.assertEquals(400, restoreStatus.getBytesTotal());
+        Assert.assertEquals(100, restoreStatus.getBytesDone());
+        Assert.assertNotNull(restoreStatus.getEstimatedCompletionTime());
+
+        restoreStatus.resetStatus();
+        Assert.assertEquals(0, restoreStatus.getFilesTotal());
+        Assert.assertEquals(0, restoreStatus.getBytesDone());
+        Assert.assertNull(restoreStatus.getEstimatedCompletionTime());
+    }
+
     private class TestInstanceState{
         private InstanceState instanceState;
 
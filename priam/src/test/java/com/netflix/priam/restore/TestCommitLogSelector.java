@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.restore;
+
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.aws.S3BackupPath;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.utils.DateUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestCommitLogSelector {
+    private AbstractBackupPath getPath(String time, String type, String fileName) {
+        AbstractBackupPath path = new S3BackupPath(new FakeConfiguration(), null);
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/" + time + "/" + type + "/" + fileName);
+        return path;
+    }
+
+    private List<String> fileNames(List<AbstractBackupPath> paths) {
+        List<String> fileNames = new ArrayList<>();
+        for (AbstractBackupPath path : paths)
+            fileNames.add(path.getFileName());
+        return fileNames;
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        CommitLogSelector selector = new CommitLogSelector();
+        //Added out of order, as listed from the backup index.
+        selector.add(getPath("201808110105", "CL", "CommitLog-4-105.log"));
+        selector.add(getPath("201808110010", "CL", "CommitLog-4-100.log"));
+        selector.add(getPath("201808110040", "CL", "CommitLog-4-102.log"));
+        selector.add(getPath("201808110030", "CL", "CommitLog-4-101.log"));
+        selector.add(getPath("201808110050", "CL", "CommitLog-4-104.log"));
+        selector.add(getPath("201808110050", "CL", "CommitLog-4-103.log"));
+        selector.add(getPath("201808110035", "SST", "ks1/cf1/ks1-cf1-ka-1-Data.db"));
+
+        //The first segment closed at 00:50 was being written at 00:45.
+        List<String> selected = fileNames(selector.select(DateUtil.getDate("201808110030"), DateUtil.getDate("201808110045")));
+        Assert.assertEquals(3, selected.size());
+        Assert.assertEquals("CommitLog-4-101.log", selected.get(0));
+        Assert.assertEquals("CommitLog-4-102.log", selected.get(1));
+        Assert.assertEquals("CommitLog-4-103.log", selected.get(2));
+
+        //No segment closed after the end yet, all the segments since the snapshot.
+        selected = fileNames(selector.select(DateUtil.getDate("201808110100"), DateUtil.getDate("201808110200")));
+        Assert.assertEquals(1, selected.size());
+        Assert.assertEquals("CommitLog-4-105.log", selected.get(0));
+
+        Assert.assertTrue(selector.select(DateUtil.getDate("201808110200"), DateUtil.getDate("201808110300")).isEmpty());
+    }
+
+    @Test
+    public void testSegmentId() {
+        Assert.assertEquals(1534000000123L, CommitLogSelector.getSegmentId(getPath("201808110010", "CL", "CommitLog-4-1534000000123.log")));
+        Assert.assertEquals(-1, CommitLogSelector.getSegmentId(getPath("201808110010", "CL", "commitlog_archiving.properties")));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.restore;
+
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.aws.S3BackupPath;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.backup.BackupRestoreException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestProgressiveTableLoader {
+
+    private static AbstractBackupPath getPath(String keyspace, String cfDir, String fileName) {
+        AbstractBackupPath path = new S3BackupPath(new FakeConfiguration(), null);
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/201108110030/SNAP/" + keyspace + "/" + cfDir + "/" + fileName);
+        return path;
+    }
+
+    private static class RecordingLoader extends ProgressiveTableLoader {
+        private final List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+        private final String failingTable;
+
+        RecordingLoader(String failingTable) {
+            super(new FakeConfiguration());
+            this.failingTable = failingTable;
+        }
+
+        @Override
+        protected void loadTable(String keyspace, String table) throws Exception {
+            if (table.equals(failingTable))
+                throw new Exception("Failed to load " + table);
+            loaded.add(keyspace + "." + table);
+        }
+    }
+
+    @Test
+    public void testLoadWhenTableComplete() throws Exception {
+        RecordingLoader loader = new RecordingLoader(null);
+        AbstractBackupPath f1 = getPath("ks1", "cf1-0123", "ks1-cf1-ka-1-Data.db");
+        AbstractBackupPath f2 = getPath("ks1", "cf1-0123", "ks1-cf1-ka-2-Data.db");
+        AbstractBackupPath f3 = getPath("ks1", "cf2-4567", "ks1-cf2-ka-1-Data.db");
+        loader.add(f1);
+        loader.add(f2);
+        loader.add(f3);
+
+        //No table is loaded before all files of the batch are known.
+        loader.restored(f1);
+        loader.restored(f3);
+        loader.allAdded();
+        loader.restored(f2);
+        loader.awaitCompletion();
+
+        Assert.assertEquals(2, loader.loaded.size());
+        Assert.assertEquals("ks1.cf2", loader.loaded.get(0));
+        Assert.assertEquals("ks1.cf1", loader.loaded.get(1));
+    }
+
+    @Test(expected = BackupRestoreException.class)
+    public void testLoadFailure() throws Exception {
+        RecordingLoader loader = new RecordingLoader("cf1");
+        AbstractBackupPath f1 = getPath("ks1", "cf1-0123", "ks1-cf1-ka-1-Data.db");
+        loader.add(f1);
+        loader.allAdded();
+        loader.restored(f1);
+        loader.awaitCompletion();
+    }
+
+    @Test
+    public void testSortByPriority() {
+        List<AbstractBackupPath> files = new ArrayList<>(Arrays.asList(
+                getPath("ks1", "cf1-0123", "a-Data.db"),
+                getPath("ks2", "cf3-0123", "b-Data.db"),
+                getPath("ks1", "cf2-0123", "c-Data.db"),
+                getPath("ks1", "cf1-0123", "d-Data.db")));
+
+        ProgressiveTableLoader.sortByPriority(files, Arrays.asList("ks2.cf3", "ks1.cf2"));
+        Assert.assertEquals("b-Data.db", files.get(0).getFileName());
+        Assert.assertEquals("c-Data.db", files.get(1).getFileName());
+        Assert.assertEquals("ks1.cf1", files.get(2).getKeyspace() + "." + ProgressiveTableLoader.getTableName(files.get(2)));
+        Assert.assertEquals("ks1.cf1", files.get(3).getKeyspace() + "." + ProgressiveTableLoader.getTableName(files.get(3)));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.restore;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestRestoreFileOutputStream {
+    private final File testFile = new File("target/restorefile/test.db");
+
+    @Before
+    public void setup() {
+        FileUtils.deleteQuietly(testFile.getParentFile());
+        testFile.getParentFile().mkdirs();
+    }
+
+    @After
+    public void cleanup() {
+        FileUtils.deleteQuietly(testFile.getParentFile());
+    }
+
+    private byte[] write(long expectedSize, int length) throws IOException {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        try (OutputStream os = new RestoreFileOutputStream(testFile, expectedSize)) {
+            //Mix of small writes, single bytes and writes bigger than a block.
+            int off = 0;
+            while (off < length) {
+                int count = Math.min(length - off, off % 3 == 0 ? 2048 : RestoreFileOutputStream.BLOCK_SIZE + 7);
+                os.write(data, off, count);
+                off += count;
+                if (off < length)
+                    os.write(data[off++]);
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        int length = 3 * RestoreFileOutputStream.BLOCK_SIZE + 123;
+        byte[] data = write(length, length);
+        Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(testFile)));
+    }
+
+    @Test
+    public void testExpectedSizeTooLarge() throws IOException {
+        byte[] data = write(10 * RestoreFileOutputStream.BLOCK_SIZE, 5000);
+        Assert.assertEquals(5000, testFile.length());
+        Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(testFile)));
+    }
+
+    @Test
+    public void testOverwrite() throws IOException {
+        write(0, 2 * RestoreFileOutputStream.BLOCK_SIZE);
+        byte[] data = write(0, 100);
+        Assert.assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(testFile)));
+    }
+}
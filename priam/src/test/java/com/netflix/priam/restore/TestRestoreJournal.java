@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.priam.restore;
+
+import com.netflix.priam.FakeConfiguration;
+import com.netflix.priam.aws.S3BackupPath;
+import com.netflix.priam.backup.AbstractBackupPath;
+import com.netflix.priam.utils.SystemUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class TestRestoreJournal {
+    private static final String RESTORE_ID = "201108110030,201108110530,test_backup,123456,[]";
+    private final File testDir = new File("target/restorejournal");
+    private final File journalFile = new File(testDir, "restore.journal");
+    private RestoreJournal journal;
+
+    @Before
+    public void setup() throws IOException {
+        FileUtils.deleteQuietly(testDir);
+        testDir.mkdirs();
+        journal = new RestoreJournal(journalFile.getAbsolutePath());
+    }
+
+    @After
+    public void cleanup() {
+        journal.close();
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    private AbstractBackupPath getPath(String fileName) {
+        AbstractBackupPath path = new S3BackupPath(new FakeConfiguration(), null);
+        path.parseRemote("test_backup/" + FakeConfiguration.FAKE_REGION + "/fakecluster/123456/201108110030/SNAP/ks1/cf1/" + fileName);
+        return path;
+    }
+
+    private File restore(AbstractBackupPath path, String content) throws IOException {
+        File file = new File(testDir, path.getFileName());
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        journal.record(path, file, SystemUtils.md5(file));
+        return file;
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        Assert.assertFalse(journal.open(RESTORE_ID));
+        AbstractBackupPath f1 = getPath("f1.db");
+        AbstractBackupPath f2 = getPath("f2.db");
+        File file1 = restore(f1, "some data");
+        File file2 = new File(testDir, f2.getFileName());
+        journal.close();
+
+        //Restart of the same restore.
+        journal = new RestoreJournal(journalFile.getAbsolutePath());
+        Assert.assertTrue(journal.open(RESTORE_ID));
+        Assert.assertEquals(1, journal.size());
+        Assert.assertTrue(journal.isRestored(f1, file1));
+        Assert.assertFalse(journal.isRestored(f2, file2));
+    }
+
+    @Test
+    public void testCorruptFileOnDisk() throws Exception {
+        journal.open(RESTORE_ID);
+        AbstractBackupPath f1 = getPath("f1.db");
+        File file1 = restore(f1, "some data");
+        journal.close();
+
+        //Same size, different content.
+        FileUtils.writeStringToFile(file1, "same data", StandardCharsets.UTF_8);
+        journal = new RestoreJournal(journalFile.getAbsolutePath());
+        Assert.assertTrue(journal.open(RESTORE_ID));
+        Assert.assertFalse(journal.isRestored(f1, file1));
+    }
+
+    @Test
+    public void testDifferentRestore() throws Exception {
+        journal.open(RESTORE_ID);
+        AbstractBackupPath f1 = getPath("f1.db");
+        File file1 = restore(f1, "some data");
+        journal.close();
+
+        journal = new RestoreJournal(journalFile.getAbsolutePath());
+        Assert.assertFalse(journal.open("201108120030,201108120530,test_backup,123456,[]"));
+        Assert.assertEquals(0, journal.size());
+        Assert.assertFalse(journal.isRestored(f1, file1));
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        journal.open(RESTORE_ID);
+        restore(getPath("f1.db"), "some data");
+        journal.delete();
+        Assert.assertFalse(journalFile.exists());
+        Assert.assertEquals(0, journal.size());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.priam.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestConcurrentLongHashSet {
+
+    @Test
+    public void testAddContains() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet(4);
+        Assert.assertTrue(set.add(42));
+        Assert.assertFalse(set.add(42));
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.contains(42));
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertFalse(set.contains(43));
+        Assert.assertEquals(3, set.size());
+
+        set.clear();
+        Assert.assertEquals(0, set.size());
+        Assert.assertFalse(set.contains(42));
+        Assert.assertFalse(set.contains(0));
+    }
+
+    @Test
+    public void testGrow() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet(0, 1);
+        for (long i = 1; i <= 100000; i++)
+            Assert.assertTrue(set.add(i * 31));
+
+        set.ensureCapacity(500000);
+        Assert.assertEquals(100000, set.size());
+        for (long i = 1; i <= 100000; i++) {
+            Assert.assertTrue(set.contains(i * 31));
+            Assert.assertFalse(set.contains(i * 31 + 1));
+        }
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final ConcurrentLongHashSet set = new ConcurrentLongHashSet(1000);
+        final int threads = 8, keysPerThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                //Every thread adds the same keys, only one of them must succeed for each key.
+                futures.add(executor.submit(() -> {
+                    int added = 0;
+                    for (long i = 0; i < keysPerThread; i++)
+                        if (set.add(i))
+                            added++;
+                    return added;
+                }));
+            }
+
+            int totalAdded = 0;
+            for (Future<Integer> future : futures)
+                totalAdded += future.get();
+
+            Assert.assertEquals(keysPerThread, totalAdded);
+            Assert.assertEquals(keysPerThread, set.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}